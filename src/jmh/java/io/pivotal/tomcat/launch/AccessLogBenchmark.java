@@ -0,0 +1,90 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.valves.AccessLogValve;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request throughput and latency of a trivial servlet without an access log, with Tomcat's
+ * {@link AccessLogValve} in the equivalent format, and with the {@link AsyncAccessLogValve}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class AccessLogBenchmark {
+
+    @Param({"off", "stock", "async"})
+    public String accessLog;
+
+    private Path logs;
+
+    private ServerHandle handle;
+
+    private URL url;
+
+    @Setup(Level.Trial)
+    public void startTomcat() throws Exception {
+        logs = Files.createTempDirectory("tomcat-bench-logs");
+        TomcatConfigurer configurer = TomcatLauncher.configure().port(0);
+        if ("async".equals(accessLog)) {
+            configurer.accessLog().directory(logs);
+        }
+        TomcatLauncher launcher = configurer.apply();
+        if ("stock".equals(accessLog)) {
+            AccessLogValve valve = new AccessLogValve();
+            valve.setDirectory(logs.toString());
+            valve.setPattern("%a - %u %t \"%r\" %s %b %D");
+            launcher.getTomcat().getHost().getPipeline().addValve(valve);
+        }
+        Context ctx = launcher.getContext();
+        Tomcat.addServlet(ctx, "hello", new RequestThroughputBenchmark.HelloServlet());
+        ctx.addServletMappingDecoded("/hello", "hello");
+
+        handle = launcher.start();
+        url = new URL("http://localhost:" + handle.getPort() + ctx.getPath() + "/hello");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTomcat() {
+        handle.stop(5, TimeUnit.SECONDS);
+        FileSystemUtils.deleteRecursively(logs.toFile());
+    }
+
+    @Benchmark
+    public int request() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            while (in.read() != -1) {
+                // drain so the connection can be kept alive
+            }
+        }
+        return connection.getResponseCode();
+    }
+}
@@ -0,0 +1,149 @@
+package io.pivotal.tomcat.launch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Cold boot of a fresh JVM, from process start until the launcher is ready and stopped again,
+ * with and without a class data sharing archive. The archive variant writes the archive and the
+ * jar scan index in a training run first. Needs Java 13 or later for the archive variant. Class
+ * folders on the benchmark classpath are packaged as jars, the JVM only archives classes from jars.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CdsStartupBenchmark {
+
+    @Param({"off", "archive"})
+    public String cds;
+
+    private Path dir;
+
+    private Path archive;
+
+    private String classpath;
+
+    @Setup(Level.Trial)
+    public void train() throws Exception {
+        dir = Files.createTempDirectory("cds-benchmark");
+        archive = dir.resolve("app.jsa");
+        classpath = packageClasspath();
+        if ("archive".equals(cds)) {
+            CdsSettings settings = new CdsSettings();
+            settings.setArchive(archive);
+            List<String> options = settings.jvmOptions(true);
+            if (options.isEmpty()) {
+                throw new IllegalStateException("Dynamic class data sharing archives need Java 13 or later");
+            }
+            boot(options, true);
+            if (!Files.exists(archive)) {
+                throw new IllegalStateException("Training run did not write " + archive);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        FileSystemUtils.deleteRecursively(dir.toFile());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    public void coldBoot() throws Exception {
+        List<String> options = new ArrayList<>();
+        if ("archive".equals(cds)) {
+            CdsSettings settings = new CdsSettings();
+            settings.setArchive(archive);
+            options.addAll(settings.jvmOptions(false));
+        }
+        boot(options, false);
+    }
+
+    private void boot(List<String> options, boolean training) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(options);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(Boot.class.getName());
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(dir.resolve("boot.log").toFile()));
+        builder.environment().put("PORT", "0");
+        if ("archive".equals(cds)) {
+            builder.environment().put(CdsSettings.ENV_CDS_ARCHIVE, archive.toString());
+            builder.environment().put(CdsSettings.ENV_CDS_TRAINING, Boolean.toString(training));
+        }
+        int exitCode = builder.start().waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Boot failed with exit code " + exitCode + ", see " + dir.resolve("boot.log"));
+        }
+    }
+
+    private String packageClasspath() throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            final Path folder = Paths.get(entry);
+            if (!Files.isDirectory(folder)) {
+                entries.add(entry);
+                continue;
+            }
+            Path jar = dir.resolve("classes-" + entries.size() + ".jar");
+            try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        out.putNextEntry(new JarEntry(folder.relativize(file).toString().replace(File.separatorChar, '/')));
+                        Files.copy(file, out);
+                        out.closeEntry();
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            entries.add(jar.toString());
+        }
+        return StringUtils.collectionToDelimitedString(entries, File.pathSeparator);
+    }
+
+    public static class Boot {
+
+        public static void main(String[] args) throws Exception {
+            TomcatLauncher launcher = TomcatLauncher.configure().apply();
+            if (launcher.getCdsSettings().isTraining()) {
+                launcher.launch();
+            } else {
+                launcher.start().stop(0, TimeUnit.SECONDS);
+            }
+            System.exit(0);
+        }
+    }
+}
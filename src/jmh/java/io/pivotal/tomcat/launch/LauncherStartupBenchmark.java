@@ -0,0 +1,91 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launcher construction cost and cold launch-to-ready time. Each fork launches once, so the
+ * launch score is what a freshly started JVM pays, including class loading and the jar scan.
+ * The fast-start variant records its index in the first fork and replays it in the others.
+ * The lean variant skips the JSP servlet and Jasper's initializer, the heap in use once ready is
+ * printed with the startup report of each fork.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LauncherStartupBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class JarScan {
+
+        @Param({"none", "default", "full", "fastStart", "lean"})
+        public String mode;
+
+        ServerHandle handle;
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            if (handle != null) {
+                handle.stop(0, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BaseDir {
+
+        TomcatLauncher launcher;
+
+        // Every launcher creates its own base dir, remove it so the benchmark does not fill the disk
+        @TearDown(Level.Invocation)
+        public void delete() {
+            FileSystemUtils.deleteRecursively(launcher.getTomcat().getServer().getCatalinaBase());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public TomcatLauncher configure(BaseDir baseDir) throws Exception {
+        baseDir.launcher = TomcatLauncher.configure().port(0).apply();
+        return baseDir.launcher;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public TomcatLauncher launchToReady(JarScan scan) throws Exception {
+        TomcatConfigurer configurer = TomcatLauncher.configure().port(0);
+        TomcatLauncher launcher = configurer.apply();
+        if ("none".equals(scan.mode)) {
+            StandardJarScanner scanner = new StandardJarScanner();
+            scanner.setScanClassPath(false);
+            scanner.setScanManifest(false);
+            launcher.addJarScanner(launcher.getContext(), scanner);
+        } else if ("full".equals(scan.mode)) {
+            configurer.jarScanner();
+        } else if ("fastStart".equals(scan.mode)) {
+            configurer.fastStart();
+        } else if ("lean".equals(scan.mode)) {
+            configurer.lean();
+        }
+        scan.handle = launcher.start();
+        return launcher;
+    }
+}
@@ -0,0 +1,81 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of metrics collection: the difference between {@code baseline} and
+ * {@code metricsValve} is what {@link MetricsValve} adds to every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    private ValveBase terminal;
+
+    private MetricsValve metricsValve;
+
+    private LatencyHistogram histogram;
+
+    private Request request;
+
+    private Response response;
+
+    @Setup
+    public void setup() {
+        terminal = new ValveBase() {
+            @Override
+            public void invoke(Request request, Response response) {
+                // the servlet would run here
+            }
+        };
+        metricsValve = new MetricsValve();
+        metricsValve.setNext(terminal);
+        histogram = new LatencyHistogram();
+        Connector connector = new Connector();
+        request = connector.createRequest();
+        response = connector.createResponse();
+        response.setCoyoteResponse(new org.apache.coyote.Response());
+        response.getCoyoteResponse().setStatus(200);
+    }
+
+    @Benchmark
+    public void baseline() throws Exception {
+        terminal.invoke(request, response);
+    }
+
+    @Benchmark
+    public void metricsValve() throws Exception {
+        metricsValve.invoke(request, response);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void metricsValveContended() throws Exception {
+        metricsValve.invoke(request, response);
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(12345678L);
+    }
+}
@@ -0,0 +1,101 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launch-to-ready time of a sample deployment with four contexts, each with two load-on-startup
+ * servlets that take 100 ms to initialize and two warmed-up data sources, started serially and
+ * on four startup threads. Classpath scanning is off so that the score is not dominated by CPU
+ * bound work, which only overlaps on machines with several cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(3)
+public class ParallelStartupBenchmark {
+
+    private static final int CONTEXTS = 4;
+
+    private static final int SERVLETS = 2;
+
+    private static final int DATA_SOURCES = 2;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ServerHandle handle;
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        if (handle != null) {
+            handle.stop(0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    public TomcatLauncher launchToReady() throws Exception {
+        TomcatConfigurer configurer = TomcatLauncher.configure().port(0).parallelStartup(threads);
+        for (int i = 0; i < DATA_SOURCES; i++) {
+            configurer.dataSource("jdbc/main" + i)
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:mem:main" + i)
+                    .poolSize(4, 4, 8)
+                    .warmUp();
+        }
+        for (int app = 1; app < CONTEXTS; app++) {
+            WebAppConfigurer webApp = configurer.webApp("/app" + app, "src/main/webapp");
+            for (int i = 0; i < DATA_SOURCES; i++) {
+                DataSourceSettings settings = new DataSourceSettings("jdbc/app" + app + "_" + i);
+                settings.setDriverClassName("org.h2.Driver");
+                settings.setUrl("jdbc:h2:mem:app" + app + "_" + i);
+                settings.setInitialSize(4);
+                webApp.dataSource(settings);
+            }
+        }
+        TomcatLauncher launcher = configurer.warmUp().dataSources().and().apply();
+        for (WebApp webApp : launcher.getWebApps()) {
+            StandardJarScanner scanner = new StandardJarScanner();
+            scanner.setScanClassPath(false);
+            scanner.setScanManifest(false);
+            launcher.addJarScanner(webApp.getContext(), scanner);
+            addSlowServlets(webApp.getContext());
+        }
+        handle = launcher.start();
+        return launcher;
+    }
+
+    private static void addSlowServlets(Context ctx) {
+        for (int i = 0; i < SERVLETS; i++) {
+            Tomcat.addServlet(ctx, "slow" + i, new HttpServlet() {
+                @Override
+                public void init() throws ServletException {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).setLoadOnStartup(1);
+        }
+    }
+}
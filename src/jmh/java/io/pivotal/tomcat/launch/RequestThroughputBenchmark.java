@@ -0,0 +1,139 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process request throughput and latency through a launched Tomcat for a static file, a
+ * trivial servlet and a servlet that looks up a JNDI data source and runs a query on it.
+ * Sample time mode reports latency percentiles next to the mean.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class RequestThroughputBenchmark {
+
+    @Param({"static", "servlet", "jndi"})
+    public String target;
+
+    private ServerHandle handle;
+
+    private URL url;
+
+    @Setup(Level.Trial)
+    public void startTomcat() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure()
+                .port(0)
+                .dataSource("jdbc/bench")
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1")
+                    .credentials("sa", "")
+                    .poolSize(4, 4, 16)
+                    .warmUp()
+                    .and()
+                .apply();
+        Context ctx = launcher.getContext();
+
+        Path staticDir = Files.createTempDirectory("tomcat-bench-static");
+        staticDir.toFile().deleteOnExit();
+        char[] body = new char[4096];
+        Arrays.fill(body, 'x');
+        Files.write(staticDir.resolve("file.txt"), new String(body).getBytes(StandardCharsets.UTF_8));
+        WebResourceRoot resources = launcher.getWebResourceRoot();
+        resources.addPreResources(new DirResourceSet(resources, "/static", staticDir.toString(), "/"));
+
+        Tomcat.addServlet(ctx, "hello", new HelloServlet());
+        ctx.addServletMappingDecoded("/hello", "hello");
+        Tomcat.addServlet(ctx, "jndi", new JndiServlet());
+        ctx.addServletMappingDecoded("/jndi", "jndi");
+
+        handle = launcher.start();
+        String path = "static".equals(target) ? "/static/file.txt" : "servlet".equals(target) ? "/hello" : "/jndi";
+        url = new URL("http://localhost:" + handle.getPort() + ctx.getPath() + path);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTomcat() {
+        handle.stop(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public int request() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            while (in.read() != -1) {
+                // drain so the connection can be kept alive
+            }
+        }
+        return connection.getResponseCode();
+    }
+
+    static class HelloServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.getWriter().write("hello");
+        }
+    }
+
+    static class JndiServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+            try {
+                DataSource dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/bench");
+                try (Connection connection = dataSource.getConnection();
+                     Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery("SELECT 1")) {
+                    result.next();
+                    resp.setContentType("text/plain");
+                    resp.getWriter().print(result.getInt(1));
+                }
+            } catch (NamingException | SQLException e) {
+                throw new ServletException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.pivotal.tomcat.launch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate of full and of resumed TLS handshakes against a launched Tomcat over loopback, per TLS
+ * engine. A full handshake invalidates the client's session first, a resumed one reuses the
+ * session from the server's cache, or the session ticket with the OpenSSL engine. Without
+ * tomcat-native the openssl engine falls back to JSSE, see the startup output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class TlsHandshakeBenchmark {
+
+    private static final String HOST = "localhost";
+
+    @Param({"jsse", "openssl"})
+    public String engine;
+
+    private ServerHandle handle;
+
+    private SSLContext client;
+
+    @Setup(Level.Trial)
+    public void startTomcat() throws Exception {
+        Path certs = Files.createTempDirectory("tomcat-bench-tls");
+        certs.toFile().deleteOnExit();
+        Path certificate = copy("localhost.crt", certs);
+        Path key = copy("localhost.key", certs);
+        TomcatLauncher launcher = TomcatLauncher.configure()
+                .port(0)
+                .tls(0)
+                    .certificate(HOST, certificate, key)
+                    .engine(TlsSettings.Engine.valueOf(engine.toUpperCase()))
+                    .sessionCache(10000, 1, TimeUnit.HOURS)
+                    .and()
+                .apply();
+        handle = launcher.start();
+        client = trustAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTomcat() {
+        handle.stop(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public byte[] fullHandshake() throws IOException {
+        return handshake(true);
+    }
+
+    @Benchmark
+    public byte[] resumedHandshake() throws IOException {
+        return handshake(false);
+    }
+
+    private byte[] handshake(boolean full) throws IOException {
+        try (SSLSocket socket = (SSLSocket) client.getSocketFactory().createSocket("127.0.0.1", handle.getTlsPort())) {
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setServerNames(Collections.<SNIServerName>singletonList(new SNIHostName(HOST)));
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+            if (full) {
+                // The next handshake from this client can not resume it
+                socket.getSession().invalidate();
+            }
+            return socket.getSession().getId();
+        }
+    }
+
+    private static Path copy(String name, Path dir) throws IOException {
+        Path target = dir.resolve(name);
+        try (InputStream in = TlsHandshakeBenchmark.class.getResourceAsStream("/tls/" + name)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        target.toFile().deleteOnExit();
+        return target;
+    }
+
+    private static SSLContext trustAll() throws Exception {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[] {new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return context;
+    }
+}
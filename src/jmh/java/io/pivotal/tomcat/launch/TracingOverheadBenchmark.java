@@ -0,0 +1,56 @@
+package io.pivotal.tomcat.launch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-task cost of the queue timing that tracing adds to the shared executor: the difference
+ * between {@code untimed} and {@code queueTimed} is the wrapper of
+ * {@link RequestTrace#queued(Runnable)}. Run with {@code -prof gc} to see the bytes it allocates
+ * per task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TracingOverheadBenchmark {
+
+    private Runnable task;
+
+    @Setup
+    public void setup() {
+        task = new Runnable() {
+            @Override
+            public void run() {
+                // the socket processor would run here
+            }
+        };
+    }
+
+    @Benchmark
+    public void untimed(Blackhole blackhole) {
+        blackhole.consume(task);
+        task.run();
+    }
+
+    @Benchmark
+    public void queueTimed(Blackhole blackhole) {
+        // Submitted and run on the same thread, the wrapper escapes to the executor's queue in practice
+        Runnable queued = RequestTrace.queued(task);
+        blackhole.consume(queued);
+        queued.run();
+    }
+}
@@ -0,0 +1,109 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the default connector thread pool with the virtual thread executor on a servlet that
+ * blocks the way a JDBC call does. Sample time mode reports the p99 next to the mean.
+ * Virtual threads are only used on Java 21+, older JVMs measure the platform fallback pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(400)
+public class VirtualThreadBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String executor;
+
+    @Param({"20"})
+    public long blockMillis;
+
+    private ServerHandle handle;
+
+    private URL url;
+
+    @Setup(Level.Trial)
+    public void startTomcat() throws Exception {
+        TomcatConfigurer configurer = TomcatLauncher.configure()
+                .port(0)
+                .connector()
+                    .maxThreads(200)
+                    .maxConnections(10000)
+                    .acceptCount(1000)
+                .and();
+        if ("virtual".equals(executor)) {
+            configurer.virtualThreads();
+        }
+        TomcatLauncher launcher = configurer.apply();
+        Context ctx = launcher.getContext();
+        Tomcat.addServlet(ctx, "blocking", new BlockingServlet(blockMillis));
+        ctx.addServletMappingDecoded("/blocking", "blocking");
+
+        handle = launcher.start();
+        url = new URL("http://localhost:" + handle.getPort() + "/blocking");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTomcat() {
+        handle.stop(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public int blockingRequest() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            while (in.read() != -1) {
+                // drain so the connection can be kept alive
+            }
+        }
+        return connection.getResponseCode();
+    }
+
+    static class BlockingServlet extends HttpServlet {
+
+        private final long blockMillis;
+
+        BlockingServlet(long blockMillis) {
+            this.blockMillis = blockMillis;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            try {
+                Thread.sleep(blockMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().write("ok");
+        }
+    }
+}
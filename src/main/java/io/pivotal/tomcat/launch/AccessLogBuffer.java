@@ -0,0 +1,125 @@
+package io.pivotal.tomcat.launch;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded ring of preallocated access log entries with many producers and a single consumer.
+ * A producer claims a slot with a compare-and-set on the tail and fills it in place, the writer
+ * reads the slots in order and hands them back. The sequence of every slot tells whose turn it
+ * is, so neither side takes a lock.
+ */
+class AccessLogBuffer {
+
+    static final class Entry {
+
+        private volatile long sequence;
+
+        private long position;
+
+        long timestamp;
+
+        String remoteAddr;
+
+        String remoteUser;
+
+        String method;
+
+        String uri;
+
+        String query;
+
+        String protocol;
+
+        int status;
+
+        long bytes;
+
+        long millis;
+
+        private void clear() {
+            remoteAddr = null;
+            remoteUser = null;
+            method = null;
+            uri = null;
+            query = null;
+            protocol = null;
+        }
+    }
+
+    private final Entry[] entries;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Only written by the writer, volatile for {@link #size()}.
+     */
+    private volatile long head;
+
+    AccessLogBuffer(int capacity) {
+        // With a single slot a released entry cannot be told apart from a published one
+        Assert.isTrue(capacity >= 2 && Integer.bitCount(capacity) == 1,
+                "Buffer capacity must be a power of two of at least 2");
+        this.entries = new Entry[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new Entry();
+            entries[i].sequence = i;
+        }
+    }
+
+    /**
+     * Claims the next free slot, or returns {@code null} if the buffer is full. The slot has to be
+     * filled and {@link #publish(Entry) published}.
+     */
+    Entry claim() {
+        long position = tail.get();
+        while (true) {
+            Entry entry = entries[(int) position & mask];
+            long difference = entry.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    entry.position = position;
+                    return entry;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    void publish(Entry entry) {
+        entry.sequence = entry.position + 1;
+    }
+
+    /**
+     * Returns the oldest published entry without removing it, or {@code null}. Writer only.
+     */
+    Entry peek() {
+        Entry entry = entries[(int) head & mask];
+        return entry.sequence == head + 1 ? entry : null;
+    }
+
+    /**
+     * Hands the entry returned by {@link #peek()} back to the producers. Writer only.
+     */
+    void release(Entry entry) {
+        entry.clear();
+        entry.sequence = head + entries.length;
+        head = head + 1;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+}
@@ -0,0 +1,56 @@
+package io.pivotal.tomcat.launch;
+
+import java.nio.file.Path;
+
+public class AccessLogConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final AccessLogSettings settings;
+
+    public AccessLogConfigurer(TomcatConfigurer parent, AccessLogSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    /**
+     * Directory of the log files, relative paths are resolved against the base directory.
+     */
+    public AccessLogConfigurer directory(Path directory) {
+        settings.setDirectory(directory);
+        return this;
+    }
+
+    public AccessLogConfigurer prefix(String prefix) {
+        settings.setPrefix(prefix);
+        return this;
+    }
+
+    /**
+     * Number of entries buffered for the writer, a power of two of at least 2.
+     */
+    public AccessLogConfigurer bufferSize(int entries) {
+        settings.setBufferSize(entries);
+        return this;
+    }
+
+    /**
+     * Drops and counts entries while the buffer is full, the default.
+     */
+    public AccessLogConfigurer dropWhenFull() {
+        settings.setWhenFull(AccessLogSettings.WhenFull.DROP);
+        return this;
+    }
+
+    /**
+     * Makes request threads wait for the writer while the buffer is full.
+     */
+    public AccessLogConfigurer blockWhenFull() {
+        settings.setWhenFull(AccessLogSettings.WhenFull.BLOCK);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
@@ -0,0 +1,126 @@
+package io.pivotal.tomcat.launch;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Opt-in access log written asynchronously, see {@link AsyncAccessLogValve}. The valve is
+ * installed first on the host, the directory defaults to {@code logs} under the base directory.
+ */
+public class AccessLogSettings {
+
+    public static final String ENV_ACCESS_LOG = "TOMCAT_ACCESS_LOG";
+
+    public static final String ENV_ACCESS_LOG_DIR = "TOMCAT_ACCESS_LOG_DIR";
+
+    public static final String ENV_ACCESS_LOG_BUFFER = "TOMCAT_ACCESS_LOG_BUFFER";
+
+    public static final String ENV_ACCESS_LOG_WHEN_FULL = "TOMCAT_ACCESS_LOG_WHEN_FULL";
+
+    /**
+     * What request threads do when the writer falls behind and the buffer is full.
+     */
+    public enum WhenFull {
+        DROP, BLOCK
+    }
+
+    private boolean enabled = false;
+
+    private Path directory = Paths.get("logs");
+
+    private String prefix = "access_log";
+
+    private int bufferSize = 8192;
+
+    private WhenFull whenFull = WhenFull.DROP;
+
+    private AsyncAccessLogValve valve;
+
+    /**
+     * Reads access log settings from the given environment, the overflow policy as {@code drop}
+     * or {@code block}.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_ACCESS_LOG))) {
+            setEnabled(Boolean.valueOf(env.get(ENV_ACCESS_LOG).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_ACCESS_LOG_DIR))) {
+            setDirectory(Paths.get(env.get(ENV_ACCESS_LOG_DIR).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_ACCESS_LOG_BUFFER))) {
+            setBufferSize(Integer.valueOf(env.get(ENV_ACCESS_LOG_BUFFER).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_ACCESS_LOG_WHEN_FULL))) {
+            setWhenFull(WhenFull.valueOf(env.get(ENV_ACCESS_LOG_WHEN_FULL).trim().toUpperCase(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Returns the valve, created with the current settings on first use.
+     */
+    public AsyncAccessLogValve getValve() {
+        if (valve == null) {
+            valve = new AsyncAccessLogValve(directory, prefix, bufferSize, whenFull == WhenFull.BLOCK);
+        }
+        return valve;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Directory of the log files, relative paths are resolved against the base directory.
+     */
+    public void setDirectory(Path directory) {
+        Assert.notNull(directory, "Access log directory cannot be null");
+        this.directory = directory;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * File name prefix, files are named {@code <prefix>.<yyyy-MM-dd>.log}.
+     */
+    public void setPrefix(String prefix) {
+        Assert.hasText(prefix, "Access log prefix cannot be empty");
+        this.prefix = prefix;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Number of entries buffered for the writer, a power of two of at least 2.
+     */
+    public void setBufferSize(int bufferSize) {
+        Assert.isTrue(bufferSize >= 2 && Integer.bitCount(bufferSize) == 1,
+                "Buffer size must be a power of two of at least 2");
+        this.bufferSize = bufferSize;
+    }
+
+    public WhenFull getWhenFull() {
+        return whenFull;
+    }
+
+    public void setWhenFull(WhenFull whenFull) {
+        Assert.notNull(whenFull, "Overflow policy cannot be null");
+        this.whenFull = whenFull;
+    }
+}
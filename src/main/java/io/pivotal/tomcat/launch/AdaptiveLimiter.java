@@ -0,0 +1,176 @@
+package io.pivotal.tomcat.launch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit of one context that adapts to the observed latency (AIMD). Every request that
+ * completes within the target latency while the limit is being used grows the limit by one over
+ * the course of a full window of requests, a slower request shrinks it by the backoff ratio. The
+ * limit shrinks at most once per round trip, i.e. only for requests that started after the
+ * previous decrease, so one burst of slow requests does not collapse it.
+ */
+public class AdaptiveLimiter {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long targetLatencyNanos;
+
+    private final double backoffRatio;
+
+    private final int maxQueued;
+
+    private final long queueTimeoutNanos;
+
+    private final AtomicLong limitBits;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private volatile long lastDecreaseNanos = System.nanoTime();
+
+    private final Object queue = new Object();
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder shed = new LongAdder();
+
+    private final LongAdder queued = new LongAdder();
+
+    public AdaptiveLimiter(AdmissionSettings settings) {
+        this.minLimit = settings.getMinLimit();
+        this.maxLimit = settings.getMaxLimit();
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(settings.getTargetLatencyMillis());
+        this.backoffRatio = settings.getBackoffRatio();
+        this.maxQueued = settings.getMaxQueued();
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(settings.getQueueTimeoutMillis());
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(
+                Math.max(minLimit, Math.min(maxLimit, settings.getInitialLimit()))));
+    }
+
+    /**
+     * Takes a slot if the request fits under the limit, waiting a short while in the queue if
+     * allowed. Low priority requests only get a slot while less than half of the limit is in use
+     * and never wait.
+     */
+    public boolean acquire(boolean lowPriority) {
+        int limit = getLimit();
+        if (tryAcquire(lowPriority ? Math.max(1, limit / 2) : limit)) {
+            admitted.increment();
+            return true;
+        }
+        if (lowPriority || queueTimeoutNanos <= 0) {
+            shed.increment();
+            return false;
+        }
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            shed.increment();
+            return false;
+        }
+        queued.increment();
+        try {
+            long deadline = System.nanoTime() + queueTimeoutNanos;
+            synchronized (queue) {
+                while (!tryAcquire(getLimit())) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        shed.increment();
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(queue, remaining);
+                }
+            }
+            admitted.increment();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shed.increment();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private boolean tryAcquire(int limit) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives the slot back and adapts the limit to the latency of the request that held it.
+     */
+    public void release(long startNanos) {
+        int current = inFlight.getAndDecrement();
+        onSample(startNanos, System.nanoTime() - startNanos, current);
+        if (waiting.get() > 0) {
+            synchronized (queue) {
+                queue.notify();
+            }
+        }
+    }
+
+    void onSample(long startNanos, long latencyNanos, int inFlightAtRelease) {
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            double updated;
+            if (latencyNanos > targetLatencyNanos) {
+                if (startNanos - lastDecreaseNanos < 0) {
+                    // Started before the last decrease took effect
+                    return;
+                }
+                updated = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlightAtRelease * 2 >= limit) {
+                updated = Math.min(maxLimit, limit + 1 / limit);
+            } else {
+                return;
+            }
+            if (updated == limit) {
+                return;
+            }
+            if (limitBits.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                if (updated < limit) {
+                    lastDecreaseNanos = System.nanoTime();
+                }
+                return;
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public long getQueued() {
+        return queued.sum();
+    }
+}
@@ -0,0 +1,68 @@
+package io.pivotal.tomcat.launch;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final AdmissionSettings settings;
+
+    public AdmissionConfigurer(TomcatConfigurer parent, AdmissionSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    /**
+     * Concurrent requests per context, the limit adapts between the minimum and the maximum.
+     */
+    public AdmissionConfigurer limits(int initialLimit, int minLimit, int maxLimit) {
+        settings.setLimits(initialLimit, minLimit, maxLimit);
+        return this;
+    }
+
+    /**
+     * Requests slower than this shrink the limit, faster ones grow it while it is in use.
+     */
+    public AdmissionConfigurer targetLatency(long latency, TimeUnit unit) {
+        settings.setTargetLatencyMillis(unit.toMillis(latency));
+        return this;
+    }
+
+    /**
+     * Lets up to the given number of requests over the limit wait for a slot before they are shed.
+     */
+    public AdmissionConfigurer queue(int maxQueued, long timeout, TimeUnit unit) {
+        settings.setQueue(maxQueued, unit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * Paths within the context, e.g. {@code /health}, that are always admitted.
+     */
+    public AdmissionConfigurer critical(String... pathPrefixes) {
+        for (String prefix : pathPrefixes) {
+            settings.addCriticalPath(prefix);
+        }
+        return this;
+    }
+
+    /**
+     * Paths within the context that are shed once half of the limit is in use.
+     */
+    public AdmissionConfigurer lowPriority(String... pathPrefixes) {
+        for (String prefix : pathPrefixes) {
+            settings.addLowPriorityPath(prefix);
+        }
+        return this;
+    }
+
+    public AdmissionConfigurer retryAfter(int seconds) {
+        settings.setRetryAfterSeconds(seconds);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
@@ -0,0 +1,232 @@
+package io.pivotal.tomcat.launch;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admission control in front of the servlet pipeline, see {@link AdmissionValve}. Each context
+ * path gets its own {@link AdaptiveLimiter}, requests over the limit are rejected right away with
+ * a 503 and a Retry-After header instead of piling up behind threads that wait on a slow
+ * database.
+ * <p>
+ * Requests are split into priority classes by path within the context: critical paths, the
+ * health checks by default, bypass the limit, low priority paths are shed first.
+ */
+public class AdmissionSettings {
+
+    public static final String ENV_ADMISSION = "TOMCAT_ADMISSION";
+
+    public static final String ENV_ADMISSION_LIMIT = "TOMCAT_ADMISSION_LIMIT";
+
+    public static final String ENV_ADMISSION_TARGET_LATENCY = "TOMCAT_ADMISSION_TARGET_LATENCY";
+
+    public static final String ENV_ADMISSION_CRITICAL_PATHS = "TOMCAT_ADMISSION_CRITICAL_PATHS";
+
+    public static final String ENV_ADMISSION_LOW_PRIORITY_PATHS = "TOMCAT_ADMISSION_LOW_PRIORITY_PATHS";
+
+    public static final List<String> DEFAULT_CRITICAL_PATHS = Arrays.asList("/health", "/ready", "/actuator/health");
+
+    public enum Priority {
+        CRITICAL, NORMAL, LOW
+    }
+
+    private boolean enabled = false;
+
+    private int initialLimit = 20;
+
+    private int minLimit = 1;
+
+    private int maxLimit = 200;
+
+    private long targetLatencyMillis = 500;
+
+    private double backoffRatio = 0.9;
+
+    private int maxQueued = 0;
+
+    private long queueTimeoutMillis = 0;
+
+    private int retryAfterSeconds = 1;
+
+    private final List<String> criticalPaths = new ArrayList<>(DEFAULT_CRITICAL_PATHS);
+
+    private final List<String> lowPriorityPaths = new ArrayList<>();
+
+    private AdmissionValve valve;
+
+    /**
+     * Reads admission settings from the given environment. The limit is {@code initial,min,max}
+     * or a single fixed value, the target latency is in milliseconds and paths are comma
+     * separated prefixes.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_ADMISSION))) {
+            setEnabled(Boolean.valueOf(env.get(ENV_ADMISSION).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_ADMISSION_LIMIT))) {
+            String[] limits = StringUtils.commaDelimitedListToStringArray(env.get(ENV_ADMISSION_LIMIT));
+            if (limits.length == 1) {
+                int limit = Integer.parseInt(limits[0].trim());
+                setLimits(limit, limit, limit);
+            } else {
+                Assert.isTrue(limits.length == 3, ENV_ADMISSION_LIMIT + " must be 'limit' or 'initial,min,max'");
+                setLimits(Integer.parseInt(limits[0].trim()), Integer.parseInt(limits[1].trim()),
+                        Integer.parseInt(limits[2].trim()));
+            }
+        }
+        if (StringUtils.hasText(env.get(ENV_ADMISSION_TARGET_LATENCY))) {
+            setTargetLatencyMillis(Long.valueOf(env.get(ENV_ADMISSION_TARGET_LATENCY).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_ADMISSION_CRITICAL_PATHS))) {
+            criticalPaths.clear();
+            for (String path : StringUtils.commaDelimitedListToStringArray(env.get(ENV_ADMISSION_CRITICAL_PATHS))) {
+                addCriticalPath(path.trim());
+            }
+        }
+        if (StringUtils.hasText(env.get(ENV_ADMISSION_LOW_PRIORITY_PATHS))) {
+            for (String path : StringUtils.commaDelimitedListToStringArray(env.get(ENV_ADMISSION_LOW_PRIORITY_PATHS))) {
+                addLowPriorityPath(path.trim());
+            }
+        }
+    }
+
+    /**
+     * Priority class of a request to the given path within its context. A path matches a prefix
+     * on whole segments only, {@code /health} matches {@code /health/db} but not
+     * {@code /healthcare}.
+     */
+    public Priority getPriority(String path) {
+        for (String prefix : criticalPaths) {
+            if (matches(path, prefix)) {
+                return Priority.CRITICAL;
+            }
+        }
+        for (String prefix : lowPriorityPaths) {
+            if (matches(path, prefix)) {
+                return Priority.LOW;
+            }
+        }
+        return Priority.NORMAL;
+    }
+
+    private static boolean matches(String path, String prefix) {
+        if (prefix.endsWith("/")) {
+            return path.startsWith(prefix) || path.equals(prefix.substring(0, prefix.length() - 1));
+        }
+        return path.equals(prefix) || path.startsWith(prefix + "/");
+    }
+
+    /**
+     * Returns the valve, which reads these settings whenever it creates the limiter of a context.
+     */
+    public AdmissionValve getValve() {
+        if (valve == null) {
+            valve = new AdmissionValve(this);
+        }
+        return valve;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Concurrent requests per context, the limit starts at the initial value and adapts between
+     * the minimum and the maximum. Equal values fix the limit.
+     */
+    public void setLimits(int initialLimit, int minLimit, int maxLimit) {
+        Assert.isTrue(minLimit > 0, "Minimum limit must be positive");
+        Assert.isTrue(minLimit <= initialLimit && initialLimit <= maxLimit,
+                "Initial limit must be between the minimum and the maximum");
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public long getTargetLatencyMillis() {
+        return targetLatencyMillis;
+    }
+
+    /**
+     * Requests slower than this shrink the limit.
+     */
+    public void setTargetLatencyMillis(long targetLatencyMillis) {
+        Assert.isTrue(targetLatencyMillis > 0, "Target latency must be positive");
+        this.targetLatencyMillis = targetLatencyMillis;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        Assert.isTrue(backoffRatio > 0 && backoffRatio < 1, "Backoff ratio must be between 0 and 1");
+        this.backoffRatio = backoffRatio;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public long getQueueTimeoutMillis() {
+        return queueTimeoutMillis;
+    }
+
+    /**
+     * Lets up to the given number of requests over the limit wait for a slot before they are shed.
+     */
+    public void setQueue(int maxQueued, long queueTimeoutMillis) {
+        Assert.isTrue(maxQueued >= 0, "Queue size cannot be negative");
+        Assert.isTrue(queueTimeoutMillis >= 0, "Queue timeout cannot be negative");
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        Assert.isTrue(retryAfterSeconds >= 0, "Retry-After cannot be negative");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public List<String> getCriticalPaths() {
+        return criticalPaths;
+    }
+
+    public void addCriticalPath(String prefix) {
+        Assert.hasText(prefix, "Path cannot be empty");
+        criticalPaths.add(prefix);
+    }
+
+    public List<String> getLowPriorityPaths() {
+        return lowPriorityPaths;
+    }
+
+    public void addLowPriorityPath(String prefix) {
+        Assert.hasText(prefix, "Path cannot be empty");
+        lowPriorityPaths.add(prefix);
+    }
+}
@@ -0,0 +1,131 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits requests per context under an {@link AdaptiveLimiter} and sheds the rest with a 503.
+ * Asynchronous requests keep their slot until they complete, including across dispatches.
+ */
+public class AdmissionValve extends ValveBase {
+
+    private final AdmissionSettings settings;
+
+    private final ConcurrentMap<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final LongAdder critical = new LongAdder();
+
+    public AdmissionValve(AdmissionSettings settings) {
+        super(true);
+        this.settings = settings;
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        Context context = request.getContext();
+        // An async dispatch still holds the slot it was admitted with until it completes. Tomcat only
+        // sets the ASYNC dispatcher type in the wrapper valve, so host valves see isAsyncDispatching()
+        if (context == null || request.getDispatcherType() == DispatcherType.ASYNC || request.isAsyncDispatching()) {
+            getNext().invoke(request, response);
+            return;
+        }
+        String uri = request.getDecodedRequestURI();
+        String path = uri.length() > context.getPath().length() ? uri.substring(context.getPath().length()) : "/";
+        AdmissionSettings.Priority priority = settings.getPriority(path);
+        if (priority == AdmissionSettings.Priority.CRITICAL) {
+            critical.increment();
+            getNext().invoke(request, response);
+            return;
+        }
+        AdaptiveLimiter limiter = getLimiter(context.getPath());
+        if (!limiter.acquire(priority == AdmissionSettings.Priority.LOW)) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", Integer.toString(settings.getRetryAfterSeconds()));
+            response.setContentLength(0);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            getNext().invoke(request, response);
+            if (request.isAsync()) {
+                request.getAsyncContext().addListener(new Release(limiter, start));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                limiter.release(start);
+            }
+        }
+    }
+
+    private AdaptiveLimiter getLimiter(String contextPath) {
+        AdaptiveLimiter limiter = limiters.get(contextPath);
+        if (limiter == null) {
+            AdaptiveLimiter created = new AdaptiveLimiter(settings);
+            limiter = limiters.putIfAbsent(contextPath, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Limiters by context path, only contexts that received requests have one.
+     */
+    public Map<String, AdaptiveLimiter> getLimiters() {
+        return limiters;
+    }
+
+    /**
+     * Number of critical requests, which are admitted without a limit.
+     */
+    public long getCritical() {
+        return critical.sum();
+    }
+
+    private static class Release implements AsyncListener {
+
+        private final AdaptiveLimiter limiter;
+
+        private final long start;
+
+        Release(AdaptiveLimiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limiter.release(start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // A new async cycle keeps the slot, the listener has to be registered again
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
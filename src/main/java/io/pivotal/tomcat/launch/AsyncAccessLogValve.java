@@ -0,0 +1,292 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.AccessLog;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log that keeps formatting and file writes off the request threads. Tomcat calls
+ * {@link #log(Request, Response, long)} once a request is complete, including asynchronous
+ * requests and those rejected by later valves. The request thread copies the fields into a
+ * preallocated slot of an {@link AccessLogBuffer}, and a single writer thread formats the entries
+ * in batches and appends them to a file that rotates daily.
+ * <p>
+ * Lines are in common log format followed by the processing time in milliseconds. When the
+ * buffer is full entries are dropped and counted, or the request thread waits for the writer.
+ */
+public class AsyncAccessLogValve extends ValveBase implements AccessLog {
+
+    static final int BATCH_SIZE = 512;
+
+    static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final AccessLogBuffer buffer;
+
+    private final Path directory;
+
+    private final String prefix;
+
+    private final boolean blockWhenFull;
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean running;
+
+    private boolean requestAttributesEnabled;
+
+    private Thread writer;
+
+    private Path logDirectory;
+
+    public AsyncAccessLogValve(Path directory, String prefix, int bufferSize, boolean blockWhenFull) {
+        super(true);
+        this.buffer = new AccessLogBuffer(bufferSize);
+        this.directory = directory;
+        this.prefix = prefix;
+        this.blockWhenFull = blockWhenFull;
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        getNext().invoke(request, response);
+    }
+
+    @Override
+    public void log(Request request, Response response, long time) {
+        AccessLogBuffer.Entry entry = buffer.claim();
+        while (entry == null) {
+            if (!blockWhenFull || !running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+            entry = buffer.claim();
+        }
+        entry.timestamp = request.getCoyoteRequest().getStartTime();
+        entry.remoteAddr = remoteAddr(request);
+        entry.remoteUser = request.getRemoteUser();
+        entry.method = request.getMethod();
+        entry.uri = request.getRequestURI();
+        entry.query = request.getQueryString();
+        entry.protocol = request.getProtocol();
+        entry.status = response.getStatus();
+        entry.bytes = response.getBytesWritten(false);
+        entry.millis = time;
+        buffer.publish(entry);
+    }
+
+    private String remoteAddr(Request request) {
+        if (requestAttributesEnabled) {
+            Object addr = request.getAttribute(REMOTE_ADDR_ATTRIBUTE);
+            if (addr != null) {
+                return addr.toString();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        logDirectory = directory.isAbsolute() ? directory
+                : getContainer().getCatalinaBase().toPath().resolve(directory);
+        running = true;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        super.startInternal();
+    }
+
+    /**
+     * Writes what is left in the buffer before the writer stops.
+     */
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        super.stopInternal();
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        BatchWriter out = new BatchWriter();
+        try {
+            while (true) {
+                int count = out.drain();
+                if (count == 0) {
+                    if (!running) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } finally {
+            // Request threads must not wait for a writer that is gone
+            running = false;
+            out.close();
+        }
+    }
+
+    /**
+     * State of the writer thread, which formats the entries of a batch into one reused builder.
+     */
+    private class BatchWriter {
+
+        private final StringBuilder batch = new StringBuilder(BATCH_SIZE * 128);
+
+        private final SimpleDateFormat timestampFormat = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+
+        private final SimpleDateFormat fileDateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+
+        private long formattedSecond = -1;
+
+        private String formattedTimestamp;
+
+        private String fileDate;
+
+        private Writer out;
+
+        int drain() {
+            batch.setLength(0);
+            int count = 0;
+            AccessLogBuffer.Entry entry;
+            int formatted = 0;
+            while (count < BATCH_SIZE && (entry = buffer.peek()) != null) {
+                int length = batch.length();
+                try {
+                    format(entry);
+                    formatted++;
+                } catch (RuntimeException e) {
+                    batch.setLength(length);
+                    dropped.increment();
+                    System.out.println("failed to format access log entry: " + e);
+                } finally {
+                    buffer.release(entry);
+                }
+                count++;
+            }
+            if (formatted > 0) {
+                try {
+                    open(System.currentTimeMillis()).append(batch).flush();
+                    written.add(formatted);
+                } catch (IOException | RuntimeException e) {
+                    // The writer thread keeps going, a later batch may succeed again
+                    dropped.add(formatted);
+                    System.out.println("failed to write " + formatted + " access log entries: " + e);
+                    close();
+                }
+            }
+            return count;
+        }
+
+        private void format(AccessLogBuffer.Entry entry) {
+            batch.append(entry.remoteAddr).append(" - ").append(entry.remoteUser != null ? entry.remoteUser : "-")
+                    .append(" [").append(timestamp(entry.timestamp)).append("] \"")
+                    .append(entry.method).append(' ').append(entry.uri);
+            if (entry.query != null) {
+                batch.append('?').append(entry.query);
+            }
+            batch.append(' ').append(entry.protocol).append("\" ").append(entry.status).append(' ');
+            if (entry.bytes > 0) {
+                batch.append(entry.bytes);
+            } else {
+                batch.append('-');
+            }
+            batch.append(' ').append(entry.millis).append('\n');
+        }
+
+        private String timestamp(long millis) {
+            long second = millis / 1000;
+            if (second != formattedSecond) {
+                formattedTimestamp = timestampFormat.format(new Date(millis));
+                formattedSecond = second;
+            }
+            return formattedTimestamp;
+        }
+
+        /**
+         * Returns the writer for today's file, rotating when the date has changed.
+         */
+        private Writer open(long now) throws IOException {
+            String date = fileDateFormat.format(new Date(now));
+            if (out != null && date.equals(fileDate)) {
+                return out;
+            }
+            close();
+            Files.createDirectories(logDirectory);
+            out = Files.newBufferedWriter(logDirectory.resolve(prefix + "." + date + ".log"), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            fileDate = date;
+            return out;
+        }
+
+        void close() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.out.println("failed to close access log: " + e.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    @Override
+    public void setRequestAttributesEnabled(boolean requestAttributesEnabled) {
+        this.requestAttributesEnabled = requestAttributesEnabled;
+    }
+
+    @Override
+    public boolean getRequestAttributesEnabled() {
+        return requestAttributesEnabled;
+    }
+
+    public Path getLogDirectory() {
+        return logDirectory;
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Entries waiting for the writer.
+     */
+    public int getPending() {
+        return buffer.size();
+    }
+}
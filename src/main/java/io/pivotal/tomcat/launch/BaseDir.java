@@ -0,0 +1,225 @@
+package io.pivotal.tomcat.launch;
+
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tomcat base directory owned by one launcher, which locks it when it starts and holds the lock
+ * until it stops. The default is a fresh temporary directory that is deleted on stop. A
+ * persistent directory is kept, so the work directory with the compiled JSPs and persisted
+ * sessions survives restarts, and is only cleared when the build hash of the application changes.
+ * <p>
+ * Temporary directories carry a marker file, and the lock tells abandoned ones, left behind by
+ * launchers that were killed, from those of running launchers, see
+ * {@link #collectGarbage(Path, long)}.
+ */
+public class BaseDir implements Closeable {
+
+    public static final String ENV_BASE_DIR = "TOMCAT_BASE_DIR";
+
+    public static final String ENV_BUILD_HASH = "TOMCAT_BUILD_HASH";
+
+    public static final String TEMP_PREFIX = "tomcat-base-dir";
+
+    public static final String LOCK_FILE = ".lock";
+
+    /**
+     * Marks the directories created by {@link #createTemporary()}, only those are ever collected.
+     */
+    public static final String TEMP_MARKER_FILE = ".tomcat-launcher-temp";
+
+    public static final String BUILD_HASH_FILE = ".build-hash";
+
+    public static final String WORK_DIR = "work";
+
+    /**
+     * Temporary directories without a lock file belong to launchers that were configured but not
+     * started yet, they are only collected once they are this old.
+     */
+    public static final long UNLOCKED_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    private final Path path;
+
+    private final boolean temporary;
+
+    private FileChannel channel;
+
+    private FileLock lock;
+
+    private BaseDir(Path path, boolean temporary) {
+        this.path = path;
+        this.temporary = temporary;
+    }
+
+    /**
+     * Creates a marked temporary directory, which is not locked until {@link #lock()}.
+     */
+    public static BaseDir createTemporary() throws IOException {
+        Path path = Files.createTempDirectory(TEMP_PREFIX);
+        Files.createFile(path.resolve(TEMP_MARKER_FILE));
+        return new BaseDir(path, true);
+    }
+
+    /**
+     * Uses the given directory, creating it if needed, without locking it yet.
+     */
+    public static BaseDir persistent(Path path) throws IOException {
+        Files.createDirectories(path);
+        return new BaseDir(path.toAbsolutePath(), false);
+    }
+
+    /**
+     * Uses and locks the given directory, see {@link #persistent(Path)} and {@link #lock()}.
+     */
+    public static BaseDir acquire(Path path) throws IOException {
+        return persistent(path).lock();
+    }
+
+    /**
+     * Locks the directory until {@link #close()}. Fails if another launcher, in this or another
+     * JVM, uses it.
+     */
+    public synchronized BaseDir lock() throws IOException {
+        if (lock != null) {
+            return this;
+        }
+        FileChannel opened = FileChannel.open(path.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = opened.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            opened.close();
+            throw new IllegalStateException("Base directory '" + path + "' is in use by another launcher");
+        }
+        this.channel = opened;
+        this.lock = acquired;
+        return this;
+    }
+
+    /**
+     * Keeps the work directory if it was written by a build with the given hash, otherwise clears
+     * it and records the hash. Returns whether the work directory was kept.
+     */
+    public boolean reuse(String buildHash) throws IOException {
+        Path hashFile = path.resolve(BUILD_HASH_FILE);
+        Path workDir = path.resolve(WORK_DIR);
+        if (Files.isRegularFile(hashFile)
+                && buildHash.equals(new String(Files.readAllBytes(hashFile), StandardCharsets.UTF_8).trim())) {
+            return Files.isDirectory(workDir);
+        }
+        FileSystemUtils.deleteRecursively(workDir.toFile());
+        Files.write(hashFile, buildHash.getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    /**
+     * Deletes the marked temporary base directories under the given root that no running launcher
+     * holds a lock on. Returns the number of directories deleted.
+     */
+    public static int collectGarbage(Path tempRoot, long unlockedMaxAge) {
+        int deleted = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(tempRoot, TEMP_PREFIX + "*")) {
+            for (Path dir : dirs) {
+                if (Files.isDirectory(dir) && Files.isRegularFile(dir.resolve(TEMP_MARKER_FILE))
+                        && isAbandoned(dir, unlockedMaxAge)
+                        && FileSystemUtils.deleteRecursively(dir.toFile())) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("could not clean up stale base directories in '" + tempRoot + "': " + e.getMessage());
+        }
+        return deleted;
+    }
+
+    private static boolean isAbandoned(Path dir, long unlockedMaxAge) throws IOException {
+        Path lockFile = dir.resolve(LOCK_FILE);
+        if (!Files.exists(lockFile)) {
+            long created = Files.getLastModifiedTime(dir.resolve(TEMP_MARKER_FILE)).toMillis();
+            return System.currentTimeMillis() - created > unlockedMaxAge;
+        }
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            // Released when the channel is closed, the directory is deleted right after
+            return channel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hashes the names, sizes and modification times of the given jars and of the files in the
+     * given class folders. Missing entries are skipped.
+     */
+    public static String computeBuildHash(List<File> entries) throws IOException {
+        final List<String> descriptions = new ArrayList<>();
+        for (File entry : entries) {
+            if (entry.isFile()) {
+                descriptions.add(entry.getAbsolutePath() + ":" + entry.length() + ":" + entry.lastModified());
+            } else if (entry.isDirectory()) {
+                Files.walkFileTree(entry.toPath(), new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        descriptions.add(file.toAbsolutePath() + ":" + attrs.size() + ":"
+                                + attrs.lastModifiedTime().toMillis());
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        }
+        Collections.sort(descriptions);
+        String joined = StringUtils.collectionToDelimitedString(descriptions, "\n");
+        return DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    /**
+     * Releases the lock, if taken, and deletes the directory if it is temporary.
+     */
+    @Override
+    public synchronized void close() {
+        if (lock != null) {
+            try {
+                lock.release();
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("could not unlock base directory '" + path + "': " + e.getMessage());
+            }
+            lock = null;
+            channel = null;
+        }
+        if (temporary) {
+            FileSystemUtils.deleteRecursively(path.toFile());
+        }
+    }
+}
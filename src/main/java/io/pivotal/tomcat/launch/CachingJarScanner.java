@@ -0,0 +1,542 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.tomcat.Jar;
+import org.apache.tomcat.JarScanFilter;
+import org.apache.tomcat.JarScanType;
+import org.apache.tomcat.JarScannerCallback;
+import org.apache.tomcat.util.bcel.classfile.AnnotationEntry;
+import org.apache.tomcat.util.bcel.classfile.ClassParser;
+import org.apache.tomcat.util.bcel.classfile.JavaClass;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.ServletContext;
+import javax.servlet.annotation.HandlesTypes;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Jar scanner that remembers which jars contributed anything to the scan (web fragments,
+ * ServletContainerInitializers, TLDs, classes with servlet annotations, or classes that extend,
+ * implement or are annotated with a type named in the {@code @HandlesTypes} of one of the
+ * initializers) and writes that index to a file once the context has started. Later boots with an unchanged classpath only open the
+ * indexed jars instead of every jar on the (bootstrap) classpath. A checksum over the classpath
+ * entries, their sizes and modification times, and those of the files in directory entries,
+ * decides when the index is stale.
+ */
+public class CachingJarScanner extends StandardJarScanner implements LifecycleListener {
+
+    static final String CHECKSUM = "checksum";
+
+    static final String INITIALIZERS = "initializers";
+
+    static final String HANDLED_TYPES = "handledTypes";
+
+    static final String TLDS = "tlds";
+
+    static final String FRAGMENTS = "fragments";
+
+    private static final String SCI_SERVICES = "META-INF/services/javax.servlet.ServletContainerInitializer";
+
+    private static final String WEB_FRAGMENT = "META-INF/web-fragment.xml";
+
+    private static final String SERVLET_ANNOTATION_PREFIX = "Ljavax/servlet/annotation/";
+
+    /**
+     * Part of the checksum, so that indexes written by an earlier version are rebuilt.
+     */
+    private static final String INDEX_VERSION = "index-version:3";
+
+    private final Path indexFile;
+
+    private final Map<JarScanType, Set<String>> relevantJars = new EnumMap<>(JarScanType.class);
+
+    private final Set<String> initializers = new TreeSet<>();
+
+    private final Set<String> handledTypes = new TreeSet<>();
+
+    /**
+     * Supertypes and annotations of every class seen while recording, by class name.
+     */
+    private final Map<String, List<String>> classTypes = new HashMap<>();
+
+    /**
+     * Classes of the jars that were not relevant by themselves while recording, per scan type.
+     */
+    private final Map<JarScanType, Map<String, List<String>>> candidateJars = new EnumMap<>(JarScanType.class);
+
+    private ClassLoader classLoader;
+
+    private final Set<String> tlds = new TreeSet<>();
+
+    private final Set<String> fragments = new TreeSet<>();
+
+    private String checksum;
+
+    private boolean replaying = false;
+
+    private boolean recorded = false;
+
+    public CachingJarScanner(Path indexFile) {
+        this.indexFile = indexFile;
+        setScanBootstrapClassPath(true);
+    }
+
+    @Override
+    public void scan(JarScanType scanType, ServletContext context, JarScannerCallback callback) {
+        if (checksum == null) {
+            classLoader = context.getClassLoader();
+            checksum = computeChecksum(context, indexFile);
+            replaying = loadIndex(checksum);
+        }
+        if (replaying || recorded) {
+            JarScanFilter original = getJarScanFilter();
+            setJarScanFilter(new IndexedJarScanFilter(original, getRelevantJars(scanType)));
+            try {
+                super.scan(scanType, context, callback);
+            } finally {
+                setJarScanFilter(original);
+            }
+        } else {
+            super.scan(scanType, context, new RecordingCallback(scanType, callback));
+        }
+    }
+
+    @Override
+    public void lifecycleEvent(LifecycleEvent event) {
+        if (Lifecycle.AFTER_START_EVENT.equals(event.getType()) && !replaying && checksum != null) {
+            storeIndex();
+            // A reload of the context in the same JVM replays what was just recorded
+            recorded = true;
+        }
+    }
+
+    /**
+     * Forgets the checksum and everything recorded, so that the next scan checks the classpath
+     * against the index file again and records a new index if it changed.
+     */
+    public void reset() {
+        checksum = null;
+        replaying = false;
+        recorded = false;
+        relevantJars.clear();
+        initializers.clear();
+        handledTypes.clear();
+        classTypes.clear();
+        candidateJars.clear();
+        tlds.clear();
+        fragments.clear();
+    }
+
+    public boolean isReplaying() {
+        return replaying;
+    }
+
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    private Set<String> getRelevantJars(JarScanType scanType) {
+        Set<String> jars = relevantJars.get(scanType);
+        if (jars == null) {
+            jars = new TreeSet<>();
+            relevantJars.put(scanType, jars);
+        }
+        return jars;
+    }
+
+    private boolean loadIndex(String expectedChecksum) {
+        if (!Files.isRegularFile(indexFile)) {
+            System.out.println("no jar scan index at '" + indexFile + "', scanning the full classpath");
+            return false;
+        }
+        Properties index = new Properties();
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            index.load(reader);
+        } catch (IOException e) {
+            System.out.println("could not read jar scan index '" + indexFile + "': " + e.getMessage());
+            return false;
+        }
+        if (!expectedChecksum.equals(index.getProperty(CHECKSUM))) {
+            System.out.println("classpath changed since jar scan index was written, rebuilding '" + indexFile + "'");
+            return false;
+        }
+        for (JarScanType scanType : JarScanType.values()) {
+            getRelevantJars(scanType).addAll(
+                    StringUtils.commaDelimitedListToSet(index.getProperty(scanType.name(), "")));
+        }
+        initializers.addAll(StringUtils.commaDelimitedListToSet(index.getProperty(INITIALIZERS, "")));
+        handledTypes.addAll(StringUtils.commaDelimitedListToSet(index.getProperty(HANDLED_TYPES, "")));
+        tlds.addAll(StringUtils.commaDelimitedListToSet(index.getProperty(TLDS, "")));
+        fragments.addAll(StringUtils.commaDelimitedListToSet(index.getProperty(FRAGMENTS, "")));
+        System.out.println("replaying jar scan index '" + indexFile + "', relevant jars: " + relevantJars);
+        return true;
+    }
+
+    private void storeIndex() {
+        addHandledTypeJars();
+        Properties index = new Properties();
+        index.setProperty(CHECKSUM, checksum);
+        for (Map.Entry<JarScanType, Set<String>> entry : relevantJars.entrySet()) {
+            index.setProperty(entry.getKey().name(), StringUtils.collectionToCommaDelimitedString(entry.getValue()));
+        }
+        index.setProperty(INITIALIZERS, StringUtils.collectionToCommaDelimitedString(initializers));
+        index.setProperty(HANDLED_TYPES, StringUtils.collectionToCommaDelimitedString(handledTypes));
+        index.setProperty(TLDS, StringUtils.collectionToCommaDelimitedString(tlds));
+        index.setProperty(FRAGMENTS, StringUtils.collectionToCommaDelimitedString(fragments));
+        try {
+            Files.createDirectories(indexFile.toAbsolutePath().getParent());
+            try (OutputStream out = Files.newOutputStream(indexFile)) {
+                index.store(out, "tomcat-launcher jar scan index");
+            }
+            System.out.println("wrote jar scan index to '" + indexFile + "'");
+        } catch (IOException e) {
+            System.out.println("could not write jar scan index '" + indexFile + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marks the candidate jars relevant that hold a class the initializers are handed, i.e. a
+     * subtype of one of their handled types or a class annotated with one. When the handled types
+     * of an initializer cannot be read every candidate jar with classes is kept.
+     */
+    private void addHandledTypeJars() {
+        boolean resolved = resolveHandledTypes();
+        for (Map.Entry<JarScanType, Map<String, List<String>>> scan : candidateJars.entrySet()) {
+            for (Map.Entry<String, List<String>> jar : scan.getValue().entrySet()) {
+                if (!resolved ? !jar.getValue().isEmpty() : containsHandledType(jar.getValue())) {
+                    getRelevantJars(scan.getKey()).add(jar.getKey());
+                }
+            }
+        }
+        classTypes.clear();
+        candidateJars.clear();
+    }
+
+    private boolean resolveHandledTypes() {
+        boolean resolved = true;
+        for (String initializer : initializers) {
+            try {
+                HandlesTypes handles = Class.forName(initializer, false, classLoader).getAnnotation(HandlesTypes.class);
+                if (handles != null) {
+                    for (Class<?> type : handles.value()) {
+                        handledTypes.add(type.getName());
+                    }
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                System.out.println("could not read the handled types of '" + initializer + "': " + e);
+                resolved = false;
+            }
+        }
+        return resolved;
+    }
+
+    private boolean containsHandledType(List<String> classNames) {
+        if (handledTypes.isEmpty()) {
+            return false;
+        }
+        for (String className : classNames) {
+            if (isHandled(className, new HashSet<String>())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the supertypes recorded for the given class, types outside the scanned jars end the
+     * walk.
+     */
+    private boolean isHandled(String className, Set<String> visited) {
+        List<String> types = classTypes.get(className);
+        if (types == null || !visited.add(className)) {
+            return false;
+        }
+        for (String type : types) {
+            if (handledTypes.contains(type) || isHandled(type, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String computeChecksum(ServletContext context, Path indexFile) {
+        List<String> entries = new ArrayList<>();
+        entries.add(INDEX_VERSION);
+        Set<String> libs = context.getResourcePaths("/WEB-INF/lib/");
+        if (libs != null) {
+            for (String lib : libs) {
+                entries.add(lib + describe(context.getRealPath(lib), indexFile));
+            }
+        }
+        for (ClassLoader classLoader = context.getClassLoader(); classLoader != null;
+             classLoader = classLoader.getParent()) {
+            if (classLoader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                    entries.add(url + ("file".equals(url.getProtocol()) ? describe(url.getPath(), indexFile) : ""));
+                }
+            }
+        }
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            entries.add(entry + describe(entry, indexFile));
+        }
+        Collections.sort(entries);
+        String joined = StringUtils.collectionToDelimitedString(entries, "\n");
+        return DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String describe(String path, Path indexFile) {
+        if (path == null) {
+            return "";
+        }
+        File file = new File(path);
+        if (file.isFile()) {
+            return ":" + file.length() + ":" + file.lastModified();
+        }
+        if (file.isDirectory()) {
+            // A directory can gain a web fragment or an initializer without changing itself
+            try {
+                return ":" + describeDirectory(file.toPath(), indexFile.toAbsolutePath());
+            } catch (IOException e) {
+                System.out.println("could not read classpath directory '" + file + "': " + e.getMessage());
+                return ":" + System.nanoTime();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Hashes the files below the given directory like {@link BaseDir#computeBuildHash}, leaving
+     * out the index itself in case it was written below a classpath directory.
+     */
+    private static String describeDirectory(Path directory, final Path indexFile) throws IOException {
+        final List<String> descriptions = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!file.toAbsolutePath().equals(indexFile)) {
+                    descriptions.add(file.toAbsolutePath() + ":" + attrs.size() + ":"
+                            + attrs.lastModifiedTime().toMillis());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                descriptions.add(file.toAbsolutePath() + ":unreadable");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(descriptions);
+        String joined = StringUtils.collectionToDelimitedString(descriptions, "\n");
+        return DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private class RecordingCallback implements JarScannerCallback {
+
+        private final JarScanType scanType;
+
+        private final JarScannerCallback delegate;
+
+        RecordingCallback(JarScanType scanType, JarScannerCallback delegate) {
+            this.scanType = scanType;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void scan(Jar jar, String webappPath, boolean isWebapp) throws IOException {
+            delegate.scan(jar, webappPath, isWebapp);
+            String name = entryName(jar.getJarFileURL().getPath());
+            boolean relevant = false;
+            List<String> classes = new ArrayList<>();
+            jar.reset();
+            for (jar.nextEntry(); jar.getEntryName() != null; jar.nextEntry()) {
+                String entry = jar.getEntryName();
+                if (isRelevant(entry, jar.getURL(entry), jar, classes)) {
+                    relevant = true;
+                }
+            }
+            record(name, relevant, classes);
+        }
+
+        @Override
+        public void scan(File file, String webappPath, boolean isWebapp) throws IOException {
+            delegate.scan(file, webappPath, isWebapp);
+            List<Path> entries = new ArrayList<>();
+            try {
+                entries = listFiles(file.toPath());
+            } catch (IOException e) {
+                System.out.println("could not index '" + file + "': " + e.getMessage());
+            }
+            boolean relevant = false;
+            List<String> classes = new ArrayList<>();
+            for (Path path : entries) {
+                String entry = file.toPath().relativize(path).toString().replace(File.separatorChar, '/');
+                if (isRelevant(entry, path.toUri().toString(), null, classes)) {
+                    relevant = true;
+                }
+            }
+            record(file.getName(), relevant, classes);
+        }
+
+        @Override
+        public void scanWebInfClasses() throws IOException {
+            delegate.scanWebInfClasses();
+        }
+
+        /**
+         * Jars that are not relevant by themselves may still hold classes for the initializers,
+         * which are only known once the context has started.
+         */
+        private void record(String name, boolean relevant, List<String> classes) {
+            if (relevant) {
+                getRelevantJars(scanType).add(name);
+                return;
+            }
+            Map<String, List<String>> candidates = candidateJars.get(scanType);
+            if (candidates == null) {
+                candidates = new HashMap<>();
+                candidateJars.put(scanType, candidates);
+            }
+            candidates.put(name, classes);
+        }
+
+        private boolean isRelevant(String entry, String location, Jar jar, List<String> classes) throws IOException {
+            if (WEB_FRAGMENT.equals(entry)) {
+                fragments.add(location);
+                return true;
+            }
+            if (SCI_SERVICES.equals(entry)) {
+                initializers.addAll(readServices(open(entry, location, jar)));
+                return true;
+            }
+            if (entry.startsWith("META-INF/") && entry.endsWith(".tld")) {
+                tlds.add(location);
+                return true;
+            }
+            if (entry.endsWith(".class") && !entry.startsWith("META-INF/")) {
+                JavaClass javaClass = parse(open(entry, location, jar));
+                if (javaClass == null) {
+                    return false;
+                }
+                classes.add(javaClass.getClassName());
+                return recordTypes(javaClass);
+            }
+            return false;
+        }
+
+        private InputStream open(String entry, String location, Jar jar) throws IOException {
+            return jar != null ? jar.getEntryInputStream() : new URL(location).openStream();
+        }
+    }
+
+    private static String entryName(String path) {
+        String name = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    private static List<Path> listFiles(Path root) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private static List<String> readServices(InputStream in) throws IOException {
+        List<String> services = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String service = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (!service.isEmpty()) {
+                    services.add(service);
+                }
+            }
+        }
+        return services;
+    }
+
+    private static JavaClass parse(InputStream in) {
+        try (InputStream classStream = in) {
+            return new ClassParser(classStream).parse();
+        } catch (IOException | RuntimeException e) {
+            // Not a parseable class file, nothing to index
+            return null;
+        }
+    }
+
+    /**
+     * Records the supertypes and annotations of the given class, returns whether it carries a
+     * servlet annotation.
+     */
+    private boolean recordTypes(JavaClass javaClass) {
+        List<String> types = new ArrayList<>();
+        boolean servletAnnotation = false;
+        if (javaClass.getSuperclassName() != null) {
+            types.add(javaClass.getSuperclassName());
+        }
+        Collections.addAll(types, javaClass.getInterfaceNames());
+        AnnotationEntry[] annotations = javaClass.getAnnotationEntries();
+        if (annotations != null) {
+            for (AnnotationEntry annotation : annotations) {
+                String descriptor = annotation.getAnnotationType();
+                servletAnnotation |= descriptor.startsWith(SERVLET_ANNOTATION_PREFIX);
+                if (descriptor.startsWith("L") && descriptor.endsWith(";")) {
+                    types.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+                }
+            }
+        }
+        classTypes.put(javaClass.getClassName(), types);
+        return servletAnnotation;
+    }
+
+    private static class IndexedJarScanFilter implements JarScanFilter {
+
+        private final JarScanFilter delegate;
+
+        private final Set<String> relevantJars;
+
+        IndexedJarScanFilter(JarScanFilter delegate, Set<String> relevantJars) {
+            this.delegate = delegate;
+            this.relevantJars = relevantJars;
+        }
+
+        @Override
+        public boolean check(JarScanType jarScanType, String jarName) {
+            return relevantJars.contains(jarName) && delegate.check(jarScanType, jarName);
+        }
+    }
+}
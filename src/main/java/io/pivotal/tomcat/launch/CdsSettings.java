@@ -0,0 +1,135 @@
+package io.pivotal.tomcat.launch;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import com.sun.management.VMOption;
+import org.springframework.util.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class data sharing (AppCDS) for fast restarts. A training run boots the application once,
+ * including the warm-up and the first request, and stops right away so that the JVM writes the
+ * classes it loaded into an archive on exit. Later boots map the archive instead of loading and
+ * verifying those classes again, and replay the jar scan index the training run recorded next to
+ * it instead of scanning the classpath.
+ * <p>
+ * The archive is written and used by the JVM, see {@link #jvmOptions(boolean)} for the options it
+ * has to be started with. Dynamic archives need Java 13 or later, and a classpath of jars only,
+ * as with a packaged application, since classes from folders are not archived.
+ */
+public class CdsSettings {
+
+    public static final String ENV_CDS_ARCHIVE = "TOMCAT_CDS_ARCHIVE";
+
+    public static final String ENV_CDS_TRAINING = "TOMCAT_CDS_TRAINING";
+
+    public static final String SCAN_INDEX_SUFFIX = ".scan-index";
+
+    private Path archive;
+
+    private boolean training = false;
+
+    /**
+     * Reads the archive location and the training switch from the given environment.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_CDS_ARCHIVE))) {
+            setArchive(Paths.get(env.get(ENV_CDS_ARCHIVE).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_CDS_TRAINING))) {
+            setTraining(Boolean.valueOf(env.get(ENV_CDS_TRAINING).trim()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return archive != null;
+    }
+
+    /**
+     * The jar scan index that belongs to the archive, both describe the same classpath.
+     */
+    public Path getScanIndexFile() {
+        return archive.resolveSibling(archive.getFileName() + SCAN_INDEX_SUFFIX);
+    }
+
+    /**
+     * JVM options that write the archive in a training run or map it on later boots, empty if
+     * the running JVM cannot create dynamic archives.
+     */
+    public List<String> jvmOptions(boolean training) {
+        if (getJavaVersion() < 13) {
+            return Collections.emptyList();
+        }
+        String option = training ? "-XX:ArchiveClassesAtExit=" : "-XX:SharedArchiveFile=";
+        return Collections.singletonList(option + archive.toAbsolutePath());
+    }
+
+    /**
+     * Describes whether the running JVM writes or uses the archive, and which options are
+     * missing if it does neither.
+     */
+    public String describe() {
+        String written = getVmOption("ArchiveClassesAtExit");
+        String mapped = getVmOption("SharedArchiveFile");
+        if (training) {
+            if (StringUtils.hasText(written)) {
+                return "class data sharing training run, archive '" + written + "' is written on exit";
+            }
+            return "class data sharing training run without an archive, start the JVM with "
+                    + describeOptions(true);
+        }
+        if (StringUtils.hasText(mapped)) {
+            boolean sharing = String.valueOf(System.getProperty("java.vm.info")).contains("sharing");
+            return "class data sharing archive '" + mapped + "' " + (sharing ? "in use" : "could not be mapped");
+        }
+        return "class data sharing archive '" + archive + "' is not used, start the JVM with "
+                + describeOptions(false);
+    }
+
+    private String describeOptions(boolean training) {
+        List<String> options = jvmOptions(training);
+        return options.isEmpty() ? "Java 13 or later" : options.toString();
+    }
+
+    private static String getVmOption(String name) {
+        try {
+            HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            VMOption option = diagnostics != null ? diagnostics.getVMOption(name) : null;
+            return option != null ? option.getValue() : null;
+        } catch (IllegalArgumentException e) {
+            // Not a flag of this JVM
+            return null;
+        }
+    }
+
+    static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version");
+        List<String> parts = Arrays.asList(version.split("\\."));
+        return Integer.parseInt("1".equals(parts.get(0)) && parts.size() > 1 ? parts.get(1) : parts.get(0));
+    }
+
+    public Path getArchive() {
+        return archive;
+    }
+
+    public void setArchive(Path archive) {
+        this.archive = archive;
+    }
+
+    public boolean isTraining() {
+        return training;
+    }
+
+    /**
+     * Makes {@link TomcatLauncher#launch()} stop as soon as the server is ready instead of serving.
+     */
+    public void setTraining(boolean training) {
+        this.training = training;
+    }
+}
@@ -0,0 +1,27 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.JdbcInterceptor;
+import org.apache.tomcat.jdbc.pool.PooledConnection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tomcat-jdbc interceptor that adds the time it took to borrow a connection to the traced request.
+ * The pool stamps the connection when the borrow begins, in milliseconds, and resets the
+ * interceptors once it has been handed out, so the wait includes opening a new connection.
+ */
+public class ConnectionWaitInterceptor extends JdbcInterceptor {
+
+    @Override
+    public void reset(ConnectionPool parent, PooledConnection con) {
+        if (con == null) {
+            return;
+        }
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            long waitMillis = Math.max(0, System.currentTimeMillis() - con.getTimestamp());
+            trace.addConnectionWaitNanos(TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        }
+    }
+}
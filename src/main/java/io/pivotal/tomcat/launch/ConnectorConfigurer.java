@@ -0,0 +1,82 @@
+package io.pivotal.tomcat.launch;
+
+public class ConnectorConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final ConnectorSettings settings;
+
+    public ConnectorConfigurer(TomcatConfigurer parent, ConnectorSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    public ConnectorConfigurer protocol(ConnectorSettings.Protocol protocol) {
+        settings.setProtocol(protocol);
+        return this;
+    }
+
+    public ConnectorConfigurer nio() {
+        return protocol(ConnectorSettings.Protocol.NIO);
+    }
+
+    public ConnectorConfigurer nio2() {
+        return protocol(ConnectorSettings.Protocol.NIO2);
+    }
+
+    public ConnectorConfigurer apr() {
+        return protocol(ConnectorSettings.Protocol.APR);
+    }
+
+    public ConnectorConfigurer maxThreads(int maxThreads) {
+        settings.setMaxThreads(maxThreads);
+        return this;
+    }
+
+    public ConnectorConfigurer minSpareThreads(int minSpareThreads) {
+        settings.setMinSpareThreads(minSpareThreads);
+        return this;
+    }
+
+    public ConnectorConfigurer acceptCount(int acceptCount) {
+        settings.setAcceptCount(acceptCount);
+        return this;
+    }
+
+    public ConnectorConfigurer maxConnections(int maxConnections) {
+        settings.setMaxConnections(maxConnections);
+        return this;
+    }
+
+    public ConnectorConfigurer connectionTimeout(int connectionTimeoutMillis) {
+        settings.setConnectionTimeout(connectionTimeoutMillis);
+        return this;
+    }
+
+    public ConnectorConfigurer keepAlive(int keepAliveTimeoutMillis, int maxKeepAliveRequests) {
+        settings.setKeepAliveTimeout(keepAliveTimeoutMillis);
+        settings.setMaxKeepAliveRequests(maxKeepAliveRequests);
+        return this;
+    }
+
+    public ConnectorConfigurer compression(String compression) {
+        settings.setCompression(compression);
+        return this;
+    }
+
+    public ConnectorConfigurer compression(int minSize, String compressibleMimeTypes) {
+        settings.setCompression("on");
+        settings.setCompressionMinSize(minSize);
+        settings.setCompressibleMimeTypes(compressibleMimeTypes);
+        return this;
+    }
+
+    public ConnectorConfigurer http2() {
+        settings.setHttp2(true);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
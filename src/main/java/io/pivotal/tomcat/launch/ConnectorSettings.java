@@ -0,0 +1,318 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Server;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.AprLifecycleListener;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+
+public class ConnectorSettings {
+
+    public static final String ENV_PROTOCOL = "TOMCAT_PROTOCOL";
+
+    public static final String ENV_MAX_THREADS = "TOMCAT_MAX_THREADS";
+
+    public static final String ENV_MIN_SPARE_THREADS = "TOMCAT_MIN_SPARE_THREADS";
+
+    public static final String ENV_ACCEPT_COUNT = "TOMCAT_ACCEPT_COUNT";
+
+    public static final String ENV_MAX_CONNECTIONS = "TOMCAT_MAX_CONNECTIONS";
+
+    public static final String ENV_CONNECTION_TIMEOUT = "TOMCAT_CONNECTION_TIMEOUT";
+
+    public static final String ENV_KEEP_ALIVE_TIMEOUT = "TOMCAT_KEEP_ALIVE_TIMEOUT";
+
+    public static final String ENV_MAX_KEEP_ALIVE_REQUESTS = "TOMCAT_MAX_KEEP_ALIVE_REQUESTS";
+
+    public static final String ENV_COMPRESSION = "TOMCAT_COMPRESSION";
+
+    public static final String ENV_COMPRESSION_MIN_SIZE = "TOMCAT_COMPRESSION_MIN_SIZE";
+
+    public static final String ENV_COMPRESSIBLE_MIME_TYPES = "TOMCAT_COMPRESSIBLE_MIME_TYPES";
+
+    public static final String ENV_HTTP2 = "TOMCAT_HTTP2";
+
+    public static final String ENV_VIRTUAL_THREADS = "TOMCAT_VIRTUAL_THREADS";
+
+    public enum Protocol {
+        NIO("org.apache.coyote.http11.Http11NioProtocol"),
+        NIO2("org.apache.coyote.http11.Http11Nio2Protocol"),
+        APR("org.apache.coyote.http11.Http11AprProtocol");
+
+        private final String className;
+
+        Protocol(String className) {
+            this.className = className;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+    }
+
+    private Protocol protocol = Protocol.NIO;
+
+    private Integer maxThreads;
+
+    private Integer minSpareThreads;
+
+    private Integer acceptCount;
+
+    private Integer maxConnections;
+
+    private Integer connectionTimeout;
+
+    private Integer keepAliveTimeout;
+
+    private Integer maxKeepAliveRequests;
+
+    private String compression;
+
+    private Integer compressionMinSize;
+
+    private String compressibleMimeTypes;
+
+    private Boolean useSendfile;
+
+    private boolean http2 = false;
+
+    private boolean virtualThreads = false;
+
+    /**
+     * Reads connector settings from the given environment. Only variables that are present
+     * override the current values, everything else keeps the Tomcat defaults.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        String value = env.get(ENV_PROTOCOL);
+        if (StringUtils.hasText(value)) {
+            setProtocol(Protocol.valueOf(value.trim().toUpperCase()));
+        }
+        if (StringUtils.hasText(env.get(ENV_MAX_THREADS))) {
+            setMaxThreads(Integer.valueOf(env.get(ENV_MAX_THREADS).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_MIN_SPARE_THREADS))) {
+            setMinSpareThreads(Integer.valueOf(env.get(ENV_MIN_SPARE_THREADS).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_ACCEPT_COUNT))) {
+            setAcceptCount(Integer.valueOf(env.get(ENV_ACCEPT_COUNT).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_MAX_CONNECTIONS))) {
+            setMaxConnections(Integer.valueOf(env.get(ENV_MAX_CONNECTIONS).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_CONNECTION_TIMEOUT))) {
+            setConnectionTimeout(Integer.valueOf(env.get(ENV_CONNECTION_TIMEOUT).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_KEEP_ALIVE_TIMEOUT))) {
+            setKeepAliveTimeout(Integer.valueOf(env.get(ENV_KEEP_ALIVE_TIMEOUT).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_MAX_KEEP_ALIVE_REQUESTS))) {
+            setMaxKeepAliveRequests(Integer.valueOf(env.get(ENV_MAX_KEEP_ALIVE_REQUESTS).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_COMPRESSION))) {
+            setCompression(env.get(ENV_COMPRESSION).trim());
+        }
+        if (StringUtils.hasText(env.get(ENV_COMPRESSION_MIN_SIZE))) {
+            setCompressionMinSize(Integer.valueOf(env.get(ENV_COMPRESSION_MIN_SIZE).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_COMPRESSIBLE_MIME_TYPES))) {
+            setCompressibleMimeTypes(env.get(ENV_COMPRESSIBLE_MIME_TYPES).trim());
+        }
+        if (StringUtils.hasText(env.get(ENV_HTTP2))) {
+            setHttp2(Boolean.valueOf(env.get(ENV_HTTP2).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_VIRTUAL_THREADS))) {
+            setVirtualThreads(Boolean.valueOf(env.get(ENV_VIRTUAL_THREADS).trim()));
+        }
+    }
+
+    /**
+     * Creates the connector for the given port. APR is only used when the native library can be
+     * loaded, otherwise the connector falls back to NIO.
+     */
+    public Connector createConnector(Server server, int port) {
+        Protocol resolved = resolveProtocol();
+        if (resolved == Protocol.APR) {
+            server.addLifecycleListener(new AprLifecycleListener());
+        }
+        System.out.println("creating " + resolved + " connector on port " + port);
+        Connector connector = new Connector(resolved.getClassName());
+        connector.setPort(port);
+        configure(connector);
+        return connector;
+    }
+
+    public void configure(Connector connector) {
+        setProperty(connector, "maxThreads", maxThreads);
+        setProperty(connector, "minSpareThreads", minSpareThreads);
+        setProperty(connector, "acceptCount", acceptCount);
+        setProperty(connector, "maxConnections", maxConnections);
+        setProperty(connector, "connectionTimeout", connectionTimeout);
+        setProperty(connector, "keepAliveTimeout", keepAliveTimeout);
+        setProperty(connector, "maxKeepAliveRequests", maxKeepAliveRequests);
+        setProperty(connector, "compression", compression);
+        setProperty(connector, "compressionMinSize", compressionMinSize);
+        setProperty(connector, "compressibleMimeType", compressibleMimeTypes);
+        setProperty(connector, "useSendfile", useSendfile);
+        if (http2) {
+            connector.addUpgradeProtocol(new Http2Protocol());
+        }
+    }
+
+    /**
+     * Creates the executor shared by all connectors of the service. The thread settings bound the
+     * platform pool used when virtual threads are not available.
+     */
+    public VirtualThreadExecutor createExecutor() {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor();
+        if (maxThreads != null) {
+            executor.setMaxThreads(maxThreads);
+        }
+        if (minSpareThreads != null) {
+            executor.setMinSpareThreads(minSpareThreads);
+        }
+        // The pool cannot keep more spare threads than it may create
+        executor.setMinSpareThreads(Math.min(executor.getMinSpareThreads(), executor.getMaxThreads()));
+        return executor;
+    }
+
+    Protocol resolveProtocol() {
+        if (protocol == Protocol.APR) {
+            // isAprAvailable() only attempts to load the library once a listener instance exists
+            new AprLifecycleListener();
+            if (!AprLifecycleListener.isAprAvailable()) {
+                System.out.println("APR native library is not available, falling back to NIO");
+                return Protocol.NIO;
+            }
+        }
+        return protocol;
+    }
+
+    private void setProperty(Connector connector, String name, Object value) {
+        if (value != null) {
+            if (!connector.setProperty(name, value.toString())) {
+                throw new IllegalStateException("Connector does not support property '" + name + "'");
+            }
+        }
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(Protocol protocol) {
+        Assert.notNull(protocol, "Protocol cannot be null");
+        this.protocol = protocol;
+    }
+
+    public Integer getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(Integer maxThreads) {
+        Assert.isTrue(maxThreads == null || maxThreads > 0, "maxThreads must be greater than 0");
+        this.maxThreads = maxThreads;
+    }
+
+    public Integer getMinSpareThreads() {
+        return minSpareThreads;
+    }
+
+    public void setMinSpareThreads(Integer minSpareThreads) {
+        Assert.isTrue(minSpareThreads == null || minSpareThreads >= 0, "minSpareThreads cannot be negative");
+        this.minSpareThreads = minSpareThreads;
+    }
+
+    public Integer getAcceptCount() {
+        return acceptCount;
+    }
+
+    public void setAcceptCount(Integer acceptCount) {
+        Assert.isTrue(acceptCount == null || acceptCount > 0, "acceptCount must be greater than 0");
+        this.acceptCount = acceptCount;
+    }
+
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(Integer maxConnections) {
+        Assert.isTrue(maxConnections == null || maxConnections == -1 || maxConnections > 0,
+                "maxConnections must be greater than 0 or -1 for unlimited");
+        this.maxConnections = maxConnections;
+    }
+
+    public Integer getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(Integer connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public Integer getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(Integer keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    public Integer getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    public void setMaxKeepAliveRequests(Integer maxKeepAliveRequests) {
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public Integer getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    public void setCompressionMinSize(Integer compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public String getCompressibleMimeTypes() {
+        return compressibleMimeTypes;
+    }
+
+    public void setCompressibleMimeTypes(String compressibleMimeTypes) {
+        this.compressibleMimeTypes = compressibleMimeTypes;
+    }
+
+    public Boolean getUseSendfile() {
+        return useSendfile;
+    }
+
+    public void setUseSendfile(Boolean useSendfile) {
+        this.useSendfile = useSendfile;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+}
@@ -0,0 +1,121 @@
+package io.pivotal.tomcat.launch;
+
+public class DataSourceConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final DataSourceSettings settings;
+
+    public DataSourceConfigurer(TomcatConfigurer parent, DataSourceSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    public DataSourceConfigurer driverClassName(String driverClassName) {
+        settings.setDriverClassName(driverClassName);
+        return this;
+    }
+
+    public DataSourceConfigurer url(String url) {
+        settings.setUrl(url);
+        return this;
+    }
+
+    public DataSourceConfigurer credentials(String username, String password) {
+        settings.setUsername(username);
+        settings.setPassword(password);
+        return this;
+    }
+
+    public DataSourceConfigurer connectionProperties(String connectionProperties) {
+        settings.setConnectionProperties(connectionProperties);
+        return this;
+    }
+
+    public DataSourceConfigurer poolSize(int initialSize, int minIdle, int maxActive) {
+        settings.setInitialSize(initialSize);
+        settings.setMinIdle(minIdle);
+        settings.setMaxActive(maxActive);
+        return this;
+    }
+
+    public DataSourceConfigurer maxIdle(int maxIdle) {
+        settings.setMaxIdle(maxIdle);
+        return this;
+    }
+
+    public DataSourceConfigurer maxWait(int maxWaitMillis) {
+        settings.setMaxWait(maxWaitMillis);
+        return this;
+    }
+
+    /**
+     * Validates connections on borrow with the given query, at most once per interval per
+     * connection, and while they are idle.
+     */
+    public DataSourceConfigurer validation(String validationQuery, long validationIntervalMillis) {
+        settings.setValidationQuery(validationQuery);
+        settings.setValidationInterval(validationIntervalMillis);
+        settings.setTestOnBorrow(true);
+        settings.setTestWhileIdle(true);
+        return this;
+    }
+
+    public DataSourceConfigurer validationQueryTimeout(int timeoutSeconds) {
+        settings.setValidationQueryTimeout(timeoutSeconds);
+        return this;
+    }
+
+    public DataSourceConfigurer eviction(int timeBetweenEvictionRunsMillis, int minEvictableIdleTimeMillis) {
+        settings.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
+        settings.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
+        return this;
+    }
+
+    public DataSourceConfigurer removeAbandoned(int timeoutSeconds, boolean logAbandoned) {
+        settings.setRemoveAbandonedTimeout(timeoutSeconds);
+        settings.setLogAbandoned(logAbandoned);
+        return this;
+    }
+
+    /**
+     * Caches up to {@code max} prepared statements per connection.
+     */
+    public DataSourceConfigurer statementCache(int max) {
+        return interceptor(DataSourceSettings.STATEMENT_CACHE + "(prepared=true,callable=false,max=" + max + ")");
+    }
+
+    /**
+     * Logs queries that take longer than the given threshold.
+     */
+    public DataSourceConfigurer slowQueryReport(int thresholdMillis) {
+        return interceptor(DataSourceSettings.SLOW_QUERY_REPORT + "(threshold=" + thresholdMillis + ",logSlow=true)");
+    }
+
+    public DataSourceConfigurer interceptor(String interceptor) {
+        settings.addInterceptor(interceptor);
+        return this;
+    }
+
+    /**
+     * Opens the pool's initial connections before the connector accepts traffic.
+     */
+    public DataSourceConfigurer warmUp() {
+        settings.setWarmUp(true);
+        return this;
+    }
+
+    /**
+     * Warms up the named data sources before this one when startup runs in parallel.
+     */
+    public DataSourceConfigurer dependsOn(String... names) {
+        for (String name : names) {
+            settings.addDependsOn(name);
+        }
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
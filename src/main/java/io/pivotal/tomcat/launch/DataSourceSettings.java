@@ -0,0 +1,369 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Typed settings for a tomcat-jdbc connection pool bound in JNDI. Pool properties that are left
+ * {@code null} keep the tomcat-jdbc defaults.
+ */
+public class DataSourceSettings {
+
+    public static final String FACTORY = "org.apache.tomcat.jdbc.pool.DataSourceFactory";
+
+    public static final String STATEMENT_CACHE = "org.apache.tomcat.jdbc.pool.interceptor.StatementCache";
+
+    public static final String SLOW_QUERY_REPORT = "org.apache.tomcat.jdbc.pool.interceptor.SlowQueryReport";
+
+    private final String name;
+
+    private String driverClassName;
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    private String connectionProperties;
+
+    private Integer initialSize;
+
+    private Integer minIdle;
+
+    private Integer maxIdle;
+
+    private Integer maxActive;
+
+    private Integer maxWait;
+
+    private String validationQuery;
+
+    private Integer validationQueryTimeout;
+
+    private Long validationInterval;
+
+    private Boolean testOnBorrow;
+
+    private Boolean testWhileIdle;
+
+    private Integer timeBetweenEvictionRunsMillis;
+
+    private Integer minEvictableIdleTimeMillis;
+
+    private Integer removeAbandonedTimeout;
+
+    private boolean logAbandoned = false;
+
+    private final List<String> interceptors = new ArrayList<>();
+
+    private boolean warmUp = false;
+
+    private final Set<String> dependsOn = new LinkedHashSet<>();
+
+    public DataSourceSettings(String name) {
+        Assert.hasText(name, "Data source name cannot be empty");
+        this.name = name;
+    }
+
+    /**
+     * Creates the JNDI resource definition for this pool.
+     */
+    public ContextResource toContextResource() {
+        validate();
+        ContextResource resource = new ContextResource();
+        resource.setAuth("Container");
+        resource.setType("javax.sql.DataSource");
+        resource.setName(name);
+        resource.setProperty("factory", FACTORY);
+        setProperty(resource, "driverClassName", driverClassName);
+        setProperty(resource, "url", url);
+        setProperty(resource, "username", username);
+        setProperty(resource, "password", password);
+        setProperty(resource, "connectionProperties", connectionProperties);
+        setProperty(resource, "initialSize", initialSize);
+        setProperty(resource, "minIdle", minIdle);
+        setProperty(resource, "maxIdle", maxIdle);
+        setProperty(resource, "maxActive", maxActive);
+        setProperty(resource, "maxWait", maxWait);
+        setProperty(resource, "validationQuery", validationQuery);
+        setProperty(resource, "validationQueryTimeout", validationQueryTimeout);
+        setProperty(resource, "validationInterval", validationInterval);
+        setProperty(resource, "testOnBorrow", testOnBorrow);
+        setProperty(resource, "testWhileIdle", testWhileIdle);
+        setProperty(resource, "timeBetweenEvictionRunsMillis", timeBetweenEvictionRunsMillis);
+        setProperty(resource, "minEvictableIdleTimeMillis", minEvictableIdleTimeMillis);
+        if (removeAbandonedTimeout != null) {
+            resource.setProperty("removeAbandoned", "true");
+            resource.setProperty("removeAbandonedTimeout", removeAbandonedTimeout.toString());
+            resource.setProperty("logAbandoned", Boolean.toString(logAbandoned));
+        }
+        if (!interceptors.isEmpty()) {
+            resource.setProperty("jdbcInterceptors", StringUtils.collectionToDelimitedString(interceptors, ";"));
+        }
+        return resource;
+    }
+
+    /**
+     * Opens the pool's initial connections by borrowing them all at once and handing them back,
+     * so that the first requests do not pay for connection setup. Returns the number of
+     * connections that were opened.
+     */
+    public int warmUp(DataSource dataSource) {
+        int size = Math.max(1, Math.max(initialSize != null ? initialSize : 0, minIdle != null ? minIdle : 0));
+        if (maxActive != null) {
+            size = Math.min(size, maxActive);
+        }
+        List<Connection> connections = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                if (!connection.isValid(5)) {
+                    throw new IllegalStateException("Connection from data source '" + name + "' is not valid");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to warm up data source '" + name + "'", e);
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    System.out.println("failed to return warm-up connection to '" + name + "': " + e.getMessage());
+                }
+            }
+        }
+        return connections.size();
+    }
+
+    private void validate() {
+        Assert.hasText(driverClassName, "Driver class name is null");
+        Assert.hasText(url, "Jdbc url is null");
+        if (maxActive != null) {
+            Assert.isTrue(initialSize == null || initialSize <= maxActive, "initialSize cannot exceed maxActive");
+            Assert.isTrue(minIdle == null || minIdle <= maxActive, "minIdle cannot exceed maxActive");
+            Assert.isTrue(maxIdle == null || maxIdle <= maxActive, "maxIdle cannot exceed maxActive");
+        }
+        Assert.isTrue(minIdle == null || maxIdle == null || minIdle <= maxIdle, "minIdle cannot exceed maxIdle");
+    }
+
+    private static void setProperty(ContextResource resource, String name, Object value) {
+        if (value != null) {
+            resource.setProperty(name, value.toString());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDriverClassName() {
+        return driverClassName;
+    }
+
+    public void setDriverClassName(String driverClassName) {
+        this.driverClassName = driverClassName;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getConnectionProperties() {
+        return connectionProperties;
+    }
+
+    public void setConnectionProperties(String connectionProperties) {
+        this.connectionProperties = connectionProperties;
+    }
+
+    public Integer getInitialSize() {
+        return initialSize;
+    }
+
+    public void setInitialSize(Integer initialSize) {
+        Assert.isTrue(initialSize == null || initialSize >= 0, "initialSize cannot be negative");
+        this.initialSize = initialSize;
+    }
+
+    public Integer getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(Integer minIdle) {
+        Assert.isTrue(minIdle == null || minIdle >= 0, "minIdle cannot be negative");
+        this.minIdle = minIdle;
+    }
+
+    public Integer getMaxIdle() {
+        return maxIdle;
+    }
+
+    public void setMaxIdle(Integer maxIdle) {
+        Assert.isTrue(maxIdle == null || maxIdle >= 0, "maxIdle cannot be negative");
+        this.maxIdle = maxIdle;
+    }
+
+    public Integer getMaxActive() {
+        return maxActive;
+    }
+
+    public void setMaxActive(Integer maxActive) {
+        Assert.isTrue(maxActive == null || maxActive > 0, "maxActive must be greater than 0");
+        this.maxActive = maxActive;
+    }
+
+    public Integer getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Integer maxWait) {
+        Assert.isTrue(maxWait == null || maxWait >= -1, "maxWait must be positive or -1 to wait forever");
+        this.maxWait = maxWait;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    public Integer getValidationQueryTimeout() {
+        return validationQueryTimeout;
+    }
+
+    public void setValidationQueryTimeout(Integer validationQueryTimeout) {
+        this.validationQueryTimeout = validationQueryTimeout;
+    }
+
+    public Long getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(Long validationInterval) {
+        Assert.isTrue(validationInterval == null || validationInterval >= 0, "validationInterval cannot be negative");
+        this.validationInterval = validationInterval;
+    }
+
+    public Boolean getTestOnBorrow() {
+        return testOnBorrow;
+    }
+
+    public void setTestOnBorrow(Boolean testOnBorrow) {
+        this.testOnBorrow = testOnBorrow;
+    }
+
+    public Boolean getTestWhileIdle() {
+        return testWhileIdle;
+    }
+
+    public void setTestWhileIdle(Boolean testWhileIdle) {
+        this.testWhileIdle = testWhileIdle;
+    }
+
+    public Integer getTimeBetweenEvictionRunsMillis() {
+        return timeBetweenEvictionRunsMillis;
+    }
+
+    public void setTimeBetweenEvictionRunsMillis(Integer timeBetweenEvictionRunsMillis) {
+        Assert.isTrue(timeBetweenEvictionRunsMillis == null || timeBetweenEvictionRunsMillis > 0,
+                "timeBetweenEvictionRunsMillis must be greater than 0");
+        this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+    }
+
+    public Integer getMinEvictableIdleTimeMillis() {
+        return minEvictableIdleTimeMillis;
+    }
+
+    public void setMinEvictableIdleTimeMillis(Integer minEvictableIdleTimeMillis) {
+        this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+    }
+
+    public Integer getRemoveAbandonedTimeout() {
+        return removeAbandonedTimeout;
+    }
+
+    /**
+     * Seconds after which a borrowed connection is considered abandoned and reclaimed by the pool,
+     * {@code null} disables abandoned connection handling.
+     */
+    public void setRemoveAbandonedTimeout(Integer removeAbandonedTimeout) {
+        Assert.isTrue(removeAbandonedTimeout == null || removeAbandonedTimeout > 0,
+                "removeAbandonedTimeout must be greater than 0");
+        this.removeAbandonedTimeout = removeAbandonedTimeout;
+    }
+
+    public boolean isLogAbandoned() {
+        return logAbandoned;
+    }
+
+    public void setLogAbandoned(boolean logAbandoned) {
+        this.logAbandoned = logAbandoned;
+    }
+
+    /**
+     * JDBC interceptors in tomcat-jdbc syntax, e.g. {@code StatementCache(max=50)}.
+     */
+    public List<String> getInterceptors() {
+        return interceptors;
+    }
+
+    public void addInterceptor(String interceptor) {
+        Assert.hasText(interceptor, "Interceptor cannot be empty");
+        interceptors.add(interceptor);
+    }
+
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public Set<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    /**
+     * Names a data source that has to be warmed up before this one, for example a schema
+     * migration pool that the application pool relies on.
+     */
+    public void addDependsOn(String name) {
+        Assert.hasText(name, "Data source name cannot be empty");
+        Assert.isTrue(!name.equals(this.name), "Data source '" + name + "' cannot depend on itself");
+        dependsOn.add(name);
+    }
+}
@@ -0,0 +1,52 @@
+package io.pivotal.tomcat.launch;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of deflaters and output buffers. A {@link Deflater} holds native memory that is
+ * only freed by {@link Deflater#end()} or finalization, creating one per response puts pressure
+ * on both, so they are reset and reused instead. Objects returned to a full pool are discarded.
+ */
+public class DeflaterPool {
+
+    public static final int BUFFER_SIZE = 8192;
+
+    private final BlockingQueue<Deflater> gzipDeflaters;
+
+    private final BlockingQueue<Deflater> zlibDeflaters;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    public DeflaterPool(int capacity) {
+        this.gzipDeflaters = new ArrayBlockingQueue<>(capacity);
+        this.zlibDeflaters = new ArrayBlockingQueue<>(capacity);
+        this.buffers = new ArrayBlockingQueue<>(capacity * 2);
+    }
+
+    /**
+     * Borrows a deflater that writes raw deflate data for gzip framing, or zlib data for the
+     * HTTP {@code deflate} coding.
+     */
+    public Deflater borrowDeflater(boolean gzip) {
+        Deflater deflater = (gzip ? gzipDeflaters : zlibDeflaters).poll();
+        return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+    }
+
+    public void release(Deflater deflater, boolean gzip) {
+        deflater.reset();
+        if (!(gzip ? gzipDeflaters : zlibDeflaters).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    public byte[] borrowBuffer() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    public void release(byte[] buffer) {
+        buffers.offer(buffer);
+    }
+}
@@ -0,0 +1,85 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.springframework.util.Assert;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches {@code java:comp/env} lookups. Every JNDI lookup creates an {@link InitialContext},
+ * resolves the naming context bound to the calling class loader and parses the name, which adds
+ * up for code reading its configuration on every request. Environment entries do not change
+ * while the application runs, so the values are cached per web application class loader until
+ * the application stops. Missing entries are not cached.
+ */
+public final class EnvironmentCache {
+
+    public static final String ENV_PREFIX = "java:comp/env/";
+
+    private static final Map<ClassLoader, ConcurrentMap<String, Object>> CACHE = new WeakHashMap<>();
+
+    private EnvironmentCache() {
+    }
+
+    /**
+     * Looks up the environment entry with the given name, relative to {@code java:comp/env},
+     * for the web application of the calling thread.
+     */
+    public static <T> T lookup(String name, Class<T> type) throws NamingException {
+        Assert.hasText(name, "Name cannot be empty");
+        ConcurrentMap<String, Object> values = getValues(Thread.currentThread().getContextClassLoader());
+        Object value = values.get(name);
+        if (value == null) {
+            value = new InitialContext().lookup(ENV_PREFIX + name);
+            values.putIfAbsent(name, value);
+        }
+        if (!type.isInstance(value)) {
+            throw new NamingException("Environment entry '" + name + "' is a " + value.getClass().getName()
+                    + ", not a " + type.getName());
+        }
+        return type.cast(value);
+    }
+
+    private static ConcurrentMap<String, Object> getValues(ClassLoader classLoader) {
+        synchronized (CACHE) {
+            ConcurrentMap<String, Object> values = CACHE.get(classLoader);
+            if (values == null) {
+                values = new ConcurrentHashMap<>();
+                CACHE.put(classLoader, values);
+            }
+            return values;
+        }
+    }
+
+    public static void clear(ClassLoader classLoader) {
+        synchronized (CACHE) {
+            CACHE.remove(classLoader);
+        }
+    }
+
+    /**
+     * Returns a listener that drops the cached values of the context it is added to when the
+     * context stops, so a reload sees its new environment.
+     */
+    public static LifecycleListener lifecycleListener() {
+        return new LifecycleListener() {
+            @Override
+            public void lifecycleEvent(LifecycleEvent event) {
+                if (Lifecycle.BEFORE_STOP_EVENT.equals(event.getType())) {
+                    Context context = (Context) event.getLifecycle();
+                    if (context.getLoader() != null) {
+                        clear(context.getLoader().getClassLoader());
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package io.pivotal.tomcat.launch;
+
+public class EnvironmentConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final EnvironmentImport environmentImport;
+
+    public EnvironmentConfigurer(TomcatConfigurer parent, EnvironmentImport environmentImport) {
+        this.parent = parent;
+        this.environmentImport = environmentImport;
+    }
+
+    public EnvironmentConfigurer prefix(String prefix) {
+        environmentImport.setPrefix(prefix);
+        return this;
+    }
+
+    /**
+     * Imports the keys starting with the given prefix under their name without it.
+     */
+    public EnvironmentConfigurer stripPrefix(String prefix) {
+        environmentImport.setPrefix(prefix);
+        environmentImport.setStripPrefix(true);
+        return this;
+    }
+
+    /**
+     * Binds the given entries as the given type, e.g. {@code Integer.class}.
+     */
+    public EnvironmentConfigurer type(Class<?> type, String... names) {
+        for (String name : names) {
+            environmentImport.addType(name, type);
+        }
+        return this;
+    }
+
+    /**
+     * Lets the application's own deployment descriptor override the imported values.
+     */
+    public EnvironmentConfigurer overridable() {
+        environmentImport.setOverride(true);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
@@ -0,0 +1,169 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.tomcat.util.descriptor.web.ContextEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports the keys of a {@link PropertySource} as JNDI environment entries in one pass. Every
+ * value is resolved once and validated against its declared type up front, so that invalid values
+ * fail the launch instead of being skipped by Tomcat. The entries keep the value as text, which
+ * Tomcat converts when it binds them, so applications look up typed values instead of parsing
+ * strings. Values without a declared type keep the type of the property value if it is a
+ * supported environment entry type and are bound as strings otherwise.
+ */
+public class EnvironmentImport {
+
+    public static final Set<Class<?>> SUPPORTED_TYPES = new LinkedHashSet<Class<?>>(Arrays.<Class<?>>asList(
+            String.class, Integer.class, Long.class, Boolean.class, Double.class, Float.class, Short.class,
+            Byte.class, Character.class));
+
+    private final EnumerablePropertySource<?> source;
+
+    private String prefix = "";
+
+    private boolean stripPrefix = false;
+
+    private boolean override = false;
+
+    private final Map<String, Class<?>> types = new HashMap<>();
+
+    public EnvironmentImport(PropertySource<?> source) {
+        Assert.notNull(source, "PropertySource cannot be null");
+        Assert.isInstanceOf(EnumerablePropertySource.class, source,
+                "PropertySource '" + source.getName() + "' cannot list its keys");
+        this.source = (EnumerablePropertySource<?>) source;
+    }
+
+    /**
+     * Resolves and validates every matching key. Fails on the first value that cannot be
+     * converted to its declared type.
+     */
+    public List<ContextEnvironment> toContextEnvironments() {
+        String[] names = source.getPropertyNames();
+        List<ContextEnvironment> environments = new ArrayList<>(names.length);
+        for (String key : names) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            Object value = source.getProperty(key);
+            if (value == null) {
+                continue;
+            }
+            String name = stripPrefix ? key.substring(prefix.length()) : key;
+            if (name.isEmpty()) {
+                continue;
+            }
+            Class<?> type = getType(name, value);
+            ContextEnvironment env = new ContextEnvironment();
+            env.setName(name);
+            env.setType(type.getName());
+            env.setValue(validate(name, value, type));
+            env.setOverride(override);
+            environments.add(env);
+        }
+        return environments;
+    }
+
+    private Class<?> getType(String name, Object value) {
+        Class<?> type = types.get(name);
+        if (type != null) {
+            return type;
+        }
+        return SUPPORTED_TYPES.contains(value.getClass()) ? value.getClass() : String.class;
+    }
+
+    /**
+     * Checks that Tomcat can convert the value to the given type, with the same parsing it uses
+     * when binding the entry, and returns the text to bind. Numbers and booleans are trimmed,
+     * which Tomcat does not do itself.
+     */
+    static String validate(String name, Object value, Class<?> type) {
+        String text = type == String.class || type == Character.class ? value.toString() : value.toString().trim();
+        boolean valid = true;
+        try {
+            if (type == Integer.class) {
+                Integer.decode(text);
+            } else if (type == Long.class) {
+                Long.decode(text);
+            } else if (type == Short.class) {
+                Short.decode(text);
+            } else if (type == Byte.class) {
+                Byte.decode(text);
+            } else if (type == Double.class) {
+                Double.valueOf(text);
+            } else if (type == Float.class) {
+                Float.valueOf(text);
+            } else if (type == Boolean.class) {
+                // Boolean.valueOf would silently turn typos into false
+                valid = "true".equalsIgnoreCase(text) || "false".equalsIgnoreCase(text);
+            } else if (type == Character.class) {
+                valid = text.length() == 1;
+            }
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("Value '" + value + "' of environment entry '" + name
+                    + "' cannot be converted to " + type.getName());
+        }
+        return text;
+    }
+
+    public String getSourceName() {
+        return source.getName();
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Only imports keys starting with the given prefix.
+     */
+    public void setPrefix(String prefix) {
+        Assert.notNull(prefix, "Prefix cannot be null");
+        this.prefix = prefix;
+    }
+
+    public boolean isStripPrefix() {
+        return stripPrefix;
+    }
+
+    /**
+     * Binds the keys without the prefix, e.g. {@code app.port} as {@code port}.
+     */
+    public void setStripPrefix(boolean stripPrefix) {
+        this.stripPrefix = stripPrefix;
+    }
+
+    public boolean isOverride() {
+        return override;
+    }
+
+    public void setOverride(boolean override) {
+        this.override = override;
+    }
+
+    public Map<String, Class<?>> getTypes() {
+        return types;
+    }
+
+    /**
+     * Declares the type of an entry, by its JNDI name, i.e. without the prefix if it is stripped.
+     */
+    public void addType(String name, Class<?> type) {
+        Assert.hasText(name, "Name cannot be empty");
+        Assert.isTrue(SUPPORTED_TYPES.contains(type), "Environment entries cannot be of type " + type);
+        types.put(name, type);
+    }
+}
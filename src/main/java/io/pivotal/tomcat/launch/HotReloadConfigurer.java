@@ -0,0 +1,24 @@
+package io.pivotal.tomcat.launch;
+
+import java.util.concurrent.TimeUnit;
+
+public class HotReloadConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final HotReloadSettings settings;
+
+    public HotReloadConfigurer(TomcatConfigurer parent, HotReloadSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    public HotReloadConfigurer debounce(long debounce, TimeUnit unit) {
+        settings.setDebounceMillis(unit.toMillis(debounce));
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
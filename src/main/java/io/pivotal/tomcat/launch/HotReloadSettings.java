@@ -0,0 +1,56 @@
+package io.pivotal.tomcat.launch;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+
+/**
+ * Development mode that watches the mounted class and static resource folders and reloads the
+ * web apps when they change, without restarting the JVM.
+ */
+public class HotReloadSettings {
+
+    public static final String ENV_HOT_RELOAD = "TOMCAT_HOT_RELOAD";
+
+    public static final String ENV_DEBOUNCE = "TOMCAT_HOT_RELOAD_DEBOUNCE";
+
+    public static final long DEFAULT_DEBOUNCE = 300;
+
+    private boolean enabled = false;
+
+    private long debounceMillis = DEFAULT_DEBOUNCE;
+
+    /**
+     * Reads hot reload settings from the given environment, the debounce in milliseconds.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_HOT_RELOAD))) {
+            setEnabled(Boolean.valueOf(env.get(ENV_HOT_RELOAD).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_DEBOUNCE))) {
+            setDebounceMillis(Long.valueOf(env.get(ENV_DEBOUNCE).trim()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    /**
+     * How long the file system has to be quiet before a burst of changes, such as a full
+     * recompile, triggers a single reload.
+     */
+    public void setDebounceMillis(long debounceMillis) {
+        Assert.isTrue(debounceMillis >= 0, "debounceMillis cannot be negative");
+        this.debounceMillis = debounceMillis;
+    }
+}
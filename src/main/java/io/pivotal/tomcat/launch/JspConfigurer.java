@@ -0,0 +1,45 @@
+package io.pivotal.tomcat.launch;
+
+public class JspConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final JspSettings settings;
+
+    public JspConfigurer(TomcatConfigurer parent, JspSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    /**
+     * Serves the JSPs precompiled by the {@code precompileJsp} task into the default folder.
+     */
+    public JspConfigurer precompiled() {
+        return precompiled(JspSettings.DEFAULT_PRECOMPILED_DIR);
+    }
+
+    public JspConfigurer precompiled(String relativePrecompiledDir) {
+        settings.setPrecompiledDir(relativePrecompiledDir);
+        return this;
+    }
+
+    /**
+     * Compiles the JSPs that are not precompiled during the warm-up instead of on first request.
+     */
+    public JspConfigurer precompileOnStartup() {
+        settings.setPrecompileOnStartup(true);
+        return this;
+    }
+
+    /**
+     * Turns Jasper's production settings on or off regardless of precompilation.
+     */
+    public JspConfigurer development(boolean development) {
+        settings.setDevelopment(development);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
@@ -0,0 +1,195 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.ServletDef;
+import org.apache.tomcat.util.descriptor.web.WebXml;
+import org.apache.tomcat.util.descriptor.web.WebXmlParser;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Jasper settings for running JSPs in production. Precompiled JSPs are servlet classes generated
+ * at build time by the {@code precompileJsp} task, the launcher mounts their classes and
+ * registers the servlets and mappings from the generated web.xml, so no JSP is compiled on a
+ * request thread.
+ */
+public class JspSettings {
+
+    public static final String ENV_PRECOMPILED = "TOMCAT_JSP_PRECOMPILED";
+
+    public static final String ENV_PRECOMPILE = "TOMCAT_JSP_PRECOMPILE";
+
+    public static final String ENV_DEVELOPMENT = "TOMCAT_JSP_DEVELOPMENT";
+
+    public static final String JSP_SERVLET = "jsp";
+
+    /**
+     * Output folder of the {@code precompileJsp} task, relative to the application root.
+     */
+    public static final String DEFAULT_PRECOMPILED_DIR = "build/jsp";
+
+    public static final String PRECOMPILED_WEB_XML = "web.xml";
+
+    public static final String PRECOMPILED_CLASSES = "classes";
+
+    public static final String PRECOMPILE_PARAM = "jsp_precompile";
+
+    private String precompiledDir;
+
+    private boolean precompileOnStartup = false;
+
+    private Boolean development;
+
+    /**
+     * Reads JSP settings from the given environment.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_PRECOMPILED))) {
+            setPrecompiledDir(env.get(ENV_PRECOMPILED).trim());
+        }
+        if (StringUtils.hasText(env.get(ENV_PRECOMPILE))) {
+            setPrecompileOnStartup(Boolean.valueOf(env.get(ENV_PRECOMPILE).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_DEVELOPMENT))) {
+            setDevelopment(Boolean.valueOf(env.get(ENV_DEVELOPMENT).trim()));
+        }
+    }
+
+    /**
+     * Returns a listener that configures the JSP servlet of the context it is added to once
+     * web.xml has been processed, and registers the precompiled servlets described by the given
+     * web.xml if it is not {@code null}.
+     */
+    public LifecycleListener lifecycleListener(final File precompiledWebXml) {
+        return new LifecycleListener() {
+            @Override
+            public void lifecycleEvent(LifecycleEvent event) {
+                if (Lifecycle.CONFIGURE_START_EVENT.equals(event.getType())) {
+                    Context context = (Context) event.getLifecycle();
+                    configureJspServlet(context);
+                    if (precompiledWebXml != null) {
+                        registerPrecompiled(context, precompiledWebXml);
+                    }
+                }
+            }
+        };
+    }
+
+    public void configureJspServlet(Context context) {
+        Wrapper wrapper = (Wrapper) context.findChild(JSP_SERVLET);
+        if (wrapper == null || !isProduction()) {
+            return;
+        }
+        // No modification checks and no background compiles, a JSP is compiled at most once
+        wrapper.addInitParameter("development", "false");
+        wrapper.addInitParameter("checkInterval", "0");
+    }
+
+    /**
+     * Adds the servlets and mappings of a web.xml generated by JspC to the context, paths that
+     * the application maps itself are left alone. Returns the number of registered servlets.
+     */
+    public int registerPrecompiled(Context context, File webXmlFile) {
+        WebXml webXml = new WebXml();
+        try {
+            if (!new WebXmlParser(false, false, true).parseWebXml(webXmlFile.toURI().toURL(), webXml, false)) {
+                throw new IllegalStateException("Invalid precompiled JSP web.xml '" + webXmlFile + "'");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read precompiled JSP web.xml '" + webXmlFile + "'", e);
+        }
+        int registered = 0;
+        for (Map.Entry<String, String> mapping : webXml.getServletMappings().entrySet()) {
+            String pattern = mapping.getKey();
+            ServletDef servlet = webXml.getServlets().get(mapping.getValue());
+            if (servlet == null || context.findServletMapping(pattern) != null) {
+                continue;
+            }
+            if (context.findChild(servlet.getServletName()) == null) {
+                Tomcat.addServlet(context, servlet.getServletName(), servlet.getServletClass());
+                registered++;
+            }
+            context.addServletMappingDecoded(pattern, servlet.getServletName());
+        }
+        System.out.println("registered " + registered + " precompiled JSPs from '" + webXmlFile + "'");
+        return registered;
+    }
+
+    /**
+     * Lists the JSPs of the context that are served by the JSP servlet, that is all JSPs outside
+     * {@code WEB-INF} and {@code META-INF} without a precompiled servlet of their own.
+     */
+    public List<String> findJsps(Context context) {
+        List<String> jsps = new ArrayList<>();
+        collectJsps(context, "/", jsps);
+        return jsps;
+    }
+
+    private void collectJsps(Context context, String dir, List<String> jsps) {
+        Set<String> paths = context.getServletContext().getResourcePaths(dir);
+        if (paths == null) {
+            return;
+        }
+        for (String path : paths) {
+            if (path.endsWith("/")) {
+                if (!path.equals("/WEB-INF/") && !path.equals("/META-INF/")) {
+                    collectJsps(context, path, jsps);
+                }
+            } else if ((path.endsWith(".jsp") || path.endsWith(".jspx")) && context.findServletMapping(path) == null) {
+                jsps.add(path);
+            }
+        }
+    }
+
+    public String getPrecompiledDir() {
+        return precompiledDir;
+    }
+
+    /**
+     * Folder, relative to the application root, holding the web.xml and classes written by the
+     * {@code precompileJsp} task.
+     */
+    public void setPrecompiledDir(String precompiledDir) {
+        this.precompiledDir = precompiledDir;
+    }
+
+    public boolean isPrecompileOnStartup() {
+        return precompileOnStartup;
+    }
+
+    /**
+     * Compiles every JSP during the warm-up, before the connector accepts traffic.
+     */
+    public void setPrecompileOnStartup(boolean precompileOnStartup) {
+        this.precompileOnStartup = precompileOnStartup;
+    }
+
+    public Boolean getDevelopment() {
+        return development;
+    }
+
+    public void setDevelopment(Boolean development) {
+        this.development = development;
+    }
+
+    /**
+     * Jasper runs in production mode when asked to, or by default when JSPs are precompiled.
+     */
+    public boolean isProduction() {
+        if (development != null) {
+            return !development;
+        }
+        return precompiledDir != null || precompileOnStartup;
+    }
+}
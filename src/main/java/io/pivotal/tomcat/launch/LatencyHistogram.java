@@ -0,0 +1,104 @@
+package io.pivotal.tomcat.launch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed bucket latency histogram. Recording is a bucket search over a small array plus two atomic
+ * increments, so it does not allocate on the request path.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Upper bounds of the buckets in milliseconds, the last bucket is unbounded.
+     */
+    public static final double[] DEFAULT_BUCKETS_MILLIS =
+            {1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final long[] boundsNanos;
+
+    private final double[] boundsMillis;
+
+    private final AtomicLongArray counts;
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        this(DEFAULT_BUCKETS_MILLIS);
+    }
+
+    public LatencyHistogram(double[] bucketsMillis) {
+        this.boundsMillis = bucketsMillis.clone();
+        this.boundsNanos = new long[bucketsMillis.length];
+        for (int i = 0; i < bucketsMillis.length; i++) {
+            if (i > 0 && bucketsMillis[i] <= bucketsMillis[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be increasing");
+            }
+            boundsNanos[i] = (long) (bucketsMillis[i] * 1000000);
+        }
+        this.counts = new AtomicLongArray(bucketsMillis.length + 1);
+    }
+
+    public void record(long durationNanos) {
+        int bucket = 0;
+        while (bucket < boundsNanos.length && durationNanos > boundsNanos[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        sumNanos.add(durationNanos);
+    }
+
+    public int getBucketCount() {
+        return counts.length();
+    }
+
+    /**
+     * Upper bound of the given bucket in milliseconds, {@link Double#POSITIVE_INFINITY} for the last.
+     */
+    public double getUpperBoundMillis(int bucket) {
+        return bucket < boundsMillis.length ? boundsMillis[bucket] : Double.POSITIVE_INFINITY;
+    }
+
+    public long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getSum(TimeUnit unit) {
+        return unit.convert(sumNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Estimates the given percentile (0-100) as the upper bound of the bucket it falls into.
+     */
+    public double getPercentileMillis(double percentile) {
+        long total = getTotalCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return getUpperBoundMillis(i);
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sumNanos.reset();
+    }
+}
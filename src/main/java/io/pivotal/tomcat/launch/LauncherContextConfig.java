@@ -0,0 +1,36 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.startup.ContextConfig;
+import org.apache.tomcat.util.digester.Digester;
+
+/**
+ * {@link ContextConfig} that reports how long context.xml and web.xml processing take.
+ */
+public class LauncherContextConfig extends ContextConfig {
+
+    private final StartupReport report;
+
+    public LauncherContextConfig(StartupReport report) {
+        this.report = report;
+    }
+
+    @Override
+    protected void contextConfig(Digester digester) {
+        long start = report.start();
+        try {
+            super.contextConfig(digester);
+        } finally {
+            report.stop(StartupReport.CONTEXT_XML, start);
+        }
+    }
+
+    @Override
+    protected void webConfig() {
+        long start = report.start();
+        try {
+            super.webConfig();
+        } finally {
+            report.stop(StartupReport.WEB_XML, start);
+        }
+    }
+}
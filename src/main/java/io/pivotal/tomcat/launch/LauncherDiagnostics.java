@@ -0,0 +1,95 @@
+package io.pivotal.tomcat.launch;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Structured diagnostic output of the launcher. Every event is written to stdout as a single JSON
+ * line so that log aggregators can pick the fields apart.
+ */
+public final class LauncherDiagnostics {
+
+    private LauncherDiagnostics() {
+    }
+
+    public static void emit(String event, Map<String, ?> fields) {
+        System.out.println(format(event, fields));
+    }
+
+    public static String format(String event, Map<String, ?> fields) {
+        StringBuilder json = new StringBuilder("{\"event\":");
+        appendValue(json, event);
+        for (Map.Entry<String, ?> field : fields.entrySet()) {
+            json.append(',');
+            appendValue(json, field.getKey());
+            json.append(':');
+            appendValue(json, field.getValue());
+        }
+        return json.append('}').toString();
+    }
+
+    private static void appendValue(StringBuilder json, Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof Map) {
+            json.append('{');
+            Iterator<? extends Map.Entry<?, ?>> entries = ((Map<?, ?>) value).entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<?, ?> entry = entries.next();
+                appendValue(json, String.valueOf(entry.getKey()));
+                json.append(':');
+                appendValue(json, entry.getValue());
+                if (entries.hasNext()) {
+                    json.append(',');
+                }
+            }
+            json.append('}');
+        } else if (value instanceof Collection) {
+            json.append('[');
+            Iterator<?> items = ((Collection<?>) value).iterator();
+            while (items.hasNext()) {
+                appendValue(json, items.next());
+                if (items.hasNext()) {
+                    json.append(',');
+                }
+            }
+            json.append(']');
+        } else {
+            appendString(json, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
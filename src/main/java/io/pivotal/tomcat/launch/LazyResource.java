@@ -0,0 +1,214 @@
+package io.pivotal.tomcat.launch;
+
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.spi.ObjectFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A JNDI resource that is created on first use. Lookups return a proxy for the resource's
+ * interface, the first call on the proxy creates the resource with its own factory and every
+ * call is passed on to it. Concurrent first calls race to publish a single creation task, the
+ * losers wait for its result instead of building a second pool. A failed creation is withdrawn
+ * so that the next call tries again.
+ */
+public class LazyResource implements InvocationHandler {
+
+    private final String name;
+
+    private final Class<?> type;
+
+    private final Object proxy;
+
+    private final AtomicReference<FutureTask<Object>> creation = new AtomicReference<>();
+
+    private final LongAdder uses = new LongAdder();
+
+    private volatile Callable<Object> creator;
+
+    private volatile Object target;
+
+    private volatile long creationNanos;
+
+    LazyResource(String name, Class<?> type, ClassLoader classLoader) {
+        this.name = name;
+        this.type = type;
+        this.proxy = Proxy.newProxyInstance(classLoader, new Class<?>[] {type}, this);
+    }
+
+    /**
+     * Remembers how to create the resource from the reference that was looked up and returns the
+     * proxy, nothing is created yet.
+     */
+    Object lookup(final String factory, final Object obj, final Name name, final Context nameCtx,
+                  final Hashtable<?, ?> environment) {
+        if (creator == null) {
+            final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            creator = new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    ClassLoader previous = Thread.currentThread().getContextClassLoader();
+                    Thread.currentThread().setContextClassLoader(classLoader);
+                    try {
+                        ObjectFactory delegate = RetainingResourceFactory.createDelegate(factory);
+                        return delegate.getObjectInstance(obj, name, nameCtx, environment);
+                    } finally {
+                        Thread.currentThread().setContextClassLoader(previous);
+                    }
+                }
+            };
+        }
+        return proxy;
+    }
+
+    /**
+     * Returns the resource, creating it if this is the first call.
+     */
+    public Object get() throws Exception {
+        Object resource = target;
+        if (resource != null) {
+            return resource;
+        }
+        while (true) {
+            FutureTask<Object> task = creation.get();
+            if (task == null) {
+                FutureTask<Object> created = new FutureTask<>(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return create();
+                    }
+                });
+                if (creation.compareAndSet(null, created)) {
+                    created.run();
+                }
+                continue;
+            }
+            try {
+                return task.get();
+            } catch (ExecutionException e) {
+                creation.compareAndSet(task, null);
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+    }
+
+    private Object create() throws Exception {
+        Callable<Object> creator = this.creator;
+        if (creator == null) {
+            throw new IllegalStateException("Resource '" + name + "' was used before it was looked up");
+        }
+        long start = System.nanoTime();
+        Object resource = creator.call();
+        if (resource == null) {
+            throw new IllegalStateException("Factory of resource '" + name + "' returned null");
+        }
+        creationNanos = System.nanoTime() - start;
+        target = resource;
+        System.out.println("created lazy resource '" + name + "' in " + creationNanos / 1000000 + " ms");
+        return resource;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "lazy " + type.getName() + " '" + name + "'";
+            }
+        }
+        uses.increment();
+        Object resource;
+        try {
+            resource = get();
+        } catch (Exception e) {
+            throw translate(method, e);
+        }
+        try {
+            return method.invoke(resource, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Passes creation failures on as they are when the method declares them, e.g. an
+     * SQLException from {@code getConnection()}.
+     */
+    private Throwable translate(Method method, Exception e) {
+        if (e instanceof RuntimeException) {
+            return e;
+        }
+        for (Class<?> declared : method.getExceptionTypes()) {
+            if (declared.isInstance(e)) {
+                return e;
+            }
+        }
+        return new IllegalStateException("Failed to create resource '" + name + "'", e);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The resource if it has been created, {@code null} otherwise.
+     */
+    public Object peek() {
+        return target;
+    }
+
+    /**
+     * The resource, waiting up to the given time if a creation is in flight, so that a pool
+     * built during shutdown is still closed. Returns {@code null} if the resource was never
+     * created, its creation failed or did not finish in time.
+     */
+    public Object await(long timeout, TimeUnit unit) {
+        Object resource = target;
+        FutureTask<Object> task = creation.get();
+        if (resource != null || task == null) {
+            return resource;
+        }
+        try {
+            return task.get(timeout, unit);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            System.out.println("lazy resource '" + name + "' is still being created after "
+                    + unit.toMillis(timeout) + " ms, it is not closed");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    public boolean isCreated() {
+        return target != null;
+    }
+
+    /**
+     * Calls on the proxy, not counting {@code equals}, {@code hashCode} and {@code toString}.
+     */
+    public long getUses() {
+        return uses.sum();
+    }
+
+    public long getCreationNanos() {
+        return creationNanos;
+    }
+}
@@ -0,0 +1,90 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+import org.springframework.util.ClassUtils;
+
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+import javax.naming.spi.ObjectFactory;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JNDI factory that binds a {@link LazyResource} proxy in place of the resource, so that pools
+ * of data sources an instance never uses are never built. The resource's own factory is kept in
+ * a separate reference address and only called on first use.
+ * <p>
+ * Deferred resources are not singletons for Tomcat, which would otherwise look data sources up
+ * right after binding them to register them in JMX. Every lookup returns the same proxy.
+ */
+public class LazyResourceFactory implements ObjectFactory {
+
+    static final String DELEGATE = "lazyFactory";
+
+    static final String KEY = "lazyKey";
+
+    private static final Map<String, LazyResource> RESOURCES = new ConcurrentHashMap<>();
+
+    /**
+     * Routes the given resource through this factory under the given key. Resources without an
+     * explicit factory, or whose type is not an interface, are left alone and created eagerly.
+     */
+    public static boolean defer(ContextResource resource, String key, ClassLoader classLoader) {
+        Object factory = resource.getProperty("factory");
+        if (factory == null || LazyResourceFactory.class.getName().equals(factory) || resource.getType() == null) {
+            return false;
+        }
+        Class<?> type;
+        try {
+            type = ClassUtils.forName(resource.getType(), classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            type = null;
+        }
+        if (type == null || !type.isInterface()) {
+            System.out.println("resource '" + resource.getName() + "' of type " + resource.getType()
+                    + " is not an interface, it is created eagerly");
+            return false;
+        }
+        RESOURCES.put(key, new LazyResource(resource.getName(), type, classLoader));
+        resource.setProperty(DELEGATE, factory);
+        resource.setProperty(KEY, key);
+        resource.setProperty("factory", LazyResourceFactory.class.getName());
+        resource.setSingleton(false);
+        return true;
+    }
+
+    /**
+     * Returns the deferred resource registered under the given key, or {@code null}.
+     */
+    public static LazyResource get(String key) {
+        return RESOURCES.get(key);
+    }
+
+    /**
+     * Forgets the resources whose key starts with the given prefix, once they have been closed.
+     */
+    public static void release(String keyPrefix) {
+        Iterator<String> keys = RESOURCES.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(keyPrefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    @Override
+    public Object getObjectInstance(Object obj, Name name, Context nameCtx, Hashtable<?, ?> environment)
+            throws Exception {
+        Reference ref = (Reference) obj;
+        String key = RetainingResourceFactory.content(ref, KEY);
+        LazyResource resource = RESOURCES.get(key);
+        if (resource == null) {
+            throw new NamingException("Lazy resource '" + key + "' has been released");
+        }
+        return resource.lookup(RetainingResourceFactory.content(ref, DELEGATE), obj, name, nameCtx, environment);
+    }
+}
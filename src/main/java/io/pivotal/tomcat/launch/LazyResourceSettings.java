@@ -0,0 +1,38 @@
+package io.pivotal.tomcat.launch;
+
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+
+/**
+ * Lazy resource mode. JNDI resources with an explicit factory, such as the tomcat-jdbc data
+ * sources, are bound as proxies and only created on first use, see {@link LazyResourceFactory}.
+ * Resources that were never used are listed when the server stops and exported as metrics, so
+ * that unneeded declarations can be removed.
+ * <p>
+ * Lazy data sources are warmed up only when their own settings ask for it, and are not
+ * registered in JMX.
+ */
+public class LazyResourceSettings {
+
+    public static final String ENV_LAZY_RESOURCES = "TOMCAT_LAZY_RESOURCES";
+
+    private boolean enabled = false;
+
+    /**
+     * Reads the lazy resource switch from the given environment.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_LAZY_RESOURCES))) {
+            setEnabled(Boolean.valueOf(env.get(ENV_LAZY_RESOURCES).trim()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
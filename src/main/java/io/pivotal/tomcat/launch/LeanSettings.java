@@ -0,0 +1,112 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.tomcat.JarScanner;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+
+/**
+ * Lean mode for servlet-only applications. The JSP servlet and its mappings are not registered,
+ * Jasper's ServletContainerInitializer, which sets up the JSP and EL runtime, is filtered out,
+ * and the jar scan is narrowed to the application's own jars, i.e. {@code WEB-INF/lib} and the
+ * folders mounted there, instead of the whole JVM classpath. Web fragments and annotated classes
+ * in jars that are only on the JVM classpath are not found in lean mode.
+ * <p>
+ * Lean mode is on by default when Jasper is not on the classpath, as with the
+ * {@code tomcat-launcher-lean} artifact, and can be switched on or off explicitly.
+ */
+public class LeanSettings {
+
+    public static final String ENV_LEAN = "TOMCAT_LEAN";
+
+    public static final String JSP_SERVLET_CLASS = "org.apache.jasper.servlet.JspServlet";
+
+    /**
+     * Matches the ServletContainerInitializers that are skipped in lean mode.
+     */
+    public static final String CONTAINER_SCI_FILTER = "org\\.apache\\.jasper\\..*";
+
+    private Boolean enabled;
+
+    /**
+     * Reads the lean mode switch from the given environment.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_LEAN))) {
+            setEnabled(Boolean.valueOf(env.get(ENV_LEAN).trim()));
+        }
+    }
+
+    public boolean isEnabled() {
+        if (enabled != null) {
+            return enabled;
+        }
+        return !ClassUtils.isPresent(JSP_SERVLET_CLASS, LeanSettings.class.getClassLoader());
+    }
+
+    /**
+     * Returns a listener that trims the context it is added to before it starts. It has to be
+     * added after the listener that registers Tomcat's default servlets.
+     */
+    public LifecycleListener lifecycleListener() {
+        return new LifecycleListener() {
+            @Override
+            public void lifecycleEvent(LifecycleEvent event) {
+                if (Lifecycle.BEFORE_START_EVENT.equals(event.getType()) && isEnabled()) {
+                    apply((Context) event.getLifecycle());
+                }
+            }
+        };
+    }
+
+    public void apply(Context context) {
+        removeJspServlet(context);
+        context.setContainerSciFilter(CONTAINER_SCI_FILTER);
+        JarScanner scanner = context.getJarScanner();
+        if (scanner instanceof TimedJarScanner) {
+            scanner = ((TimedJarScanner) scanner).getDelegate();
+        }
+        if (scanner instanceof StandardJarScanner) {
+            StandardJarScanner standardScanner = (StandardJarScanner) scanner;
+            standardScanner.setScanClassPath(false);
+            standardScanner.setScanBootstrapClassPath(false);
+            standardScanner.setScanManifest(false);
+        }
+    }
+
+    /**
+     * Removes the JSP servlet registered by Tomcat's defaults, the class is never loaded. A JSP
+     * servlet declared in the application's own web.xml is added later and kept.
+     */
+    private void removeJspServlet(Context context) {
+        Container jsp = context.findChild(JspSettings.JSP_SERVLET);
+        if (jsp == null) {
+            return;
+        }
+        for (String pattern : context.findServletMappings()) {
+            if (JspSettings.JSP_SERVLET.equals(context.findServletMapping(pattern))) {
+                context.removeServletMapping(pattern);
+            }
+        }
+        context.removeChild(jsp);
+        context.removeWelcomeFile("index.jsp");
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches lean mode on or off, {@code null} detects it from the classpath.
+     */
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -1,6 +1,5 @@
 package io.pivotal.tomcat.launch;
 
-import org.apache.tomcat.util.descriptor.web.ContextResource;
 import org.springframework.core.env.MapPropertySource;
 import org.springframework.core.env.PropertySource;
 import org.springframework.util.Assert;
@@ -24,16 +23,16 @@ public class Main {
         properties.put("foo.db", "mycooldb");
 		PropertySource source = new MapPropertySource("foo", properties);
 
-		TomcatLauncher.configure()
+		TomcatConfigurer configurer = TomcatLauncher.configure()
 				.addEnvironment(source, "foo")
 				.addEnvironment(source, "newprop")
-                .addEnvironment(source, "foo.db")
-                .addContextResource(createContainerDataSource(getConnectionProperties("hello-db")))
+                .addEnvironment(source, "foo.db");
+        configureDataSource(configurer, getConnectionProperties("hello-db"))
                 .apply()
                 .launch();
 	}
 
-    private ContextResource createContainerDataSource(Map<String, Object> credentials) {
+    private TomcatConfigurer configureDataSource(TomcatConfigurer configurer, Map<String, Object> credentials) {
         System.out.println("creds: " + credentials);
         Assert.notNull(credentials, "Service credentials cannot be null");
         Assert.notNull(credentials.get("name"), "Service name is null");
@@ -41,22 +40,19 @@ public class Main {
         Assert.notNull(credentials.get("url"), "Jdbc url is null");
         Assert.notNull(credentials.get("username"), "Username is null");
         Assert.notNull(credentials.get("password"), "Password is null");
-        ContextResource resource = new ContextResource();
-        resource.setAuth("Container");
-        resource.setType("javax.sql.DataSource");
-        resource.setName(credentials.get("name").toString());
-        resource.setProperty("driverClassName", credentials.get("driverClassName"));
-        resource.setProperty("url", credentials.get("url"));
-        if (credentials.get("factory") != null) {
-            resource.setProperty("factory", credentials.get("factory"));
-        }
+        DataSourceConfigurer dataSource = configurer.dataSource(credentials.get("name").toString())
+                .driverClassName(credentials.get("driverClassName").toString())
+                .url(credentials.get("url").toString())
+                .credentials(credentials.get("username").toString(), credentials.get("password").toString())
+                .poolSize(2, 2, 20)
+                .maxWait(10000)
+                .validation("SELECT 1", 30000)
+                .removeAbandoned(60, true)
+                .statementCache(50);
         if (credentials.get("connectionProperties") != null) {
-            resource.setProperty("connectionProperties", credentials.get("connectionProperties"));
+            dataSource.connectionProperties(credentials.get("connectionProperties").toString());
         }
-        resource.setProperty("username", credentials.get(("username")));
-        resource.setProperty("password", credentials.get("password"));
-
-        return resource;
+        return dataSource.and();
     }
 
     private Map<String, Object> getConnectionProperties(String serviceName) {
@@ -67,7 +63,6 @@ public class Main {
         credentials.put("connectionProperties", "useUnicode=true;useJDBCCompliantTimezoneShift=true;useLegacyDatetimeCode=false;serverTimezone=UTC;");
         credentials.put("driverClassName", "com.mysql.cj.jdbc.Driver");
         credentials.put("name", PREFIX_JDBC + serviceName);
-        credentials.put("factory", "org.apache.tomcat.jdbc.pool.DataSourceFactory");
         return credentials;
     }
 }
@@ -0,0 +1,451 @@
+package io.pivotal.tomcat.launch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.catalina.Context;
+import org.apache.catalina.Manager;
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admin endpoint on its own port that serves connector, thread pool, session, JDBC pool and
+ * request latency metrics in the Prometheus text format. Values are sampled from Tomcat's MBeans
+ * and the launcher's contexts when the endpoint is scraped, nothing is collected in between
+ * except the request latency histogram kept by {@link MetricsValve}. {@link #READY_PATH} answers 503
+ * until the launcher has finished its warm-up and started the connector.
+ */
+public class MetricsEndpoint {
+
+    public static final String PATH = "/metrics";
+
+    public static final String READY_PATH = "/ready";
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final int port;
+
+    private final MetricsValve valve = new MetricsValve();
+
+    private TomcatLauncher launcher;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    public MetricsEndpoint(int port) {
+        this.port = port;
+    }
+
+    public void start(TomcatLauncher launcher) throws IOException {
+        this.launcher = launcher;
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "tomcat-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.createContext(READY_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean ready = launcher.isReady();
+                byte[] body = (ready ? "ready" : "warming up").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(ready ? 200 : 503, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        System.out.println("metrics endpoint listening on port " + getPort() + PATH);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    public MetricsValve getValve() {
+        return valve;
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        writeRequestMetrics(out);
+        writeLatency(out);
+        writeThreadPools(out);
+        writeResourceCache(out);
+        if (launcher != null) {
+            writeResponsePipeline(out);
+            List<WebApp> webApps = launcher.getWebApps();
+            writeSessions(out, webApps);
+            writeJdbcPools(out, webApps);
+            writeLazyResources(out, webApps);
+            writeTracing(out);
+            writeAdmission(out);
+            writeAccessLog(out);
+        }
+        return out.toString();
+    }
+
+    private void writeRequestMetrics(StringBuilder out) {
+        Set<ObjectName> processors = queryNames("*:type=GlobalRequestProcessor,*");
+        header(out, "tomcat_requests_total", "counter", "Requests processed by the connector");
+        for (ObjectName name : processors) {
+            sample(out, "tomcat_requests_total", connectorLabel(name), attribute(name, "requestCount"));
+        }
+        header(out, "tomcat_request_errors_total", "counter", "Requests that resulted in an error");
+        for (ObjectName name : processors) {
+            sample(out, "tomcat_request_errors_total", connectorLabel(name), attribute(name, "errorCount"));
+        }
+        header(out, "tomcat_bytes_sent_total", "counter", "Bytes sent by the connector");
+        for (ObjectName name : processors) {
+            sample(out, "tomcat_bytes_sent_total", connectorLabel(name), attribute(name, "bytesSent"));
+        }
+        header(out, "tomcat_bytes_received_total", "counter", "Bytes received by the connector");
+        for (ObjectName name : processors) {
+            sample(out, "tomcat_bytes_received_total", connectorLabel(name), attribute(name, "bytesReceived"));
+        }
+        header(out, "tomcat_responses_total", "counter", "Responses by status class");
+        for (int statusClass = 1; statusClass <= 5; statusClass++) {
+            sample(out, "tomcat_responses_total", "status=\"" + statusClass + "xx\"", valve.getStatusCount(statusClass));
+        }
+        header(out, "tomcat_requests_in_flight", "gauge", "Requests currently being processed");
+        sample(out, "tomcat_requests_in_flight", null, valve.getInFlight());
+    }
+
+    private void writeLatency(StringBuilder out) {
+        LatencyHistogram latency = valve.getLatency();
+        header(out, "tomcat_request_duration_seconds", "histogram", "Request processing time");
+        long cumulative = 0;
+        for (int i = 0; i < latency.getBucketCount(); i++) {
+            cumulative += latency.getCount(i);
+            double bound = latency.getUpperBoundMillis(i);
+            String le = Double.isInfinite(bound) ? "+Inf" : Double.toString(bound / 1000);
+            sample(out, "tomcat_request_duration_seconds_bucket", "le=\"" + le + "\"", cumulative);
+        }
+        out.append("tomcat_request_duration_seconds_sum ")
+                .append(latency.getSum(TimeUnit.MICROSECONDS) / 1000000.0).append('\n');
+        sample(out, "tomcat_request_duration_seconds_count", null, cumulative);
+    }
+
+    private void writeResponsePipeline(StringBuilder out) {
+        ResponsePipelineStats stats = launcher.getResponsePipelineSettings().getStats();
+        header(out, "tomcat_response_compressed_total", "counter", "Responses compressed by the response pipeline");
+        sample(out, "tomcat_response_compressed_total", null, stats.getCompressedResponses());
+        header(out, "tomcat_response_compression_saved_bytes_total", "counter", "Bytes saved by compression");
+        sample(out, "tomcat_response_compression_saved_bytes_total", null, stats.getBytesSaved());
+        header(out, "tomcat_response_compression_seconds_total", "counter", "Time spent compressing responses");
+        sample(out, "tomcat_response_compression_seconds_total", null,
+                stats.getCompressionTime(TimeUnit.MICROSECONDS) / 1000000.0);
+        header(out, "tomcat_response_not_modified_total", "counter", "Conditional GETs answered with 304");
+        sample(out, "tomcat_response_not_modified_total", null, stats.getNotModified());
+    }
+
+    private void writeThreadPools(StringBuilder out) {
+        Set<ObjectName> pools = queryNames("*:type=ThreadPool,*");
+        header(out, "tomcat_threads_busy", "gauge", "Request threads currently busy");
+        for (ObjectName name : pools) {
+            sample(out, "tomcat_threads_busy", connectorLabel(name), attribute(name, "currentThreadsBusy"));
+        }
+        header(out, "tomcat_threads_current", "gauge", "Request threads currently in the pool");
+        for (ObjectName name : pools) {
+            sample(out, "tomcat_threads_current", connectorLabel(name), attribute(name, "currentThreadCount"));
+        }
+        header(out, "tomcat_threads_max", "gauge", "Maximum number of request threads");
+        for (ObjectName name : pools) {
+            sample(out, "tomcat_threads_max", connectorLabel(name), attribute(name, "maxThreads"));
+        }
+        header(out, "tomcat_connections", "gauge", "Open connections");
+        for (ObjectName name : pools) {
+            sample(out, "tomcat_connections", connectorLabel(name), attribute(name, "connectionCount"));
+        }
+    }
+
+    private void writeResourceCache(StringBuilder out) {
+        Set<ObjectName> caches = queryNames("*:type=WebResourceRoot,name=Cache,*");
+        header(out, "tomcat_resource_cache_lookups_total", "counter", "Static resource cache lookups");
+        for (ObjectName name : caches) {
+            sample(out, "tomcat_resource_cache_lookups_total", cacheLabel(name), attribute(name, "lookupCount"));
+        }
+        header(out, "tomcat_resource_cache_hits_total", "counter", "Static resource cache hits");
+        for (ObjectName name : caches) {
+            sample(out, "tomcat_resource_cache_hits_total", cacheLabel(name), attribute(name, "hitCount"));
+        }
+        header(out, "tomcat_resource_cache_size_kilobytes", "gauge", "Current size of the static resource cache");
+        for (ObjectName name : caches) {
+            sample(out, "tomcat_resource_cache_size_kilobytes", cacheLabel(name), attribute(name, "size"));
+        }
+    }
+
+    private void writeSessions(StringBuilder out, List<WebApp> webApps) {
+        header(out, "tomcat_sessions_active", "gauge", "Active sessions");
+        for (WebApp webApp : webApps) {
+            Manager manager = webApp.getContext().getManager();
+            if (manager != null) {
+                sample(out, "tomcat_sessions_active", contextLabel(webApp.getContext()), manager.getActiveSessions());
+            }
+        }
+        header(out, "tomcat_sessions_created_total", "counter", "Sessions created");
+        for (WebApp webApp : webApps) {
+            Manager manager = webApp.getContext().getManager();
+            if (manager != null) {
+                sample(out, "tomcat_sessions_created_total", contextLabel(webApp.getContext()), manager.getSessionCounter());
+            }
+        }
+        header(out, "tomcat_sessions_expired_total", "counter", "Sessions expired");
+        for (WebApp webApp : webApps) {
+            Manager manager = webApp.getContext().getManager();
+            if (manager != null) {
+                sample(out, "tomcat_sessions_expired_total", contextLabel(webApp.getContext()), manager.getExpiredSessions());
+            }
+        }
+        header(out, "tomcat_sessions_rejected_total", "counter", "Sessions rejected because of the session limit");
+        for (WebApp webApp : webApps) {
+            Manager manager = webApp.getContext().getManager();
+            if (manager != null) {
+                sample(out, "tomcat_sessions_rejected_total", contextLabel(webApp.getContext()),
+                        manager.getRejectedSessions());
+            }
+        }
+        header(out, "tomcat_sessions_spilled", "gauge", "Sessions spilled to disk by the memory-bounded manager");
+        for (WebApp webApp : webApps) {
+            if (webApp.getContext().getManager() instanceof SpillingSessionManager) {
+                sample(out, "tomcat_sessions_spilled", contextLabel(webApp.getContext()),
+                        ((SpillingSessionManager) webApp.getContext().getManager()).getSpilledSessions());
+            }
+        }
+        header(out, "tomcat_sessions_page_in_seconds", "histogram", "Time to page a spilled session back in");
+        for (WebApp webApp : webApps) {
+            if (webApp.getContext().getManager() instanceof SpillingSessionManager) {
+                writeHistogram(out, "tomcat_sessions_page_in_seconds", contextLabel(webApp.getContext()),
+                        ((SpillingSessionManager) webApp.getContext().getManager()).getPageInLatency());
+            }
+        }
+    }
+
+    private void writeHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long cumulative = 0;
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            cumulative += histogram.getCount(i);
+            double bound = histogram.getUpperBoundMillis(i);
+            String le = Double.isInfinite(bound) ? "+Inf" : Double.toString(bound / 1000);
+            sample(out, name + "_bucket", labels + ",le=\"" + le + "\"", cumulative);
+        }
+        sample(out, name + "_sum", labels, histogram.getSum(TimeUnit.MICROSECONDS) / 1000000.0);
+        sample(out, name + "_count", labels, cumulative);
+    }
+
+    private void writeTracing(StringBuilder out) {
+        if (!launcher.getTracingSettings().isEnabled()) {
+            return;
+        }
+        TracingValve tracing = launcher.getTracingSettings().getValve();
+        header(out, "tomcat_request_phase_seconds", "histogram",
+                "Request time by phase, connection waits are part of the filter or servlet time");
+        writeHistogram(out, "tomcat_request_phase_seconds", "phase=\"queued\"", tracing.getQueued());
+        writeHistogram(out, "tomcat_request_phase_seconds", "phase=\"filters\"", tracing.getFilters());
+        writeHistogram(out, "tomcat_request_phase_seconds", "phase=\"servlet\"", tracing.getServlet());
+        writeHistogram(out, "tomcat_request_phase_seconds", "phase=\"connection_wait\"", tracing.getConnectionWait());
+    }
+
+    private void writeAdmission(StringBuilder out) {
+        if (!launcher.getAdmissionSettings().isEnabled()) {
+            return;
+        }
+        AdmissionValve admission = launcher.getAdmissionSettings().getValve();
+        Map<String, AdaptiveLimiter> limiters = new TreeMap<>(admission.getLimiters());
+        header(out, "tomcat_admission_admitted_total", "counter", "Requests admitted under the concurrency limit");
+        for (Map.Entry<String, AdaptiveLimiter> limiter : limiters.entrySet()) {
+            sample(out, "tomcat_admission_admitted_total", admissionLabel(limiter.getKey()), limiter.getValue().getAdmitted());
+        }
+        header(out, "tomcat_admission_critical_total", "counter", "Critical requests admitted without a limit");
+        sample(out, "tomcat_admission_critical_total", null, admission.getCritical());
+        header(out, "tomcat_admission_shed_total", "counter", "Requests rejected with a 503");
+        for (Map.Entry<String, AdaptiveLimiter> limiter : limiters.entrySet()) {
+            sample(out, "tomcat_admission_shed_total", admissionLabel(limiter.getKey()), limiter.getValue().getShed());
+        }
+        header(out, "tomcat_admission_queued_total", "counter", "Requests that waited for a slot");
+        for (Map.Entry<String, AdaptiveLimiter> limiter : limiters.entrySet()) {
+            sample(out, "tomcat_admission_queued_total", admissionLabel(limiter.getKey()), limiter.getValue().getQueued());
+        }
+        header(out, "tomcat_admission_limit", "gauge", "Current concurrency limit");
+        for (Map.Entry<String, AdaptiveLimiter> limiter : limiters.entrySet()) {
+            sample(out, "tomcat_admission_limit", admissionLabel(limiter.getKey()), limiter.getValue().getLimit());
+        }
+        header(out, "tomcat_admission_in_flight", "gauge", "Admitted requests in flight");
+        for (Map.Entry<String, AdaptiveLimiter> limiter : limiters.entrySet()) {
+            sample(out, "tomcat_admission_in_flight", admissionLabel(limiter.getKey()), limiter.getValue().getInFlight());
+        }
+    }
+
+    private void writeAccessLog(StringBuilder out) {
+        if (!launcher.getAccessLogSettings().isEnabled()) {
+            return;
+        }
+        AsyncAccessLogValve accessLog = launcher.getAccessLogSettings().getValve();
+        header(out, "tomcat_access_log_written_total", "counter", "Access log entries written");
+        sample(out, "tomcat_access_log_written_total", null, accessLog.getWritten());
+        header(out, "tomcat_access_log_dropped_total", "counter", "Access log entries dropped while the buffer was full");
+        sample(out, "tomcat_access_log_dropped_total", null, accessLog.getDropped());
+        header(out, "tomcat_access_log_pending", "gauge", "Access log entries waiting for the writer");
+        sample(out, "tomcat_access_log_pending", null, accessLog.getPending());
+    }
+
+    private static String admissionLabel(String contextPath) {
+        return "context=\"" + (contextPath.isEmpty() ? "/" : contextPath) + "\"";
+    }
+
+    private void writeJdbcPools(StringBuilder out, List<WebApp> webApps) {
+        Map<String, ConnectionPool> pools = new LinkedHashMap<>();
+        for (WebApp webApp : webApps) {
+            for (ContextResource resource : webApp.getContextResources()) {
+                ConnectionPool pool = getPool(webApp.getContext(), resource);
+                if (pool != null) {
+                    pools.put(contextLabel(webApp.getContext()) + ",resource=\"" + resource.getName() + "\"", pool);
+                }
+            }
+        }
+        header(out, "tomcat_jdbc_connections_active", "gauge", "Connections borrowed from the pool");
+        for (Map.Entry<String, ConnectionPool> pool : pools.entrySet()) {
+            sample(out, "tomcat_jdbc_connections_active", pool.getKey(), pool.getValue().getActive());
+        }
+        header(out, "tomcat_jdbc_connections_idle", "gauge", "Idle connections in the pool");
+        for (Map.Entry<String, ConnectionPool> pool : pools.entrySet()) {
+            sample(out, "tomcat_jdbc_connections_idle", pool.getKey(), pool.getValue().getIdle());
+        }
+        header(out, "tomcat_jdbc_connections_max", "gauge", "Maximum pool size");
+        for (Map.Entry<String, ConnectionPool> pool : pools.entrySet()) {
+            sample(out, "tomcat_jdbc_connections_max", pool.getKey(), pool.getValue().getPoolProperties().getMaxActive());
+        }
+        header(out, "tomcat_jdbc_waiters", "gauge", "Threads waiting for a connection");
+        for (Map.Entry<String, ConnectionPool> pool : pools.entrySet()) {
+            sample(out, "tomcat_jdbc_waiters", pool.getKey(), pool.getValue().getWaitCount());
+        }
+        header(out, "tomcat_jdbc_borrowed_total", "counter", "Connections borrowed since the pool was created");
+        for (Map.Entry<String, ConnectionPool> pool : pools.entrySet()) {
+            sample(out, "tomcat_jdbc_borrowed_total", pool.getKey(), pool.getValue().getBorrowedCount());
+        }
+    }
+
+    private void writeLazyResources(StringBuilder out, List<WebApp> webApps) {
+        if (!launcher.getLazyResourceSettings().isEnabled()) {
+            return;
+        }
+        Map<String, LazyResource> resources = new LinkedHashMap<>();
+        for (WebApp webApp : webApps) {
+            for (ContextResource resource : webApp.getContextResources()) {
+                LazyResource lazy = launcher.getLazyResource(webApp.getContext(), resource.getName());
+                if (lazy != null) {
+                    resources.put(contextLabel(webApp.getContext()) + ",resource=\"" + resource.getName() + "\"", lazy);
+                }
+            }
+        }
+        header(out, "tomcat_lazy_resource_created", "gauge", "Whether the lazily bound resource has been created");
+        for (Map.Entry<String, LazyResource> resource : resources.entrySet()) {
+            sample(out, "tomcat_lazy_resource_created", resource.getKey(), resource.getValue().isCreated() ? 1 : 0);
+        }
+        header(out, "tomcat_lazy_resource_uses_total", "counter", "Calls on the lazily bound resource");
+        for (Map.Entry<String, LazyResource> resource : resources.entrySet()) {
+            sample(out, "tomcat_lazy_resource_uses_total", resource.getKey(), resource.getValue().getUses());
+        }
+    }
+
+    private ConnectionPool getPool(Context context, ContextResource resource) {
+        LazyResource lazy = launcher.getLazyResource(context, resource.getName());
+        // Scraping must not create a lazy pool
+        Object dataSource = lazy != null ? lazy.peek() : launcher.lookupResource(context, resource.getName());
+        return dataSource instanceof DataSourceProxy ? ((DataSourceProxy) dataSource).getPool() : null;
+    }
+
+    private static Set<ObjectName> queryNames(String pattern) {
+        try {
+            return ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName(pattern), null);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid MBean pattern " + pattern, e);
+        }
+    }
+
+    private static Object attribute(ObjectName name, String attribute) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            return server.getAttribute(name, attribute);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String connectorLabel(ObjectName name) {
+        String connector = name.getKeyProperty("name");
+        if (connector.startsWith("\"")) {
+            connector = ObjectName.unquote(connector);
+        }
+        return "connector=\"" + connector + "\"";
+    }
+
+    private static String cacheLabel(ObjectName name) {
+        String context = name.getKeyProperty("context");
+        return "context=\"" + (context == null || context.isEmpty() ? "/" : context) + "\"";
+    }
+
+    private static String contextLabel(Context context) {
+        return "context=\"" + (context.getPath().isEmpty() ? "/" : context.getPath()) + "\"";
+    }
+
+    private static void header(StringBuilder out, String metric, String type, String help) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String metric, String labels, Object value) {
+        if (value == null) {
+            return;
+        }
+        out.append(metric);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value instanceof Number ? value : Double.NaN).append('\n');
+    }
+}
@@ -0,0 +1,61 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records request latency and response status classes for the metrics endpoint. For asynchronous
+ * requests the latency covers the container thread only, not the async completion.
+ */
+public class MetricsValve extends ValveBase {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder[] statusClasses = new LongAdder[5];
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public MetricsValve() {
+        super(true);
+        for (int i = 0; i < statusClasses.length; i++) {
+            statusClasses[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            getNext().invoke(request, response);
+        } finally {
+            inFlight.decrementAndGet();
+            latency.record(System.nanoTime() - start);
+            int statusClass = response.getStatus() / 100 - 1;
+            if (statusClass >= 0 && statusClass < statusClasses.length) {
+                statusClasses[statusClass].increment();
+            }
+        }
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Number of responses with the given status class, 1 for 1xx up to 5 for 5xx.
+     */
+    public long getStatusCount(int statusClass) {
+        return statusClasses[statusClass - 1].sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
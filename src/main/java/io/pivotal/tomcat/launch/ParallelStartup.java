@@ -0,0 +1,189 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.Wrapper;
+import org.springframework.util.Assert;
+
+import javax.servlet.ServletException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs startup work on a bounded fork-join pool. Tasks start as soon as the tasks they depend on
+ * have completed, so declared ordering is kept while independent work overlaps. With a single
+ * thread every task runs on the calling thread in dependency order.
+ */
+public class ParallelStartup implements AutoCloseable {
+
+    private final int threads;
+
+    private final ForkJoinPool pool;
+
+    private final Executor executor;
+
+    public ParallelStartup(int threads) {
+        Assert.isTrue(threads > 0, "threads must be greater than 0");
+        this.threads = threads;
+        if (threads > 1) {
+            this.pool = new ForkJoinPool(threads);
+            this.executor = pool;
+        } else {
+            this.pool = null;
+            this.executor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            };
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Runs the named tasks and waits for all of them. Dependencies on names that are not among
+     * the tasks are ignored. The first failure is rethrown once every task has finished.
+     */
+    public void run(Map<String, Runnable> tasks, Map<String, ? extends Collection<String>> dependencies) {
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        for (String name : tasks.keySet()) {
+            schedule(name, tasks, dependencies, futures, new LinkedHashSet<String>());
+        }
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public void run(Map<String, Runnable> tasks) {
+        run(tasks, Collections.<String, Collection<String>>emptyMap());
+    }
+
+    private CompletableFuture<Void> schedule(String name, Map<String, Runnable> tasks,
+                                             Map<String, ? extends Collection<String>> dependencies,
+                                             Map<String, CompletableFuture<Void>> futures, Set<String> path) {
+        CompletableFuture<Void> future = futures.get(name);
+        if (future != null) {
+            return future;
+        }
+        if (!path.add(name)) {
+            throw new IllegalStateException("Startup tasks depend on each other in a cycle: " + path + " -> " + name);
+        }
+        List<CompletableFuture<Void>> before = new ArrayList<>();
+        Collection<String> names = dependencies.get(name);
+        if (names != null) {
+            for (String dependency : names) {
+                if (tasks.containsKey(dependency)) {
+                    before.add(schedule(dependency, tasks, dependencies, futures, path));
+                }
+            }
+        }
+        path.remove(name);
+        future = CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[before.size()]))
+                .thenRunAsync(tasks.get(name), executor);
+        futures.put(name, future);
+        return future;
+    }
+
+    /**
+     * Returns a listener that takes over the load-on-startup servlets of the context it is added
+     * to. Servlets with the same load-on-startup value are initialized concurrently, values are
+     * still loaded in ascending order.
+     */
+    public LifecycleListener servletLoader() {
+        return new LifecycleListener() {
+
+            private final Map<Wrapper, Integer> deferred = new LinkedHashMap<>();
+
+            @Override
+            public void lifecycleEvent(LifecycleEvent event) {
+                Context context = (Context) event.getLifecycle();
+                if (Lifecycle.CONFIGURE_START_EVENT.equals(event.getType())) {
+                    deferred.clear();
+                    // web.xml has been processed, hide the servlets from the serial loading in context start
+                    for (Container child : context.findChildren()) {
+                        Wrapper wrapper = (Wrapper) child;
+                        if (wrapper.getLoadOnStartup() >= 0) {
+                            deferred.put(wrapper, wrapper.getLoadOnStartup());
+                            wrapper.setLoadOnStartup(-1);
+                        }
+                    }
+                } else if (Lifecycle.AFTER_START_EVENT.equals(event.getType())) {
+                    try {
+                        loadServlets(context, deferred);
+                    } finally {
+                        for (Map.Entry<Wrapper, Integer> servlet : deferred.entrySet()) {
+                            servlet.getKey().setLoadOnStartup(servlet.getValue());
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    private void loadServlets(final Context context, Map<Wrapper, Integer> servlets) {
+        Map<Integer, List<Wrapper>> waves = new TreeMap<>();
+        for (Map.Entry<Wrapper, Integer> servlet : servlets.entrySet()) {
+            List<Wrapper> wave = waves.get(servlet.getValue());
+            if (wave == null) {
+                wave = new ArrayList<>();
+                waves.put(servlet.getValue(), wave);
+            }
+            wave.add(servlet.getKey());
+        }
+        for (List<Wrapper> wave : waves.values()) {
+            Map<String, Runnable> tasks = new LinkedHashMap<>();
+            for (final Wrapper wrapper : wave) {
+                tasks.put(wrapper.getName(), new Runnable() {
+                    @Override
+                    public void run() {
+                        // Servlets expect the web app classloader and naming context while they initialize
+                        ClassLoader original = context.bind(false, null);
+                        try {
+                            wrapper.load();
+                        } catch (ServletException e) {
+                            // Like Tomcat itself, a failing servlet does not fail the context
+                            System.out.println("failed to load servlet '" + wrapper.getName() + "' of context '"
+                                    + context.getPath() + "': " + e.getMessage());
+                        } finally {
+                            context.unbind(false, original);
+                        }
+                    }
+                });
+            }
+            run(tasks);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.WebResourceSet;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.tomcat.JarScanner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the class and static resource folders of one context and reloads it after changes.
+ * Changes are collected until the folders have been quiet for the debounce time. When only
+ * static files changed the resource cache is flushed; when classes changed the context is
+ * reloaded, which keeps the connector, and with {@link RetainingResourceFactory} the JNDI pools.
+ * Changed jars also reset a {@link CachingJarScanner}, so that the reload scans them again.
+ */
+public class ReloadWatcher implements Closeable {
+
+    public static final String RELOAD_CLASSES = "classes";
+
+    public static final String RELOAD_RESOURCES = "resources";
+
+    private final Context context;
+
+    private final long debounceMillis;
+
+    private final Runnable resourcesChanged;
+
+    private final List<Path> classDirs = new ArrayList<>();
+
+    private final List<Path> resourceDirs = new ArrayList<>();
+
+    private WatchService watchService;
+
+    private Thread thread;
+
+    private volatile int reloadCount = 0;
+
+    public ReloadWatcher(Context context, long debounceMillis, Runnable resourcesChanged) {
+        this.context = context;
+        this.debounceMillis = debounceMillis;
+        this.resourcesChanged = resourcesChanged;
+        if (context.getDocBase() != null) {
+            resourceDirs.add(Paths.get(context.getDocBase()).toAbsolutePath().normalize());
+        }
+    }
+
+    public void start() throws IOException {
+        resolveClassDirs();
+        watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> watched = new LinkedHashSet<>(classDirs);
+        watched.addAll(resourceDirs);
+        for (Path dir : watched) {
+            register(dir);
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "tomcat-hot-reload" + context.getPath().replace('/', '-'));
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("watching " + watched + " for changes to context '" + context.getPath() + "'");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public int getReloadCount() {
+        return reloadCount;
+    }
+
+    public List<Path> getClassDirs() {
+        return classDirs;
+    }
+
+    public List<Path> getResourceDirs() {
+        return resourceDirs;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                Set<Path> changes = new LinkedHashSet<>();
+                collect(watchService.take(), changes);
+                // Keep collecting until the burst of changes is over
+                WatchKey key;
+                while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changes);
+                }
+                if (!changes.isEmpty()) {
+                    reload(changes);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changes) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, assume classes changed
+                changes.add(classDirs.isEmpty() ? dir : classDirs.get(0));
+                continue;
+            }
+            Path changed = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                try {
+                    register(changed);
+                } catch (IOException e) {
+                    System.out.println("could not watch '" + changed + "': " + e.getMessage());
+                }
+            }
+            changes.add(changed);
+        }
+        key.reset();
+    }
+
+    /**
+     * Reloads the context for the given changed paths and reports how long it took.
+     */
+    public String reload(Collection<Path> changes) {
+        String kind = requiresClassReload(changes) ? RELOAD_CLASSES : RELOAD_RESOURCES;
+        long start = System.nanoTime();
+        try {
+            if (RELOAD_CLASSES.equals(kind)) {
+                if (requiresRescan(changes)) {
+                    resetJarScanIndex();
+                }
+                context.reload();
+            } else {
+                flushResourceCache();
+                if (resourcesChanged != null) {
+                    resourcesChanged.run();
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("reload of context '" + context.getPath() + "' failed: " + e.getMessage());
+        }
+        reloadCount++;
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("context", context.getPath().isEmpty() ? "/" : context.getPath());
+        fields.put("kind", kind);
+        fields.put("changes", changes.size());
+        fields.put("millis", Math.round((System.nanoTime() - start) / 100000.0) / 10.0);
+        LauncherDiagnostics.emit("reload", fields);
+        return kind;
+    }
+
+    /**
+     * Classes, jars and anything below {@code WEB-INF} need a context reload, other files in the
+     * document base are served fresh once the resource cache is flushed.
+     */
+    boolean requiresClassReload(Collection<Path> changes) {
+        for (Path change : changes) {
+            Path path = change.toAbsolutePath().normalize();
+            String name = path.getFileName() != null ? path.getFileName().toString() : "";
+            if (name.endsWith(".class") || name.endsWith(".jar")) {
+                return true;
+            }
+            Path resourceDir = findParent(resourceDirs, path);
+            if (resourceDir != null) {
+                if (resourceDir.relativize(path).startsWith("WEB-INF")) {
+                    return true;
+                }
+            } else if (findParent(classDirs, path) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Jars and {@code META-INF} entries can add web fragments, initializers or TLDs, which the jar
+     * scan recorded on the first start would miss.
+     */
+    boolean requiresRescan(Collection<Path> changes) {
+        for (Path change : changes) {
+            Path path = change.toAbsolutePath().normalize();
+            String name = path.getFileName() != null ? path.getFileName().toString() : "";
+            if (name.endsWith(".jar")) {
+                return true;
+            }
+            for (Path segment : path) {
+                if ("META-INF".equals(segment.toString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void resetJarScanIndex() {
+        JarScanner scanner = context.getJarScanner();
+        if (scanner instanceof TimedJarScanner) {
+            scanner = ((TimedJarScanner) scanner).getDelegate();
+        }
+        if (scanner instanceof CachingJarScanner) {
+            ((CachingJarScanner) scanner).reset();
+        }
+    }
+
+    private void flushResourceCache() {
+        WebResourceRoot resources = context.getResources();
+        boolean cachingAllowed = resources.isCachingAllowed();
+        resources.setCachingAllowed(false);
+        resources.setCachingAllowed(cachingAllowed);
+    }
+
+    private void resolveClassDirs() {
+        classDirs.clear();
+        WebResourceRoot resources = context.getResources();
+        if (resources != null) {
+            // The launcher mounts class and lib folders as pre resources below /WEB-INF
+            for (WebResourceSet resourceSet : resources.getPreResources()) {
+                if (resourceSet instanceof DirResourceSet && resourceSet.getBaseUrl() != null) {
+                    try {
+                        classDirs.add(Paths.get(resourceSet.getBaseUrl().toURI()).toAbsolutePath().normalize());
+                    } catch (URISyntaxException e) {
+                        throw new IllegalStateException("Invalid resource folder " + resourceSet.getBaseUrl(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Path findParent(List<Path> dirs, Path path) {
+        for (Path dir : dirs) {
+            if (path.startsWith(dir)) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    private void register(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package io.pivotal.tomcat.launch;
+
+/**
+ * Phase timings of the request that the current thread processes, filled in by the executor,
+ * the tracing filter and the connection pool interceptor and read by the {@link TracingValve}.
+ * There is one instance per thread that is reused for every request.
+ */
+final class RequestTrace {
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<RequestTrace>() {
+        @Override
+        protected RequestTrace initialValue() {
+            return new RequestTrace();
+        }
+    };
+
+    private boolean active;
+
+    private long queuedNanos;
+
+    private long servletNanos;
+
+    private long connectionWaitNanos;
+
+    private RequestTrace() {
+    }
+
+    /**
+     * Returns the trace of the request the current thread processes, or {@code null} outside of
+     * a traced request.
+     */
+    static RequestTrace current() {
+        RequestTrace trace = CURRENT.get();
+        return trace.active ? trace : null;
+    }
+
+    static RequestTrace begin() {
+        RequestTrace trace = CURRENT.get();
+        trace.active = true;
+        trace.servletNanos = 0;
+        trace.connectionWaitNanos = 0;
+        return trace;
+    }
+
+    /**
+     * Wraps an executor task so that the time it waited for a thread is known to the requests it
+     * processes. This allocates one short-lived wrapper per task, as Tomcat's socket processors
+     * have nowhere to carry the submit time; {@code TracingOverheadBenchmark} measures its cost.
+     */
+    static Runnable queued(final Runnable task) {
+        final long submitted = System.nanoTime();
+        return new Runnable() {
+            @Override
+            public void run() {
+                RequestTrace trace = CURRENT.get();
+                trace.queuedNanos = System.nanoTime() - submitted;
+                try {
+                    task.run();
+                } finally {
+                    trace.queuedNanos = 0;
+                }
+            }
+        };
+    }
+
+    void end() {
+        active = false;
+        // Further requests of the same task, e.g. pipelined ones, did not wait for a thread
+        queuedNanos = 0;
+    }
+
+    long getQueuedNanos() {
+        return queuedNanos;
+    }
+
+    long getServletNanos() {
+        return servletNanos;
+    }
+
+    void addServletNanos(long nanos) {
+        servletNanos += nanos;
+    }
+
+    long getConnectionWaitNanos() {
+        return connectionWaitNanos;
+    }
+
+    void addConnectionWaitNanos(long nanos) {
+        connectionWaitNanos += nanos;
+    }
+}
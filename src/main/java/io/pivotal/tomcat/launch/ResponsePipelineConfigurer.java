@@ -0,0 +1,50 @@
+package io.pivotal.tomcat.launch;
+
+public class ResponsePipelineConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final ResponsePipelineSettings settings;
+
+    public ResponsePipelineConfigurer(TomcatConfigurer parent, ResponsePipelineSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    /**
+     * Compresses responses of compressible types that are at least the given size in bytes.
+     */
+    public ResponsePipelineConfigurer compress(int minSizeBytes) {
+        settings.setCompression(true);
+        settings.setCompressionMinSize(minSizeBytes);
+        return this;
+    }
+
+    /**
+     * Replaces the default compressible types, e.g. {@code "text/html,application/json"}.
+     */
+    public ResponsePipelineConfigurer compressibleMimeTypes(String mimeTypes) {
+        settings.setCompressibleMimeTypes(mimeTypes);
+        return this;
+    }
+
+    /**
+     * Sets strong ETags on static resources and answers matching conditional GETs with a 304.
+     */
+    public ResponsePipelineConfigurer etags() {
+        settings.setEtags(true);
+        return this;
+    }
+
+    /**
+     * Cache-Control header for static resources, e.g. {@code public, max-age=3600}.
+     */
+    public ResponsePipelineConfigurer cacheControl(String cacheControl) {
+        settings.setCacheControl(cacheControl);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
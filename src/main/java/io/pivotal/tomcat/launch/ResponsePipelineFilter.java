@@ -0,0 +1,645 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.servlet4preview.http.ServletMapping;
+import org.springframework.util.DigestUtils;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Filter of the response pipeline, see {@link ResponsePipelineSettings}. Static resources, i.e.
+ * requests mapped to the default servlet, are looked up in the context's {@link WebResourceRoot},
+ * whose cache answers metadata lookups from memory, so a conditional GET that matches is answered
+ * with a 304 before the default servlet runs and without reading the resource. Requests mapped to
+ * any other servlet, JSPs included, never get an ETag, Cache-Control or a 304 from the filter. Compression is decided on the first write past the
+ * minimum size, or from the content length when it is set before, so small responses are sent
+ * as they are.
+ */
+public class ResponsePipelineFilter implements Filter {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final ResponsePipelineSettings settings;
+
+    private final WebResourceRoot resources;
+
+    private final DeflaterPool pool = new DeflaterPool(64);
+
+    private final ConcurrentMap<String, ETag> etags = new ConcurrentHashMap<>();
+
+    public ResponsePipelineFilter(ResponsePipelineSettings settings, WebResourceRoot resources) {
+        this.settings = settings;
+        this.resources = resources;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        if (!(req instanceof HttpServletRequest) || !(res instanceof HttpServletResponse)) {
+            chain.doFilter(req, res);
+            return;
+        }
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        boolean get = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+
+        String encoding = settings.isCompression() ? getEncoding(request) : null;
+        WebResource resource = null;
+        String etag = null;
+        if (get && (settings.isEtags() || settings.getCacheControl() != null) && isDefaultServlet(request)) {
+            resource = resources.getResource(getPath(request));
+            if (!resource.isFile()) {
+                resource = null;
+            } else if (encoding != null
+                    && !settings.isCompressible(request.getServletContext().getMimeType(resource.getName()))) {
+                // Leaves images and archives to sendfile, which a wrapped response cannot use
+                encoding = null;
+            }
+        }
+        if (resource != null) {
+            if (settings.isEtags()) {
+                etag = getETag(resource);
+                if (matches(request.getHeader("If-None-Match"), etag)) {
+                    boolean compressed = encoding != null && resource.getContentLength() >= settings.getCompressionMinSize();
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    response.setHeader("ETag", compressed ? variant(etag, encoding) : etag);
+                    if (settings.isCompression()
+                            && settings.isCompressible(request.getServletContext().getMimeType(resource.getName()))) {
+                        response.addHeader("Vary", "Accept-Encoding");
+                    }
+                    setCacheControl(response);
+                    settings.getStats().recordNotModified();
+                    return;
+                }
+            }
+            setCacheControl(response);
+        }
+        if (encoding == null && etag == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        final PipelineResponse wrapper = new PipelineResponse(response, encoding, etag);
+        try {
+            chain.doFilter(request, wrapper);
+        } catch (IOException | ServletException | RuntimeException | Error e) {
+            // Leaves the response uncommitted, so that Tomcat can still send the error page
+            wrapper.abort();
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) throws IOException {
+                    wrapper.finish();
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            wrapper.finish();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        etags.clear();
+    }
+
+    /**
+     * Whether the request is mapped to the default servlet, which serves static resources.
+     */
+    static boolean isDefaultServlet(ServletRequest request) {
+        while (request instanceof ServletRequestWrapper) {
+            request = ((ServletRequestWrapper) request).getRequest();
+        }
+        if (!(request instanceof org.apache.catalina.servlet4preview.http.HttpServletRequest)) {
+            return false;
+        }
+        ServletMapping mapping =
+                ((org.apache.catalina.servlet4preview.http.HttpServletRequest) request).getServletMapping();
+        return mapping != null && StaticContentSettings.DEFAULT_SERVLET.equals(mapping.getServletName());
+    }
+
+    private static String getPath(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        String path = pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+        return path.isEmpty() ? "/" : path;
+    }
+
+    private void setCacheControl(HttpServletResponse response) {
+        if (settings.getCacheControl() != null && !response.containsHeader("Cache-Control")) {
+            response.setHeader("Cache-Control", settings.getCacheControl());
+        }
+    }
+
+    /**
+     * Returns a strong ETag from the digest of the resource content. The digest is computed once
+     * per path and version of the resource, later requests only compare its length and
+     * modification time.
+     */
+    String getETag(WebResource resource) throws IOException {
+        ETag cached = etags.get(resource.getWebappPath());
+        if (cached != null && cached.lastModified == resource.getLastModified()
+                && cached.length == resource.getContentLength()) {
+            return cached.value;
+        }
+        String value;
+        // Served from the resource cache when the resource is small enough to be cached
+        try (InputStream in = resource.getInputStream()) {
+            value = '"' + DigestUtils.md5DigestAsHex(in) + '"';
+        }
+        etags.put(resource.getWebappPath(), new ETag(resource.getLastModified(), resource.getContentLength(), value));
+        return value;
+    }
+
+    /**
+     * Weak comparison as required for If-None-Match, a compressed variant matches its resource.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag) || candidate.equals(variant(etag, "gzip"))
+                    || candidate.equals(variant(etag, "deflate"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ETag of the compressed variant of a resource, which is a different representation.
+     */
+    static String variant(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + '-' + encoding + '"';
+    }
+
+    /**
+     * Picks gzip or deflate from Accept-Encoding, gzip when the client accepts both.
+     */
+    static String getEncoding(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            if (name.equals("gzip")) {
+                return "gzip";
+            }
+            deflate |= name.equals("deflate");
+        }
+        return deflate ? "deflate" : null;
+    }
+
+    private static final class ETag {
+
+        private final long lastModified;
+
+        private final long length;
+
+        private final String value;
+
+        ETag(long lastModified, long length, String value) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Keeps the strong ETag over the one set by the servlet and routes the body through the
+     * compressing stream.
+     */
+    private class PipelineResponse extends HttpServletResponseWrapper {
+
+        private final String encoding;
+
+        private final String etag;
+
+        private CompressingOutputStream stream;
+
+        private PrintWriter writer;
+
+        PipelineResponse(HttpServletResponse response, String encoding, String etag) {
+            super(response);
+            this.encoding = encoding;
+            this.etag = etag;
+            if (etag != null) {
+                response.setHeader("ETag", etag);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (isContentLength(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else if (etag == null || !"ETag".equalsIgnoreCase(name)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (isContentLength(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else if (etag == null || !"ETag".equalsIgnoreCase(name)) {
+                super.addHeader(name, value);
+            }
+        }
+
+        private boolean isContentLength(String name) {
+            return encoding != null && "Content-Length".equalsIgnoreCase(name);
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            setContentLengthLong(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            if (encoding == null) {
+                super.setContentLengthLong(len);
+            } else {
+                getStream().setContentLength(len);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called for this response");
+            }
+            return encoding == null ? super.getOutputStream() : getStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (encoding == null) {
+                return super.getWriter();
+            }
+            if (writer == null) {
+                if (stream != null && stream.written) {
+                    throw new IllegalStateException("getOutputStream() has already been called for this response");
+                }
+                writer = new PrintWriter(new OutputStreamWriter(getStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            } else if (stream != null) {
+                stream.flush();
+            }
+            super.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (stream != null) {
+                stream.resetBuffer();
+            }
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            if (stream != null) {
+                stream.resetBuffer();
+            }
+            if (etag != null) {
+                super.setHeader("ETag", etag);
+            }
+        }
+
+        private CompressingOutputStream getStream() {
+            if (stream == null) {
+                stream = new CompressingOutputStream(this, encoding);
+            }
+            return stream;
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.close();
+            } else if (stream != null) {
+                stream.close();
+            }
+        }
+
+        /**
+         * Hands the pooled deflater and buffers back without writing or closing anything. A
+         * compressed body that is still buffered is dropped with its Content-Encoding header.
+         */
+        void abort() {
+            if (stream == null) {
+                return;
+            }
+            boolean compressing = stream.isCompressing();
+            stream.abort();
+            if (compressing && !getResponse().isCommitted()) {
+                getResponse().reset();
+            }
+        }
+
+        HttpServletResponse getHttpResponse() {
+            return (HttpServletResponse) getResponse();
+        }
+
+        String getETag() {
+            return etag;
+        }
+    }
+
+    /**
+     * Buffers the body until it is known whether it is large enough to compress, then either
+     * writes it through or deflates it with a pooled deflater.
+     */
+    private class CompressingOutputStream extends ServletOutputStream {
+
+        private final PipelineResponse response;
+
+        private final boolean gzip;
+
+        private long contentLength = -1;
+
+        private byte[] pending;
+
+        private int pendingCount;
+
+        private Boolean compressing;
+
+        private Deflater deflater;
+
+        private byte[] buffer;
+
+        private CRC32 crc;
+
+        private long uncompressed;
+
+        private long compressed;
+
+        private long nanos;
+
+        private boolean written;
+
+        private boolean closed;
+
+        CompressingOutputStream(PipelineResponse response, String encoding) {
+            this.response = response;
+            this.gzip = "gzip".equals(encoding);
+        }
+
+        void setContentLength(long contentLength) {
+            if (compressing == null) {
+                this.contentLength = contentLength;
+            } else if (!compressing) {
+                response.getHttpResponse().setContentLengthLong(contentLength);
+            }
+        }
+
+        void resetBuffer() {
+            pendingCount = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            written = true;
+            if (compressing == null) {
+                int minSize = settings.getCompressionMinSize();
+                if (contentLength >= 0 && contentLength < minSize) {
+                    decide(false);
+                } else if (pendingCount + len < minSize) {
+                    if (pending == null) {
+                        pending = minSize <= DeflaterPool.BUFFER_SIZE ? pool.borrowBuffer() : new byte[minSize];
+                    }
+                    System.arraycopy(b, off, pending, pendingCount, len);
+                    pendingCount += len;
+                    return;
+                } else {
+                    decide(true);
+                }
+            }
+            if (compressing) {
+                deflate(b, off, len, Deflater.NO_FLUSH);
+            } else {
+                response.getHttpResponse().getOutputStream().write(b, off, len);
+            }
+        }
+
+        /**
+         * Compresses if the body is large enough and nothing rules it out: an unsuitable content
+         * type, a body that is already encoded, or a status without or with a partial body.
+         */
+        private void decide(boolean largeEnough) throws IOException {
+            HttpServletResponse target = response.getHttpResponse();
+            int status = target.getStatus();
+            compressing = largeEnough && status == HttpServletResponse.SC_OK
+                    && settings.isCompressible(target.getContentType())
+                    && !target.containsHeader("Content-Encoding") && !target.containsHeader("Content-Range");
+            if (compressing) {
+                target.setHeader("Content-Encoding", gzip ? "gzip" : "deflate");
+                target.addHeader("Vary", "Accept-Encoding");
+                if (response.getETag() != null) {
+                    target.setHeader("ETag", variant(response.getETag(), gzip ? "gzip" : "deflate"));
+                }
+                deflater = pool.borrowDeflater(gzip);
+                buffer = pool.borrowBuffer();
+                if (gzip) {
+                    crc = new CRC32();
+                    target.getOutputStream().write(GZIP_HEADER);
+                    compressed += GZIP_HEADER.length;
+                }
+            } else if (contentLength >= 0) {
+                target.setContentLengthLong(contentLength);
+            }
+            if (pendingCount > 0) {
+                if (compressing) {
+                    deflate(pending, 0, pendingCount, Deflater.NO_FLUSH);
+                } else {
+                    target.getOutputStream().write(pending, 0, pendingCount);
+                }
+            }
+            releasePending();
+        }
+
+        private void deflate(byte[] b, int off, int len, int flush) throws IOException {
+            long start = System.nanoTime();
+            if (len > 0) {
+                deflater.setInput(b, off, len);
+                if (crc != null) {
+                    crc.update(b, off, len);
+                }
+                uncompressed += len;
+            }
+            ServletOutputStream out = response.getHttpResponse().getOutputStream();
+            int count;
+            while ((count = deflater.deflate(buffer, 0, buffer.length, flush)) > 0 || !deflater.needsInput()) {
+                if (count > 0) {
+                    out.write(buffer, 0, count);
+                    compressed += count;
+                }
+            }
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (compressing == null) {
+                decide(contentLength < 0 || contentLength >= settings.getCompressionMinSize());
+            }
+            if (compressing) {
+                deflate(null, 0, 0, Deflater.SYNC_FLUSH);
+            }
+            response.getHttpResponse().getOutputStream().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (compressing == null) {
+                decide(false);
+            }
+            closed = true;
+            if (compressing) {
+                try {
+                    long start = System.nanoTime();
+                    deflater.finish();
+                    ServletOutputStream out = response.getHttpResponse().getOutputStream();
+                    while (!deflater.finished()) {
+                        int count = deflater.deflate(buffer);
+                        out.write(buffer, 0, count);
+                        compressed += count;
+                    }
+                    if (crc != null) {
+                        writeIntLe(out, (int) crc.getValue());
+                        writeIntLe(out, (int) uncompressed);
+                        compressed += 8;
+                    }
+                    nanos += System.nanoTime() - start;
+                    settings.getStats().recordCompression(uncompressed, compressed, nanos);
+                } finally {
+                    pool.release(deflater, gzip);
+                    pool.release(buffer);
+                }
+            }
+            response.getHttpResponse().getOutputStream().close();
+        }
+
+        boolean isCompressing() {
+            return compressing != null && compressing;
+        }
+
+        void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (isCompressing()) {
+                pool.release(deflater, gzip);
+                pool.release(buffer);
+            }
+            releasePending();
+        }
+
+        private void writeIntLe(ServletOutputStream out, int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+
+        private void releasePending() {
+            if (pending != null && pending.length == DeflaterPool.BUFFER_SIZE) {
+                pool.release(pending);
+            }
+            pending = null;
+            pendingCount = 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            try {
+                return response.getHttpResponse().getOutputStream().isReady();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                response.getHttpResponse().getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
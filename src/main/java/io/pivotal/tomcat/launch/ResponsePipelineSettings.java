@@ -0,0 +1,180 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.DispatcherType;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Response compression and HTTP caching done by a filter in front of the application. Unlike the
+ * connector's compression it can also set strong ETags and Cache-Control for static resources
+ * and answer conditional GETs from resource metadata, and it reports what compression saved and
+ * cost.
+ */
+public class ResponsePipelineSettings {
+
+    public static final String ENV_COMPRESSION = "TOMCAT_RESPONSE_COMPRESSION";
+
+    public static final String ENV_COMPRESSION_MIN_SIZE = "TOMCAT_RESPONSE_COMPRESSION_MIN_SIZE";
+
+    public static final String ENV_CACHE_CONTROL = "TOMCAT_STATIC_CACHE_CONTROL";
+
+    public static final String ENV_ETAGS = "TOMCAT_STATIC_ETAGS";
+
+    public static final String FILTER_NAME = "responsePipeline";
+
+    public static final Set<String> DEFAULT_COMPRESSIBLE_MIME_TYPES = new LinkedHashSet<>(Arrays.asList(
+            "text/html", "text/css", "text/plain", "text/xml", "text/javascript", "application/javascript",
+            "application/json", "application/xml", "image/svg+xml"));
+
+    private boolean compression = false;
+
+    private int compressionMinSize = 1024;
+
+    private final Set<String> compressibleMimeTypes = new LinkedHashSet<>(DEFAULT_COMPRESSIBLE_MIME_TYPES);
+
+    private String cacheControl;
+
+    private boolean etags = false;
+
+    private final ResponsePipelineStats stats = new ResponsePipelineStats();
+
+    /**
+     * Reads response pipeline settings from the given environment, the minimum size in bytes.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_COMPRESSION))) {
+            setCompression(Boolean.valueOf(env.get(ENV_COMPRESSION).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_COMPRESSION_MIN_SIZE))) {
+            setCompressionMinSize(Integer.valueOf(env.get(ENV_COMPRESSION_MIN_SIZE).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_CACHE_CONTROL))) {
+            setCacheControl(env.get(ENV_CACHE_CONTROL).trim());
+        }
+        if (StringUtils.hasText(env.get(ENV_ETAGS))) {
+            setEtags(Boolean.valueOf(env.get(ENV_ETAGS).trim()));
+        }
+    }
+
+    public boolean isEnabled() {
+        return compression || etags || cacheControl != null;
+    }
+
+    /**
+     * Returns a listener that puts the pipeline filter in front of all other filters of the
+     * context it is added to once web.xml has been processed.
+     */
+    public LifecycleListener lifecycleListener() {
+        return new LifecycleListener() {
+            @Override
+            public void lifecycleEvent(LifecycleEvent event) {
+                if (Lifecycle.CONFIGURE_START_EVENT.equals(event.getType()) && isEnabled()) {
+                    register((Context) event.getLifecycle());
+                }
+            }
+        };
+    }
+
+    public void register(Context context) {
+        if (context.findFilterDef(FILTER_NAME) != null) {
+            return;
+        }
+        FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName(FILTER_NAME);
+        filterDef.setFilterClass(ResponsePipelineFilter.class.getName());
+        filterDef.setFilter(new ResponsePipelineFilter(this, context.getResources()));
+        filterDef.setAsyncSupported("true");
+        context.addFilterDef(filterDef);
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(FILTER_NAME);
+        filterMap.addURLPatternDecoded("/*");
+        filterMap.setDispatcher(DispatcherType.REQUEST.name());
+        context.addFilterMapBefore(filterMap);
+    }
+
+    /**
+     * Whether responses of the given content type, with or without parameters, are compressed.
+     */
+    public boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mimeType = (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim().toLowerCase();
+        return compressibleMimeTypes.contains(mimeType);
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Compresses responses with gzip or deflate, whichever the client prefers.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    /**
+     * Responses smaller than this many bytes are sent as they are, compressing them costs more
+     * than it saves.
+     */
+    public void setCompressionMinSize(int compressionMinSize) {
+        Assert.isTrue(compressionMinSize >= 0, "compressionMinSize cannot be negative");
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public Set<String> getCompressibleMimeTypes() {
+        return compressibleMimeTypes;
+    }
+
+    public void setCompressibleMimeTypes(String mimeTypes) {
+        compressibleMimeTypes.clear();
+        for (String mimeType : StringUtils.commaDelimitedListToStringArray(mimeTypes)) {
+            if (StringUtils.hasText(mimeType)) {
+                compressibleMimeTypes.add(mimeType.trim().toLowerCase());
+            }
+        }
+    }
+
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
+    /**
+     * Cache-Control header for static resources, e.g. {@code public, max-age=3600}.
+     */
+    public void setCacheControl(String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    public boolean isEtags() {
+        return etags;
+    }
+
+    /**
+     * Replaces the default servlet's weak ETags by strong ones derived from the resource content.
+     */
+    public void setEtags(boolean etags) {
+        this.etags = etags;
+    }
+
+    public ResponsePipelineStats getStats() {
+        return stats;
+    }
+}
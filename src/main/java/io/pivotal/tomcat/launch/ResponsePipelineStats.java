@@ -0,0 +1,58 @@
+package io.pivotal.tomcat.launch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the response pipeline, shared by the filters of all web apps.
+ */
+public class ResponsePipelineStats {
+
+    private final LongAdder compressedResponses = new LongAdder();
+
+    private final LongAdder uncompressedBytes = new LongAdder();
+
+    private final LongAdder compressedBytes = new LongAdder();
+
+    private final LongAdder compressionNanos = new LongAdder();
+
+    private final LongAdder notModified = new LongAdder();
+
+    void recordCompression(long uncompressed, long compressed, long nanos) {
+        compressedResponses.increment();
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+        compressionNanos.add(nanos);
+    }
+
+    void recordNotModified() {
+        notModified.increment();
+    }
+
+    public long getCompressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getBytesSaved() {
+        return getUncompressedBytes() - getCompressedBytes();
+    }
+
+    /**
+     * Time request threads spent in the compressor, which is CPU bound.
+     */
+    public long getCompressionTime(TimeUnit unit) {
+        return unit.convert(compressionNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getNotModified() {
+        return notModified.sum();
+    }
+}
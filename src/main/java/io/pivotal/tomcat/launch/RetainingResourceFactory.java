@@ -0,0 +1,92 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.RefAddr;
+import javax.naming.Reference;
+import javax.naming.spi.ObjectFactory;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JNDI factory that hands out the same resource instance every time its binding is recreated.
+ * A context reload rebuilds the naming context and would otherwise open a new connection pool
+ * and leak the old one; with this factory the reloaded context gets the pool back that is
+ * already warm. The resource's own factory is kept in a separate reference address.
+ */
+public class RetainingResourceFactory implements ObjectFactory {
+
+    static final String DELEGATE = "retainedFactory";
+
+    static final String KEY = "retainedKey";
+
+    private static final Map<String, Object> RETAINED = new ConcurrentHashMap<>();
+
+    /**
+     * Routes the given resource through this factory under the given key. Resources without an
+     * explicit factory are left alone, as Tomcat picks their factory by type.
+     */
+    public static boolean retain(ContextResource resource, String key) {
+        Object factory = resource.getProperty("factory");
+        if (factory == null || RetainingResourceFactory.class.getName().equals(factory)) {
+            return false;
+        }
+        resource.setProperty(DELEGATE, factory);
+        resource.setProperty(KEY, key);
+        resource.setProperty("factory", RetainingResourceFactory.class.getName());
+        return true;
+    }
+
+    /**
+     * Forgets the resources whose key starts with the given prefix, once they have been closed.
+     */
+    public static void release(String keyPrefix) {
+        Iterator<String> keys = RETAINED.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(keyPrefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    @Override
+    public Object getObjectInstance(Object obj, Name name, Context nameCtx, Hashtable<?, ?> environment)
+            throws Exception {
+        Reference ref = (Reference) obj;
+        String key = content(ref, KEY);
+        Object resource = RETAINED.get(key);
+        if (resource != null) {
+            return resource;
+        }
+        synchronized (RETAINED) {
+            resource = RETAINED.get(key);
+            if (resource == null) {
+                resource = createDelegate(content(ref, DELEGATE)).getObjectInstance(obj, name, nameCtx, environment);
+                if (resource != null) {
+                    RETAINED.put(key, resource);
+                }
+            }
+        }
+        return resource;
+    }
+
+    static ObjectFactory createDelegate(String className) throws Exception {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = RetainingResourceFactory.class.getClassLoader();
+        }
+        return (ObjectFactory) Class.forName(className, true, classLoader).newInstance();
+    }
+
+    static String content(Reference ref, String type) {
+        RefAddr addr = ref.get(type);
+        if (addr == null || addr.getContent() == null) {
+            throw new IllegalStateException("Reference " + ref.getClassName() + " has no '" + type + "'");
+        }
+        return addr.getContent().toString();
+    }
+}
@@ -0,0 +1,143 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.tomcat.util.threads.ResizableExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handle to a server started with {@link TomcatLauncher#start()}. A graceful stop pauses the
+ * connector, waits for in-flight requests up to a deadline, stops Tomcat, closes the data source
+ * pools and deletes the temporary base directory. The same sequence runs from a JVM shutdown hook.
+ */
+public class ServerHandle {
+
+    private final TomcatLauncher launcher;
+
+    private final Connector connector;
+
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private final AtomicBoolean stopping = new AtomicBoolean();
+
+    private final Thread shutdownHook;
+
+    ServerHandle(TomcatLauncher launcher, Connector connector) {
+        this.launcher = launcher;
+        this.connector = connector;
+        this.shutdownHook = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                stop(ServerHandle.this.launcher.getShutdownTimeout(), TimeUnit.MILLISECONDS);
+            }
+        }, "tomcat-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Stops the server gracefully. Returns {@code true} if all in-flight requests completed
+     * before the timeout, {@code false} if some were cut off or the server was already stopping.
+     */
+    public boolean stop(long timeout, TimeUnit unit) {
+        if (!stopping.compareAndSet(false, true)) {
+            return false;
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            System.out.println("stopping server, draining requests for up to " + unit.toMillis(timeout) + " ms");
+            launcher.setReady(false);
+            launcher.stopReloadWatchers();
+            connector.pause();
+            if (launcher.getTlsConnector() != null) {
+                launcher.getTlsConnector().pause();
+            }
+            boolean drained = awaitInFlightRequests(start + unit.toNanos(timeout));
+            if (!drained) {
+                System.out.println(getActiveRequests() + " requests still in flight after " + unit.toMillis(timeout)
+                        + " ms, stopping anyway");
+            }
+
+            launcher.shutdown();
+            System.out.println("server stopped in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            return drained;
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Blocks until the server has been stopped.
+     */
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public boolean isRunning() {
+        return terminated.getCount() > 0;
+    }
+
+    /**
+     * The port the connector is bound to, useful when the launcher was configured with port 0.
+     */
+    public int getPort() {
+        return connector.getLocalPort();
+    }
+
+    private boolean awaitInFlightRequests(long deadline) {
+        while (getActiveRequests() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The port the TLS connector is bound to, -1 without TLS.
+     */
+    public int getTlsPort() {
+        return launcher.getTlsConnector() != null ? launcher.getTlsConnector().getLocalPort() : -1;
+    }
+
+    private int getActiveRequests() {
+        int active = getActiveRequests(connector);
+        Connector tlsConnector = launcher.getTlsConnector();
+        if (tlsConnector != null
+                && tlsConnector.getProtocolHandler().getExecutor() != connector.getProtocolHandler().getExecutor()) {
+            active += getActiveRequests(tlsConnector);
+        }
+        return active;
+    }
+
+    private static int getActiveRequests(Connector connector) {
+        Executor executor = connector.getProtocolHandler().getExecutor();
+        if (executor instanceof ResizableExecutor) {
+            return ((ResizableExecutor) executor).getActiveCount();
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getActiveCount();
+        }
+        return 0;
+    }
+}
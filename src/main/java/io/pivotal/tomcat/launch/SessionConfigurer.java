@@ -0,0 +1,25 @@
+package io.pivotal.tomcat.launch;
+
+public class SessionConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final SessionSettings settings;
+
+    public SessionConfigurer(TomcatConfigurer parent, SessionSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    /**
+     * Folder for spilled sessions, absolute or relative to the work folder of each web app.
+     */
+    public SessionConfigurer storeDir(String storeDir) {
+        settings.setStoreDir(storeDir);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
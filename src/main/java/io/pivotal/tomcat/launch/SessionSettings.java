@@ -0,0 +1,80 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.session.FileStore;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+
+/**
+ * Memory-bounded session management. When a maximum number of resident sessions is set, each web
+ * app gets a {@link SpillingSessionManager} that keeps at most that many sessions on the heap and
+ * spills the least recently used ones to a store on local disk.
+ */
+public class SessionSettings {
+
+    public static final String ENV_MAX_RESIDENT = "TOMCAT_SESSION_MAX_RESIDENT";
+
+    public static final String ENV_STORE_DIR = "TOMCAT_SESSION_STORE_DIR";
+
+    /**
+     * Default store folder, relative to the work folder of each web app.
+     */
+    public static final String DEFAULT_STORE_DIR = "sessions";
+
+    private Integer maxResidentSessions;
+
+    private String storeDir = DEFAULT_STORE_DIR;
+
+    /**
+     * Reads session settings from the given environment.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_MAX_RESIDENT))) {
+            setMaxResidentSessions(Integer.valueOf(env.get(ENV_MAX_RESIDENT).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_STORE_DIR))) {
+            setStoreDir(env.get(ENV_STORE_DIR).trim());
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxResidentSessions != null;
+    }
+
+    /**
+     * Creates a manager for one web app, or returns {@code null} to keep Tomcat's default manager.
+     */
+    public SpillingSessionManager createManager() {
+        if (!isEnabled()) {
+            return null;
+        }
+        FileStore store = new FileStore();
+        store.setDirectory(storeDir);
+        SpillingSessionManager manager = new SpillingSessionManager(maxResidentSessions);
+        manager.setStore(store);
+        return manager;
+    }
+
+    public Integer getMaxResidentSessions() {
+        return maxResidentSessions;
+    }
+
+    public void setMaxResidentSessions(Integer maxResidentSessions) {
+        Assert.isTrue(maxResidentSessions == null || maxResidentSessions > 0, "maxResidentSessions must be positive");
+        this.maxResidentSessions = maxResidentSessions;
+    }
+
+    public String getStoreDir() {
+        return storeDir;
+    }
+
+    /**
+     * Folder the spilled sessions are written to, absolute or relative to the work folder of
+     * each web app. Should be on a local disk.
+     */
+    public void setStoreDir(String storeDir) {
+        Assert.hasText(storeDir, "storeDir cannot be empty");
+        this.storeDir = storeDir;
+    }
+}
@@ -0,0 +1,174 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Manager;
+import org.apache.catalina.Session;
+import org.apache.catalina.session.PersistentManagerBase;
+import org.apache.catalina.session.StandardSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Session manager that bounds the number of sessions kept on the heap. When a new or paged in
+ * session would exceed the limit, the least recently used sessions that are not part of a request
+ * in progress are written to the store and dropped from memory until a tenth of the limit is free,
+ * so that the sort is paid once per batch rather than per session. A spilled session is paged
+ * back in transparently when a request asks for it. Unlike Tomcat's own {@code maxActiveSessions}
+ * no session is ever rejected.
+ */
+public class SpillingSessionManager extends PersistentManagerBase {
+
+    private final int maxResidentSessions;
+
+    private final Object spillLock = new Object();
+
+    private final LongAdder spills = new LongAdder();
+
+    private final LongAdder pageIns = new LongAdder();
+
+    private final LatencyHistogram pageInLatency = new LatencyHistogram();
+
+    public SpillingSessionManager(int maxResidentSessions) {
+        this.maxResidentSessions = maxResidentSessions;
+    }
+
+    @Override
+    public String getName() {
+        return "SpillingSessionManager";
+    }
+
+    @Override
+    public Session createSession(String sessionId) {
+        spillIfFull();
+        return super.createSession(sessionId);
+    }
+
+    @Override
+    public Session createEmptySession() {
+        return new TrackedSession(this);
+    }
+
+    @Override
+    protected Session swapIn(String id) throws IOException {
+        long start = System.nanoTime();
+        Session session = super.swapIn(id);
+        if (session != null) {
+            pageInLatency.record(System.nanoTime() - start);
+            pageIns.increment();
+            spillIfFull();
+        }
+        return session;
+    }
+
+    private void spillIfFull() {
+        if (sessions.size() < maxResidentSessions) {
+            return;
+        }
+        synchronized (spillLock) {
+            int target = maxResidentSessions - Math.max(1, maxResidentSessions / 10);
+            if (sessions.size() <= target) {
+                return;
+            }
+            List<Session> candidates = new ArrayList<>(sessions.values());
+            Collections.sort(candidates, new Comparator<Session>() {
+                @Override
+                public int compare(Session a, Session b) {
+                    return Long.compare(a.getThisAccessedTimeInternal(), b.getThisAccessedTimeInternal());
+                }
+            });
+            for (Session session : candidates) {
+                if (sessions.size() <= target) {
+                    break;
+                }
+                if (isInUse(session)) {
+                    continue;
+                }
+                synchronized (session) {
+                    // A request may have picked the session up since the check above
+                    if (isInUse(session) || !session.isValid()) {
+                        continue;
+                    }
+                    try {
+                        swapOut(session);
+                        spills.increment();
+                    } catch (IOException e) {
+                        // Stays resident, the store already logged the failure
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isInUse(Session session) {
+        return session instanceof TrackedSession && ((TrackedSession) session).isInUse();
+    }
+
+    public int getMaxResidentSessions() {
+        return maxResidentSessions;
+    }
+
+    public int getResidentSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Number of sessions in the store, which reads the store folder.
+     */
+    public int getSpilledSessions() {
+        try {
+            return getStore().getSize();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public long getSpillCount() {
+        return spills.sum();
+    }
+
+    public long getPageInCount() {
+        return pageIns.sum();
+    }
+
+    public LatencyHistogram getPageInLatency() {
+        return pageInLatency;
+    }
+
+    /**
+     * Counts the requests using the session, so that a session is never spilled while a request
+     * holds on to it. Requests register under the session's lock, the one held while spilling.
+     */
+    static class TrackedSession extends StandardSession {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        TrackedSession(Manager manager) {
+            super(manager);
+        }
+
+        @Override
+        public void access() {
+            super.access();
+            synchronized (this) {
+                requests.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void endAccess() {
+            super.endAccess();
+            requests.decrementAndGet();
+        }
+
+        boolean isInUse() {
+            return requests.get() > 0;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects how long each launcher startup phase took. Phases that run more than once, such as
+ * root folder resolution, accumulate. Phases nest where the work does: jar scanning runs inside
+ * web.xml processing, which runs inside context start.
+ */
+public class StartupReport {
+
+    public static final String BASE_DIR = "baseDir";
+
+    public static final String ROOT_FOLDER = "rootFolder";
+
+    public static final String ADD_WEB_APP = "addWebApp";
+
+    public static final String JAR_SCAN = "jarScan";
+
+    public static final String CONTEXT_XML = "contextXml";
+
+    public static final String WEB_XML = "webXml";
+
+    public static final String CONTEXT_START = "contextStart";
+
+    public static final String RESOURCES = "resources";
+
+    public static final String WARM_UP = "warmUp";
+
+    public static final String CONNECTOR_BIND = "connectorBind";
+
+    public static final String FIRST_REQUEST = "firstRequest";
+
+    private final long createdNanos = System.nanoTime();
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private long totalNanos = -1;
+
+    private long heapUsed = -1;
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(String phase, long startNanos) {
+        record(phase, System.nanoTime() - startNanos);
+    }
+
+    public synchronized void record(String phase, long nanos) {
+        if (totalNanos >= 0) {
+            // Context reloads after startup are reported on their own
+            return;
+        }
+        Long previous = phases.get(phase);
+        phases.put(phase, previous == null ? nanos : previous + nanos);
+    }
+
+    /**
+     * Marks the launcher as ready, fixing the total startup time.
+     */
+    public synchronized void complete() {
+        totalNanos = System.nanoTime() - createdNanos;
+        heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public synchronized boolean isComplete() {
+        return totalNanos >= 0;
+    }
+
+    public synchronized long getDuration(String phase, TimeUnit unit) {
+        Long nanos = phases.get(phase);
+        return nanos == null ? -1 : unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Heap in use when the launcher became ready, including garbage not collected yet, or -1
+     * before that.
+     */
+    public synchronized long getHeapUsed() {
+        return heapUsed;
+    }
+
+    public synchronized long getTotal(TimeUnit unit) {
+        long nanos = totalNanos >= 0 ? totalNanos : System.nanoTime() - createdNanos;
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the recorded phases in the order they first ran, in milliseconds.
+     */
+    public synchronized Map<String, Double> getPhases() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            millis.put(phase.getKey(), toMillis(phase.getValue()));
+        }
+        return millis;
+    }
+
+    /**
+     * Returns a listener that times the init and start of the lifecycle component it is added
+     * to under the given phase.
+     */
+    public LifecycleListener lifecycleListener(final String phase) {
+        return new LifecycleListener() {
+
+            private long startNanos;
+
+            @Override
+            public void lifecycleEvent(LifecycleEvent event) {
+                String type = event.getType();
+                if (Lifecycle.BEFORE_INIT_EVENT.equals(type) || Lifecycle.BEFORE_START_EVENT.equals(type)) {
+                    startNanos = start();
+                } else if (Lifecycle.AFTER_INIT_EVENT.equals(type) || Lifecycle.AFTER_START_EVENT.equals(type)) {
+                    stop(phase, startNanos);
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized String toString() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("totalMillis", toMillis(totalNanos >= 0 ? totalNanos : System.nanoTime() - createdNanos));
+        if (heapUsed >= 0) {
+            fields.put("heapUsedMb", Math.round(heapUsed / 104857.6) / 10.0);
+        }
+        fields.put("phases", getPhases());
+        return LauncherDiagnostics.format("startup", fields);
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 100000.0) / 10.0;
+    }
+}
@@ -0,0 +1,68 @@
+package io.pivotal.tomcat.launch;
+
+public class StaticContentConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final StaticContentSettings settings;
+
+    private final ConnectorSettings connectorSettings;
+
+    public StaticContentConfigurer(TomcatConfigurer parent, StaticContentSettings settings,
+                                   ConnectorSettings connectorSettings) {
+        this.parent = parent;
+        this.settings = settings;
+        this.connectorSettings = connectorSettings;
+    }
+
+    /**
+     * Sizes the resource cache, both sizes in kilobytes.
+     */
+    public StaticContentConfigurer cache(long maxSizeKb, int objectMaxSizeKb) {
+        settings.setCachingAllowed(true);
+        settings.setCacheMaxSize(maxSizeKb);
+        settings.setCacheObjectMaxSize(objectMaxSizeKb);
+        return this;
+    }
+
+    public StaticContentConfigurer cacheTtl(long ttlMillis) {
+        settings.setCacheTtl(ttlMillis);
+        return this;
+    }
+
+    public StaticContentConfigurer noCache() {
+        settings.setCachingAllowed(false);
+        return this;
+    }
+
+    /**
+     * Serves files larger than the given size in kilobytes with sendfile instead of copying
+     * them through the response buffer.
+     */
+    public StaticContentConfigurer sendfile(int minSizeKb) {
+        settings.setSendfileSize(minSizeKb);
+        connectorSettings.setUseSendfile(true);
+        return this;
+    }
+
+    /**
+     * Serves existing {@code .br} and {@code .gz} variants of static files.
+     */
+    public StaticContentConfigurer precompressed() {
+        settings.setPrecompressed(true);
+        return this;
+    }
+
+    /**
+     * Generates gzip variants of compressible static files of at least the given size at startup.
+     */
+    public StaticContentConfigurer precompress(int minSizeBytes) {
+        settings.setPrecompress(true);
+        settings.setPrecompressMinSize(minSizeBytes);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
@@ -0,0 +1,310 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.WebResourceSet;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Resource cache, sendfile and precompression settings for static content served by the
+ * default servlet. Settings that are left {@code null} keep the Tomcat defaults.
+ */
+public class StaticContentSettings {
+
+    public static final String ENV_CACHE_MAX_SIZE = "TOMCAT_CACHE_MAX_SIZE";
+
+    public static final String ENV_CACHE_TTL = "TOMCAT_CACHE_TTL";
+
+    public static final String ENV_CACHE_OBJECT_MAX_SIZE = "TOMCAT_CACHE_OBJECT_MAX_SIZE";
+
+    public static final String ENV_SENDFILE_SIZE = "TOMCAT_SENDFILE_SIZE";
+
+    public static final String ENV_PRECOMPRESS = "TOMCAT_PRECOMPRESS";
+
+    public static final String DEFAULT_SERVLET = "default";
+
+    public static final String PRECOMPRESSED_FORMATS = "br=.br,gzip=.gz";
+
+    public static final Set<String> DEFAULT_PRECOMPRESS_EXTENSIONS = new LinkedHashSet<>(
+            Arrays.asList("html", "css", "js", "json", "svg", "xml", "txt", "map"));
+
+    private Boolean cachingAllowed;
+
+    private Long cacheMaxSize;
+
+    private Long cacheTtl;
+
+    private Integer cacheObjectMaxSize;
+
+    private Integer sendfileSize;
+
+    private boolean precompressed = false;
+
+    private boolean precompress = false;
+
+    private int precompressMinSize = 1024;
+
+    private final Set<String> precompressExtensions = new LinkedHashSet<>(DEFAULT_PRECOMPRESS_EXTENSIONS);
+
+    /**
+     * Reads static content settings from the given environment. Sizes are in kilobytes and the
+     * TTL in milliseconds, the same units as the Tomcat attributes.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_CACHE_MAX_SIZE))) {
+            setCacheMaxSize(Long.valueOf(env.get(ENV_CACHE_MAX_SIZE).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_CACHE_TTL))) {
+            setCacheTtl(Long.valueOf(env.get(ENV_CACHE_TTL).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_CACHE_OBJECT_MAX_SIZE))) {
+            setCacheObjectMaxSize(Integer.valueOf(env.get(ENV_CACHE_OBJECT_MAX_SIZE).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_SENDFILE_SIZE))) {
+            setSendfileSize(Integer.valueOf(env.get(ENV_SENDFILE_SIZE).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_PRECOMPRESS))) {
+            setPrecompress(Boolean.valueOf(env.get(ENV_PRECOMPRESS).trim()));
+        }
+    }
+
+    /**
+     * Returns a listener that applies the settings to the context it is added to. The resource
+     * cache and precompressed assets are set up before the context starts, the default servlet
+     * is configured once web.xml has been processed.
+     */
+    public LifecycleListener lifecycleListener(final Path precompressDir) {
+        return new LifecycleListener() {
+            @Override
+            public void lifecycleEvent(LifecycleEvent event) {
+                Context context = (Context) event.getLifecycle();
+                if (Lifecycle.BEFORE_START_EVENT.equals(event.getType())) {
+                    configureResources(context.getResources());
+                    if (precompress) {
+                        mountPrecompressed(context, precompressDir);
+                    }
+                } else if (Lifecycle.CONFIGURE_START_EVENT.equals(event.getType())) {
+                    configureDefaultServlet(context);
+                }
+            }
+        };
+    }
+
+    public void configureResources(WebResourceRoot resources) {
+        if (cachingAllowed != null) {
+            resources.setCachingAllowed(cachingAllowed);
+        }
+        if (cacheMaxSize != null) {
+            resources.setCacheMaxSize(cacheMaxSize);
+        }
+        if (cacheTtl != null) {
+            resources.setCacheTtl(cacheTtl);
+        }
+        if (cacheObjectMaxSize != null) {
+            resources.setCacheObjectMaxSize(cacheObjectMaxSize);
+        }
+    }
+
+    public void configureDefaultServlet(Context context) {
+        Wrapper wrapper = (Wrapper) context.findChild(DEFAULT_SERVLET);
+        if (wrapper == null) {
+            return;
+        }
+        if (sendfileSize != null) {
+            wrapper.addInitParameter("sendfileSize", sendfileSize.toString());
+        }
+        if (precompressed || precompress) {
+            wrapper.addInitParameter("precompressed", PRECOMPRESSED_FORMATS);
+        }
+    }
+
+    private void mountPrecompressed(Context context, Path precompressDir) {
+        long start = System.nanoTime();
+        try {
+            int files = precompress(context.getDocBase(), precompressDir);
+            System.out.println("precompressed " + files + " static files into '" + precompressDir + "' in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to precompress static content into '" + precompressDir + "'", e);
+        }
+        WebResourceRoot resources = context.getResources();
+        for (WebResourceSet resourceSet : resources.getPostResources()) {
+            // Still mounted from before a context reload
+            if (resourceSet instanceof DirResourceSet
+                    && precompressDir.toUri().equals(toUri(resourceSet.getBaseUrl()))) {
+                return;
+            }
+        }
+        resources.addPostResources(new DirResourceSet(resources, "/", precompressDir.toString(), "/"));
+    }
+
+    /**
+     * Writes a gzip variant of every compressible file under the document base into the target
+     * directory, keeping the relative paths. Files that already have a variant next to them, or
+     * an up-to-date one in the target directory, are skipped. Returns the number of files written.
+     */
+    public int precompress(String docBase, final Path target) throws IOException {
+        final Path root = Paths.get(docBase);
+        final int[] written = {0};
+        Files.createDirectories(target);
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+                return name.equals("WEB-INF") || name.equals("META-INF") ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String extension = StringUtils.getFilenameExtension(file.getFileName().toString());
+                if (extension == null || !precompressExtensions.contains(extension.toLowerCase())
+                        || attrs.size() < precompressMinSize
+                        || Files.exists(file.resolveSibling(file.getFileName() + ".gz"))) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path compressed = target.resolve(root.relativize(file).toString() + ".gz");
+                if (Files.exists(compressed)
+                        && Files.getLastModifiedTime(compressed).compareTo(attrs.lastModifiedTime()) >= 0) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Files.createDirectories(compressed.getParent());
+                try (InputStream in = Files.newInputStream(file);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                    StreamUtils.copy(in, out);
+                }
+                written[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return written[0];
+    }
+
+    private static URI toUri(URL url) {
+        try {
+            return url != null ? url.toURI() : null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    public Boolean getCachingAllowed() {
+        return cachingAllowed;
+    }
+
+    public void setCachingAllowed(Boolean cachingAllowed) {
+        this.cachingAllowed = cachingAllowed;
+    }
+
+    public Long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    /**
+     * Maximum size of the resource cache in kilobytes.
+     */
+    public void setCacheMaxSize(Long cacheMaxSize) {
+        Assert.isTrue(cacheMaxSize == null || cacheMaxSize > 0, "cacheMaxSize must be greater than 0");
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public Long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Time in milliseconds before a cache entry is revalidated against the file system.
+     */
+    public void setCacheTtl(Long cacheTtl) {
+        Assert.isTrue(cacheTtl == null || cacheTtl >= 0, "cacheTtl cannot be negative");
+        this.cacheTtl = cacheTtl;
+    }
+
+    public Integer getCacheObjectMaxSize() {
+        return cacheObjectMaxSize;
+    }
+
+    /**
+     * Largest single resource in kilobytes that is cached, Tomcat caps it at 1/20 of the cache.
+     */
+    public void setCacheObjectMaxSize(Integer cacheObjectMaxSize) {
+        Assert.isTrue(cacheObjectMaxSize == null || cacheObjectMaxSize > 0, "cacheObjectMaxSize must be greater than 0");
+        this.cacheObjectMaxSize = cacheObjectMaxSize;
+    }
+
+    public Integer getSendfileSize() {
+        return sendfileSize;
+    }
+
+    /**
+     * Size in kilobytes above which the default servlet hands files to sendfile.
+     */
+    public void setSendfileSize(Integer sendfileSize) {
+        Assert.isTrue(sendfileSize == null || sendfileSize >= 0, "sendfileSize cannot be negative");
+        this.sendfileSize = sendfileSize;
+    }
+
+    public boolean isPrecompressed() {
+        return precompressed;
+    }
+
+    /**
+     * Serves existing {@code .br} and {@code .gz} variants of static files to clients that
+     * accept them.
+     */
+    public void setPrecompressed(boolean precompressed) {
+        this.precompressed = precompressed;
+    }
+
+    public boolean isPrecompress() {
+        return precompress;
+    }
+
+    /**
+     * Generates gzip variants of compressible static files at startup and serves them.
+     */
+    public void setPrecompress(boolean precompress) {
+        this.precompress = precompress;
+    }
+
+    public int getPrecompressMinSize() {
+        return precompressMinSize;
+    }
+
+    public void setPrecompressMinSize(int precompressMinSize) {
+        Assert.isTrue(precompressMinSize >= 0, "precompressMinSize cannot be negative");
+        this.precompressMinSize = precompressMinSize;
+    }
+
+    public Set<String> getPrecompressExtensions() {
+        return precompressExtensions;
+    }
+}
@@ -0,0 +1,47 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.tomcat.JarScanFilter;
+import org.apache.tomcat.JarScanType;
+import org.apache.tomcat.JarScanner;
+import org.apache.tomcat.JarScannerCallback;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Reports the time spent in every scan of the wrapped {@link JarScanner}.
+ */
+public class TimedJarScanner implements JarScanner {
+
+    private final JarScanner delegate;
+
+    private final StartupReport report;
+
+    public TimedJarScanner(JarScanner delegate, StartupReport report) {
+        this.delegate = delegate;
+        this.report = report;
+    }
+
+    @Override
+    public void scan(JarScanType scanType, ServletContext context, JarScannerCallback callback) {
+        long start = report.start();
+        try {
+            delegate.scan(scanType, context, callback);
+        } finally {
+            report.stop(StartupReport.JAR_SCAN, start);
+        }
+    }
+
+    @Override
+    public JarScanFilter getJarScanFilter() {
+        return delegate.getJarScanFilter();
+    }
+
+    @Override
+    public void setJarScanFilter(JarScanFilter jarScanFilter) {
+        delegate.setJarScanFilter(jarScanFilter);
+    }
+
+    public JarScanner getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,73 @@
+package io.pivotal.tomcat.launch;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+public class TlsConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final TlsSettings settings;
+
+    public TlsConfigurer(TomcatConfigurer parent, TlsSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    /**
+     * PEM certificate and PKCS#8 key served to clients that ask for the given host name.
+     */
+    public TlsConfigurer certificate(String hostName, Path certificateFile, Path keyFile) {
+        settings.addCertificate(new TlsSettings.Certificate(hostName, certificateFile, keyFile));
+        return this;
+    }
+
+    public TlsConfigurer certificate(String hostName, Path certificateFile, Path keyFile, String keyPassword) {
+        TlsSettings.Certificate certificate = new TlsSettings.Certificate(hostName, certificateFile, keyFile);
+        certificate.setKeyPassword(keyPassword);
+        settings.addCertificate(certificate);
+        return this;
+    }
+
+    /**
+     * Host whose certificate clients without SNI get, the first certificate's host by default.
+     */
+    public TlsConfigurer defaultHost(String hostName) {
+        settings.setDefaultHost(hostName);
+        return this;
+    }
+
+    public TlsConfigurer engine(TlsSettings.Engine engine) {
+        settings.setEngine(engine);
+        return this;
+    }
+
+    public TlsConfigurer jsse() {
+        return engine(TlsSettings.Engine.JSSE);
+    }
+
+    /**
+     * Uses OpenSSL through tomcat-native if the library is available, JSSE otherwise.
+     */
+    public TlsConfigurer openssl() {
+        return engine(TlsSettings.Engine.OPENSSL);
+    }
+
+    public TlsConfigurer protocols(String protocols) {
+        settings.setProtocols(protocols);
+        return this;
+    }
+
+    /**
+     * Sessions kept for resumption and how long they can be resumed.
+     */
+    public TlsConfigurer sessionCache(int size, long timeout, TimeUnit unit) {
+        settings.setSessionCacheSize(size);
+        settings.setSessionTimeout((int) unit.toSeconds(timeout));
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.util.Assert;
 import javax.servlet.ServletException;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 public class TomcatConfigurer {
 
@@ -26,11 +27,179 @@ public class TomcatConfigurer {
         return this;
     }
 
+    /**
+     * Keeps the base directory, and the compiled JSPs and persisted sessions in its work
+     * directory, across restarts until the build changes. Only one launcher can use it at a time.
+     */
+    public TomcatConfigurer persistentBaseDir(Path baseDir) {
+        launcher.setPersistentBaseDir(baseDir);
+        return this;
+    }
+
+    /**
+     * Identifies the build for {@link #persistentBaseDir(Path)}, e.g. a commit id, instead of
+     * hashing the classpath.
+     */
+    public TomcatConfigurer buildHash(String buildHash) {
+        launcher.setBuildHash(buildHash);
+        return this;
+    }
+
     public TomcatConfigurer port(int port) {
         launcher.setPort(port);
         return this;
     }
 
+    /**
+     * How long a graceful stop waits for in-flight requests before the server is stopped anyway.
+     */
+    public TomcatConfigurer shutdownTimeout(long timeout, TimeUnit unit) {
+        launcher.setShutdownTimeout(unit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * Starts contexts, loads load-on-startup servlets and warms up data sources concurrently on
+     * one thread per available processor.
+     */
+    public TomcatConfigurer parallelStartup() {
+        return parallelStartup(Runtime.getRuntime().availableProcessors());
+    }
+
+    public TomcatConfigurer parallelStartup(int threads) {
+        launcher.setStartupThreads(threads);
+        return this;
+    }
+
+    public ConnectorConfigurer connector() {
+        return new ConnectorConfigurer(this, launcher.getConnectorSettings());
+    }
+
+    /**
+     * Runs request processing on a shared service executor backed by virtual threads, falling back
+     * to a bounded platform thread pool on JVMs without virtual thread support.
+     */
+    public TomcatConfigurer virtualThreads() {
+        launcher.getConnectorSettings().setVirtualThreads(true);
+        return this;
+    }
+
+    /**
+     * Serves connector, thread pool, session, JDBC pool and latency metrics in the Prometheus text
+     * format on a separate admin port.
+     */
+    public TomcatConfigurer metrics(int adminPort) {
+        launcher.enableMetrics(adminPort);
+        return this;
+    }
+
+    public StaticContentConfigurer staticContent() {
+        return new StaticContentConfigurer(this, launcher.getStaticContentSettings(), launcher.getConnectorSettings());
+    }
+
+    /**
+     * Development mode: reloads the web apps when their classes or static files change, keeping
+     * the connector and the JNDI pools.
+     */
+    public HotReloadConfigurer hotReload() {
+        launcher.getHotReloadSettings().setEnabled(true);
+        return new HotReloadConfigurer(this, launcher.getHotReloadSettings());
+    }
+
+    /**
+     * Serves precompiled JSPs and runs Jasper with production settings.
+     */
+    public JspConfigurer jsp() {
+        return new JspConfigurer(this, launcher.getJspSettings());
+    }
+
+    /**
+     * Lean mode for servlet-only apps: no JSP servlet, no Jasper or EL initialization and a jar
+     * scan limited to the app's own jars.
+     */
+    public TomcatConfigurer lean() {
+        launcher.getLeanSettings().setEnabled(true);
+        return this;
+    }
+
+    /**
+     * Binds JNDI resources as proxies and creates the pools behind them on first use.
+     */
+    public TomcatConfigurer lazyResources() {
+        launcher.getLazyResourceSettings().setEnabled(true);
+        return this;
+    }
+
+    /**
+     * Compresses responses and sets caching headers for static resources in a filter in front of
+     * every web app.
+     */
+    public ResponsePipelineConfigurer responsePipeline() {
+        return new ResponsePipelineConfigurer(this, launcher.getResponsePipelineSettings());
+    }
+
+    /**
+     * Boots with the given class data sharing archive and the jar scan index recorded next to it.
+     * The JVM has to be started with {@code -XX:SharedArchiveFile} for the archive to be used.
+     */
+    public TomcatConfigurer classDataSharing(Path archive) {
+        launcher.enableClassDataSharing(archive, false);
+        return this;
+    }
+
+    /**
+     * Training run for {@link #classDataSharing(Path)}, {@link TomcatLauncher#launch()} stops
+     * once the server is ready so that a JVM started with {@code -XX:ArchiveClassesAtExit} writes
+     * the archive.
+     */
+    public TomcatConfigurer classDataSharingTraining(Path archive) {
+        launcher.enableClassDataSharing(archive, true);
+        return this;
+    }
+
+    /**
+     * Adds a TLS connector that picks the certificate by SNI host name from PEM files.
+     */
+    public TlsConfigurer tls(int port) {
+        launcher.getTlsSettings().setPort(port);
+        return new TlsConfigurer(this, launcher.getTlsSettings());
+    }
+
+    /**
+     * Limits concurrent requests per context, adapting the limit to the observed latency, and
+     * rejects the excess with a 503 instead of letting it queue. Health checks are always admitted.
+     */
+    public AdmissionConfigurer admissionControl() {
+        launcher.getAdmissionSettings().setEnabled(true);
+        return new AdmissionConfigurer(this, launcher.getAdmissionSettings());
+    }
+
+    /**
+     * Traces where requests spend their time, waiting for a thread, in filters, in the servlet and
+     * waiting for JDBC connections, and logs the slowest requests of every interval.
+     */
+    public TracingConfigurer tracing() {
+        launcher.getTracingSettings().setEnabled(true);
+        return new TracingConfigurer(this, launcher.getTracingSettings());
+    }
+
+    /**
+     * Writes an access log from a background thread, request threads only hand off the fields.
+     */
+    public AccessLogConfigurer accessLog() {
+        launcher.getAccessLogSettings().setEnabled(true);
+        return new AccessLogConfigurer(this, launcher.getAccessLogSettings());
+    }
+
+    /**
+     * Keeps at most the given number of sessions per web app on the heap and spills the least
+     * recently used ones to local disk.
+     */
+    public SessionConfigurer sessions(int maxResidentSessions) {
+        launcher.getSessionSettings().setMaxResidentSessions(maxResidentSessions);
+        return new SessionConfigurer(this, launcher.getSessionSettings());
+    }
+
     public TomcatConfigurer buildClassFolder(String buildClassFolder) {
         launcher.setBuildClassDir(buildClassFolder);
         return this;
@@ -52,6 +221,22 @@ public class TomcatConfigurer {
         return this;
     }
 
+    /**
+     * Mounts an additional web app at the given context path next to the main one. All apps share
+     * the connectors, the request thread pool and the common classloader.
+     */
+    public WebAppConfigurer webApp(String contextPath, String relativeWebContentFolder) {
+        return new WebAppConfigurer(this, launcher, launcher.mountWebApp(contextPath, relativeWebContentFolder));
+    }
+
+    /**
+     * Loads the jars in the given folder once, through a classloader shared by every web app.
+     */
+    public TomcatConfigurer commonLibDir(String relativeLibFolder) {
+        launcher.setCommonLibDir(relativeLibFolder);
+        return this;
+    }
+
     public TomcatConfigurer jarScanner() {
         if (launcher.getContext() != null) {
             StandardJarScanner scanner = new StandardJarScanner();
@@ -61,6 +246,17 @@ public class TomcatConfigurer {
         return this;
     }
 
+    public TomcatConfigurer fastStart() {
+        return fastStart(launcher.getDefaultScanIndexFile());
+    }
+
+    public TomcatConfigurer fastStart(Path indexFile) {
+        if (launcher.getContext() != null) {
+            launcher.enableFastStart(launcher.getContext(), indexFile);
+        }
+        return this;
+    }
+
     public TomcatConfigurer disableTldScanning() {
         if (launcher.getContext() != null) {
             launcher.disableTldScanning(launcher.getContext());
@@ -128,11 +324,38 @@ public class TomcatConfigurer {
         return this;
     }
 
+    /**
+     * Imports every key of the given property source as a typed JNDI environment entry when the
+     * launcher starts, e.g. {@code importEnvironment(source).stripPrefix("app.").type(Integer.class, "port")}.
+     */
+    public EnvironmentConfigurer importEnvironment(PropertySource<?> source) {
+        EnvironmentImport environmentImport = new EnvironmentImport(source);
+        launcher.getEnvironmentImports().add(environmentImport);
+        return new EnvironmentConfigurer(this, environmentImport);
+    }
+
     public TomcatConfigurer addContextResource(ContextResource resource) {
         launcher.getContextResources().add(resource);
         return this;
     }
 
+    /**
+     * Binds a tomcat-jdbc connection pool under the given JNDI name, e.g. {@code jdbc/mydb}.
+     */
+    public DataSourceConfigurer dataSource(String name) {
+        DataSourceSettings settings = new DataSourceSettings(name);
+        launcher.getDataSources().add(settings);
+        return new DataSourceConfigurer(this, settings);
+    }
+
+    /**
+     * Configures the warm-up that runs after the application has started and before the
+     * connector accepts traffic.
+     */
+    public WarmUpConfigurer warmUp() {
+        return new WarmUpConfigurer(this, launcher.getWarmUpSettings());
+    }
+
     public TomcatLauncher apply() throws IOException {
         return launcher;
     }
@@ -155,11 +378,13 @@ public class TomcatConfigurer {
 
     private ContextEnvironment getEnvironment(PropertySource<?> source, String name, String type, boolean override) {
         Assert.notNull(source, "PropertySource cannot be null");
-        Assert.notNull(source.getProperty(name), "Cannot find property with name: '" + name + "'");
-        return getEnvironment(name, source.getProperty(name).toString(), type, override);
+        Object value = source.getProperty(name);
+        Assert.notNull(value, "Cannot find property with name: '" + name + "'");
+        return getEnvironment(name, value.toString(), type, override);
     }
 
     private ContextEnvironment getEnvironment(PropertySource<?> source, String name) {
-        return getEnvironment(name, source.getProperty(name) != null ? source.getProperty(name).toString() : "");
+        Object value = source.getProperty(name);
+        return getEnvironment(name, value != null ? value.toString() : "");
     }
 }
\ No newline at end of file
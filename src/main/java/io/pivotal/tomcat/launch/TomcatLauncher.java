@@ -1,30 +1,54 @@
 package io.pivotal.tomcat.launch;
 
 
+import org.apache.catalina.Container;
 import org.apache.catalina.Context;
+import org.apache.catalina.Executor;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.WebResourceRoot;
 import org.apache.catalina.WebResourceSet;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.NamingContextListener;
 import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.webresources.DirResourceSet;
 import org.apache.catalina.webresources.EmptyResourceSet;
 import org.apache.catalina.webresources.StandardRoot;
+import org.apache.coyote.AbstractProtocol;
 import org.apache.tomcat.JarScanner;
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+import org.apache.tomcat.util.descriptor.web.ContextEnvironment;
 import org.apache.tomcat.util.descriptor.web.ContextResource;
 import org.apache.tomcat.util.scan.Constants;
 import org.apache.tomcat.util.scan.StandardJarScanFilter;
 import org.apache.tomcat.util.scan.StandardJarScanner;
 import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
 
+import javax.naming.NamingException;
 import javax.servlet.ServletException;
+import javax.sql.DataSource;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TomcatLauncher {
 
@@ -34,6 +58,23 @@ public class TomcatLauncher {
 
     public static final String DEFAULT_CONTEXT_PATH = "";
 
+    public static final String ENV_SCAN_INDEX = "TOMCAT_SCAN_INDEX";
+
+    public static final String ENV_METRICS_PORT = "TOMCAT_METRICS_PORT";
+
+    public static final String ENV_SHUTDOWN_TIMEOUT = "TOMCAT_SHUTDOWN_TIMEOUT";
+
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000;
+
+    public static final String ENV_STARTUP_THREADS = "TOMCAT_STARTUP_THREADS";
+
+    public static final String ENV_ROOT_FOLDER = "TOMCAT_ROOT_FOLDER";
+
+    /**
+     * How long a stop waits for a lazy resource that a last request is still creating.
+     */
+    static final long LAZY_CREATION_WAIT_SECONDS = 5;
+
     private String buildClassDir = DEFAULT_BUILD_DIR;
 
     private String relativeWebContentFolder = DEFAULT_RELATIVE_WEB_CONTENT_FOLDER;
@@ -50,8 +91,68 @@ public class TomcatLauncher {
 
     private final Tomcat tomcat;
 
+    private int port = 8080;
+
+    private ConnectorSettings connectorSettings = new ConnectorSettings();
+
+    private Executor sharedExecutor;
+
     private List<ContextResource> contextResources = new ArrayList<>();
 
+    private List<DataSourceSettings> dataSources = new ArrayList<>();
+
+    private final List<EnvironmentImport> environmentImports = new ArrayList<>();
+
+    private final List<WebApp> additionalWebApps = new ArrayList<>();
+
+    private URLClassLoader commonClassLoader;
+
+    private final StartupReport startupReport = new StartupReport();
+
+    private final WarmUpSettings warmUpSettings = new WarmUpSettings();
+
+    private final StaticContentSettings staticContentSettings = new StaticContentSettings();
+
+    private final HotReloadSettings hotReloadSettings = new HotReloadSettings();
+
+    private final JspSettings jspSettings = new JspSettings();
+
+    private final SessionSettings sessionSettings = new SessionSettings();
+
+    private final ResponsePipelineSettings responsePipelineSettings = new ResponsePipelineSettings();
+
+    private final LeanSettings leanSettings = new LeanSettings();
+
+    private final TracingSettings tracingSettings = new TracingSettings();
+
+    private final CdsSettings cdsSettings = new CdsSettings();
+
+    private final AdmissionSettings admissionSettings = new AdmissionSettings();
+
+    private final TlsSettings tlsSettings = new TlsSettings();
+
+    private final LazyResourceSettings lazyResourceSettings = new LazyResourceSettings();
+
+    private final AccessLogSettings accessLogSettings = new AccessLogSettings();
+
+    private Connector tlsConnector;
+
+    private final List<ReloadWatcher> reloadWatchers = new ArrayList<>();
+
+    private volatile boolean ready = false;
+
+    private long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+
+    private int startupThreads = 1;
+
+    private ParallelStartup parallelStartup;
+
+    private BaseDir baseDir;
+
+    private String buildHash;
+
+    private MetricsEndpoint metricsEndpoint;
+
     private TomcatLauncher() {
         this(null);
     }
@@ -78,49 +179,655 @@ public class TomcatLauncher {
     }
 
     private File getRootFolder(String path) {
+        long start = startupReport.start();
         try {
             File root;
-            String runningJarPath = TomcatLauncher.class.getProtectionDomain().getCodeSource().getLocation().toURI()
-                    .getPath().replaceAll("\\\\", "/");
-            int lastIndexOf = runningJarPath.lastIndexOf(path);
-            if (lastIndexOf < 0) {
+            // An explicit root skips the code source lookup, which ahead-of-time compiled images lack
+            String rootFolder = System.getenv(ENV_ROOT_FOLDER);
+            CodeSource codeSource = TomcatLauncher.class.getProtectionDomain().getCodeSource();
+            if (rootFolder != null && !rootFolder.isEmpty()) {
+                root = new File(rootFolder);
+            } else if (codeSource == null || codeSource.getLocation() == null) {
                 root = new File("");
             } else {
-                root = new File(runningJarPath.substring(0, lastIndexOf));
+                String runningJarPath = codeSource.getLocation().toURI().getPath().replaceAll("\\\\", "/");
+                int lastIndexOf = runningJarPath.lastIndexOf(path);
+                if (lastIndexOf < 0) {
+                    root = new File("");
+                } else {
+                    root = new File(runningJarPath.substring(0, lastIndexOf));
+                }
             }
             System.out.println("application resolved root folder: " + root.getAbsolutePath());
             return root;
         } catch (URISyntaxException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            startupReport.stop(StartupReport.ROOT_FOLDER, start);
         }
     }
 
+    /**
+     * Starts the server and blocks until it is stopped, either through the handle or by the JVM
+     * shutdown hook.
+     */
     public void launch() throws LifecycleException {
+        ServerHandle handle = start();
+        if (cdsSettings.isTraining()) {
+            System.out.println("class data sharing training run complete, stopping");
+            handle.stop(shutdownTimeout, TimeUnit.MILLISECONDS);
+            return;
+        }
+        try {
+            handle.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts the server and returns once the connector accepts traffic. The returned handle
+     * stops the server gracefully, a JVM shutdown hook does the same on SIGTERM. If the start
+     * fails, whatever was started so far is stopped and released before the failure is rethrown.
+     */
+    public ServerHandle start() throws LifecycleException {
+        if (cdsSettings.isEnabled()) {
+            System.out.println(cdsSettings.describe());
+        }
+        lockBaseDir();
+        try {
+            return startServer();
+        } catch (LifecycleException | RuntimeException | Error e) {
+            // Without a server handle nothing else would stop Tomcat, close the pools or unlock the base directory
+            System.out.println("startup failed, releasing resources: " + e);
+            ready = false;
+            stopReloadWatchers();
+            shutdown();
+            throw e;
+        }
+    }
+
+    private ServerHandle startServer() throws LifecycleException {
         tomcat.enableNaming();
+        Connector connector = createConnector();
+        connector.addLifecycleListener(startupReport.lifecycleListener(StartupReport.CONNECTOR_BIND));
+        tomcat.setConnector(connector);
+        // The connector is started on its own once the warm-up is complete, so that no request
+        // reaches the application while its pools, servlets and code paths are still cold
+        tomcat.getService().removeConnector(connector);
+        if (tlsSettings.isEnabled()) {
+            tlsConnector = tlsSettings.createConnector(tomcat.getServer(), connectorSettings);
+            shareExecutor(tlsConnector);
+        }
+        if (accessLogSettings.isEnabled()) {
+            // Tomcat calls it once a request is complete, wherever it is in the pipeline
+            tomcat.getHost().getPipeline().addValve(accessLogSettings.getValve());
+        }
+        if (metricsEndpoint != null) {
+            tomcat.getHost().getPipeline().addValve(metricsEndpoint.getValve());
+        }
+        if (tracingSettings.isEnabled()) {
+            Container traced = tracingSettings.isContextOnly() ? getContext() : tomcat.getHost();
+            traced.getPipeline().addValve(tracingSettings.getValve());
+        }
+        if (admissionSettings.isEnabled()) {
+            // After the metrics and tracing valves, so that shed requests are counted there too
+            tomcat.getHost().getPipeline().addValve(admissionSettings.getValve());
+        }
+        checkBuildHash();
+        importEnvironments();
+        if (leanSettings.isEnabled() && (jspSettings.getPrecompiledDir() != null || jspSettings.isPrecompileOnStartup())) {
+            throw new IllegalStateException("JSPs are not supported in lean mode, set " + LeanSettings.ENV_LEAN + "=false");
+        }
+        File precompiledWebXml = mountPrecompiledJsps();
+        for (WebApp webApp : getWebApps()) {
+            webApp.getContext().addLifecycleListener(leanSettings.lifecycleListener());
+            webApp.getContext().addLifecycleListener(EnvironmentCache.lifecycleListener());
+            webApp.getContext().addLifecycleListener(responsePipelineSettings.lifecycleListener());
+            webApp.getContext().addLifecycleListener(tracingSettings.lifecycleListener());
+            if (sessionSettings.isEnabled()) {
+                webApp.getContext().setManager(sessionSettings.createManager());
+            }
+            webApp.getContext().addLifecycleListener(
+                    staticContentSettings.lifecycleListener(getPrecompressDir(webApp.getContext())));
+            webApp.getContext().addLifecycleListener(
+                    jspSettings.lifecycleListener(webApp.getContext() == getContext() ? precompiledWebXml : null));
+        }
+        parallelStartup = new ParallelStartup(startupThreads);
+        if (startupThreads > 1) {
+            tomcat.getEngine().setStartStopThreads(startupThreads);
+            tomcat.getHost().setStartStopThreads(startupThreads);
+            for (WebApp webApp : getWebApps()) {
+                webApp.getContext().addLifecycleListener(parallelStartup.servletLoader());
+            }
+        }
+        if (hotReloadSettings.isEnabled()) {
+            // Reloads replay the jar scan of the first start instead of scanning the classpath again
+            JarScanner scanner = getContext().getJarScanner();
+            if (!(scanner instanceof TimedJarScanner
+                    && ((TimedJarScanner) scanner).getDelegate() instanceof CachingJarScanner)) {
+                enableFastStart(getContext(), getHotReloadScanIndexFile());
+            }
+        }
         tomcat.start();
 
+        // Started early so that its readiness check can be polled during the warm-up
+        if (metricsEndpoint != null) {
+            try {
+                metricsEndpoint.start(this);
+            } catch (IOException e) {
+                throw new LifecycleException("Failed to start metrics endpoint on port " + metricsEndpoint.getPort(), e);
+            }
+        }
+
         // Must do this AFTER tomcat start is called (because of lifecycle hooks in tomcat)
+        long start = startupReport.start();
         loadContextResources();
+        startupReport.stop(StartupReport.RESOURCES, start);
+
+        start = startupReport.start();
+        warmUpDataSources();
+        loadServlets();
+        replayWarmUpRequests(connector);
+        startupReport.stop(StartupReport.WARM_UP, start);
+
+        startConnector(connector);
+        if (tlsConnector != null) {
+            startConnector(tlsConnector);
+        }
+        ready = true;
+        startReloadWatchers();
 
-        tomcat.getServer().await();
+        start = startupReport.start();
+        awaitFirstRequest(connector);
+        startupReport.stop(StartupReport.FIRST_REQUEST, start);
+        startupReport.complete();
+        System.out.println(startupReport);
+
+        return new ServerHandle(this, connector);
+    }
+
+    /**
+     * Stops Tomcat and releases everything the launcher holds: the data source pools, retained
+     * and lazy resources, the startup threads, the metrics endpoint, the common classloader and
+     * the base directory. Runs when the server stops, and when the start fails half way.
+     */
+    void shutdown() {
+        // Pools have to be looked up while the naming context still exists
+        List<Object> pools = new ArrayList<>();
+        for (WebApp webApp : getWebApps()) {
+            for (ContextResource resource : webApp.getContextResources()) {
+                LazyResource lazy = getLazyResource(webApp.getContext(), resource.getName());
+                if (lazy != null && !lazy.isCreated()) {
+                    System.out.println("lazy resource '" + resource.getName() + "' of context '"
+                            + webApp.getContext().getPath() + "' was never used");
+                }
+                // A first request may still be building the pool
+                Object pool = lazy != null ? lazy.await(LAZY_CREATION_WAIT_SECONDS, TimeUnit.SECONDS)
+                        : lookupResource(webApp.getContext(), resource.getName());
+                if (pool != null) {
+                    pools.add(pool);
+                }
+            }
+        }
+        try {
+            tomcat.stop();
+            tomcat.destroy();
+        } catch (LifecycleException e) {
+            System.out.println("failed to stop tomcat: " + e.getMessage());
+        }
+        for (Object pool : pools) {
+            closePool(pool);
+        }
+        if (commonClassLoader != null) {
+            try {
+                commonClassLoader.close();
+            } catch (IOException e) {
+                System.out.println("failed to close the common classloader: " + e.getMessage());
+            }
+        }
+        RetainingResourceFactory.release(getRetainedResourcePrefix());
+        LazyResourceFactory.release(getRetainedResourcePrefix());
+        if (parallelStartup != null) {
+            parallelStartup.close();
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.stop();
+        }
+        if (baseDir != null) {
+            baseDir.close();
+        }
+    }
+
+    private static void closePool(Object pool) {
+        try {
+            if (pool instanceof DataSourceProxy) {
+                ((DataSourceProxy) pool).close(true);
+            } else if (pool instanceof AutoCloseable) {
+                ((AutoCloseable) pool).close();
+            }
+        } catch (Exception e) {
+            System.out.println("failed to close " + pool + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the warm-up is complete and the connector accepts traffic.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * Sends a HEAD request to the context root and waits for any response, so the startup report
+     * includes the time until the first request can actually be served.
+     */
+    private void awaitFirstRequest(Connector connector) {
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(connector.getScheme(), "localhost", connector.getLocalPort(), getContext().getPath() + "/");
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(30000);
+            connection.getResponseCode();
+        } catch (IOException e) {
+            System.out.println("first request readiness check failed: " + e.getMessage());
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Looks up a resource in the JNDI environment of the given context, returns {@code null} if
+     * naming is not started or the resource is not bound.
+     */
+    public Object lookupResource(Context ctx, String name) {
+        NamingContextListener namingContextListener = ((StandardContext) ctx).getNamingContextListener();
+        if (namingContextListener == null || namingContextListener.getEnvContext() == null) {
+            return null;
+        }
+        try {
+            return namingContextListener.getEnvContext().lookup(name);
+        } catch (NamingException e) {
+            return null;
+        }
+    }
+
+    private void startConnector(Connector connector) throws LifecycleException {
+        tomcat.getService().addConnector(connector);
+        // The service logs connector start failures instead of throwing them
+        if (!connector.getState().isAvailable()) {
+            throw new LifecycleException("Failed to start connector on port " + connector.getPort());
+        }
+    }
+
+    /**
+     * Opens the connections of data sources configured for warm-up, or of every registered data
+     * source when the warm-up settings ask for it.
+     */
+    private void warmUpDataSources() {
+        Map<String, Runnable> tasks = new LinkedHashMap<>();
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        for (final WebApp webApp : getWebApps()) {
+            String path = webApp.getContext().getPath();
+            for (final ContextResource resource : webApp.getContextResources()) {
+                tasks.put(path + ":" + resource.getName(), new Runnable() {
+                    @Override
+                    public void run() {
+                        warmUpDataSource(webApp, resource);
+                    }
+                });
+            }
+            for (DataSourceSettings dataSource : webApp.getDataSources()) {
+                List<String> dependsOn = new ArrayList<>();
+                for (String name : dataSource.getDependsOn()) {
+                    dependsOn.add(path + ":" + name);
+                }
+                dependencies.put(path + ":" + dataSource.getName(), dependsOn);
+            }
+        }
+        parallelStartup.run(tasks, dependencies);
+    }
+
+    private void warmUpDataSource(WebApp webApp, ContextResource resource) {
+        Context ctx = webApp.getContext();
+        DataSourceSettings dataSource = webApp.getDataSource(resource.getName());
+        boolean explicit = dataSource != null && dataSource.isWarmUp();
+        // Warming up every data source would defeat lazy resources
+        if (!explicit && (!warmUpSettings.isDataSources() || getLazyResource(ctx, resource.getName()) != null)) {
+            return;
+        }
+        Object bound = lookupResource(ctx, resource.getName());
+        if (!(bound instanceof DataSource)) {
+            if (explicit) {
+                throw new IllegalStateException("Data source '" + resource.getName() + "' is not bound");
+            }
+            return;
+        }
+        if (dataSource == null) {
+            // Without pool settings a single connection is enough to create the pool
+            dataSource = new DataSourceSettings(resource.getName());
+        }
+        long start = System.nanoTime();
+        int connections = dataSource.warmUp((DataSource) bound);
+        System.out.println("warmed up data source '" + resource.getName() + "' of context '" + ctx.getPath()
+                + "' with " + connections + " connections in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Loads and initializes the servlets named in the warm-up settings, which Tomcat would
+     * otherwise do on their first request.
+     */
+    private void loadServlets() {
+        for (String servletName : warmUpSettings.getServlets()) {
+            Container[] children = WarmUpSettings.ALL_SERVLETS.equals(servletName)
+                    ? getContext().findChildren() : new Container[]{getContext().findChild(servletName)};
+            for (Container child : children) {
+                if (child == null) {
+                    throw new IllegalStateException("No servlet named '" + servletName + "' to warm up");
+                }
+                try {
+                    ((Wrapper) child).load();
+                } catch (ServletException e) {
+                    throw new IllegalStateException("Failed to load servlet '" + child.getName() + "'", e);
+                }
+            }
+            System.out.println("loaded servlet '" + servletName + "' for warm-up");
+        }
+    }
+
+    /**
+     * Replays the warm-up requests through a temporary connector bound to the loopback address,
+     * so that the request path is compiled and caches are filled before real traffic arrives.
+     * JSPs to precompile are requested once with Jasper's precompile parameter first.
+     */
+    private void replayWarmUpRequests(Connector connector) throws LifecycleException {
+        final List<String> precompile = new ArrayList<>();
+        if (jspSettings.isPrecompileOnStartup()) {
+            for (WebApp webApp : getWebApps()) {
+                for (String jsp : jspSettings.findJsps(webApp.getContext())) {
+                    precompile.add(webApp.getContext().getPath() + jsp + "?" + JspSettings.PRECOMPILE_PARAM);
+                }
+            }
+        }
+        if (warmUpSettings.getRequests().isEmpty() && precompile.isEmpty()) {
+            return;
+        }
+        Connector loopback = new Connector(connector.getProtocolHandlerClassName());
+        loopback.setPort(0);
+        loopback.setProperty("address", "127.0.0.1");
+        tomcat.getService().addConnector(loopback);
+        try {
+            if (!loopback.getState().isAvailable()) {
+                throw new LifecycleException("Failed to start warm-up connector");
+            }
+            if (!precompile.isEmpty()) {
+                precompileJsps(loopback, precompile);
+            }
+            if (warmUpSettings.getRequests().isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            int failed = 0;
+            for (int i = 0; i < warmUpSettings.getIterations(); i++) {
+                for (String path : warmUpSettings.getRequests()) {
+                    if (!replayRequest(loopback, getContext().getPath() + path)) {
+                        failed++;
+                    }
+                }
+            }
+            System.out.println("replayed " + warmUpSettings.getIterations() * warmUpSettings.getRequests().size()
+                    + " warm-up requests (" + failed + " failed) in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        } finally {
+            tomcat.getService().removeConnector(loopback);
+            loopback.destroy();
+        }
+    }
+
+    private void precompileJsps(final Connector loopback, List<String> paths) {
+        long start = System.nanoTime();
+        final AtomicInteger failed = new AtomicInteger();
+        Map<String, Runnable> tasks = new LinkedHashMap<>();
+        for (final String path : paths) {
+            tasks.put(path, new Runnable() {
+                @Override
+                public void run() {
+                    if (!replayRequest(loopback, path)) {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        parallelStartup.run(tasks);
+        System.out.println("precompiled " + paths.size() + " JSPs (" + failed.get() + " failed) in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private boolean replayRequest(Connector loopback, String path) {
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL("http", "127.0.0.1", loopback.getLocalPort(), path);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(30000);
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    StreamUtils.drain(in);
+                }
+            }
+            return status < 500;
+        } catch (IOException e) {
+            System.out.println("warm-up request '" + path + "' failed: " + e.getMessage());
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    Tomcat getTomcat() {
+        return tomcat;
+    }
+
+    public StartupReport getStartupReport() {
+        return startupReport;
+    }
+
+    private Connector createConnector() {
+        Connector connector = connectorSettings.createConnector(tomcat.getServer(), port);
+        shareExecutor(connector);
+        return connector;
+    }
+
+    private void shareExecutor(Connector connector) {
+        if (connectorSettings.isVirtualThreads() || tracingSettings.isEnabled()) {
+            ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(getSharedExecutor());
+        }
+    }
+
+    /**
+     * Returns the executor registered on the service, creating it on first use. Connectors that
+     * use it share one pool of request threads.
+     */
+    public Executor getSharedExecutor() {
+        if (sharedExecutor == null) {
+            VirtualThreadExecutor executor = connectorSettings.createExecutor();
+            // Tracing shares the executor for queue timing, but only virtualThreads() unbounds it
+            executor.setVirtualThreads(connectorSettings.isVirtualThreads());
+            executor.setQueueTiming(tracingSettings.isEnabled());
+            sharedExecutor = executor;
+            tomcat.getService().addExecutor(sharedExecutor);
+        }
+        return sharedExecutor;
     }
 
     private void loadContextResources() {
-        for (ContextResource resource : contextResources) {
-            getContext().getNamingResources().addResource(resource);
+        for (DataSourceSettings dataSource : dataSources) {
+            contextResources.add(dataSource.toContextResource());
+        }
+        for (WebApp webApp : getWebApps()) {
+            for (ContextResource resource : webApp.getContextResources()) {
+                if (tracingSettings.isEnabled() && webApp.getDataSource(resource.getName()) != null) {
+                    tracingSettings.traceConnectionWaits(resource);
+                }
+                String key = getResourceKey(webApp.getContext(), resource.getName());
+                if (lazyResourceSettings.isEnabled()) {
+                    LazyResourceFactory.defer(resource, key, webApp.getContext().getLoader().getClassLoader());
+                }
+                // Retains the lazy proxy when both are on
+                if (hotReloadSettings.isEnabled()) {
+                    RetainingResourceFactory.retain(resource, key);
+                }
+                webApp.getContext().getNamingResources().addResource(resource);
+            }
         }
     }
 
+    /**
+     * Validates all imported environment entries before adding any of them, so that a single
+     * invalid value fails the launch without a partially bound environment.
+     */
+    private void importEnvironments() {
+        Map<EnvironmentImport, List<ContextEnvironment>> validated = new LinkedHashMap<>();
+        for (EnvironmentImport environmentImport : environmentImports) {
+            validated.put(environmentImport, environmentImport.toContextEnvironments());
+        }
+        for (Map.Entry<EnvironmentImport, List<ContextEnvironment>> entry : validated.entrySet()) {
+            for (ContextEnvironment env : entry.getValue()) {
+                getContext().getNamingResources().addEnvironment(env);
+            }
+            System.out.println("imported " + entry.getValue().size() + " environment entries from '"
+                    + entry.getKey().getSourceName() + "'");
+        }
+    }
+
+    /**
+     * Mounts the classes of the precompiled JSPs into the main web app and returns the web.xml
+     * with their servlet mappings, or {@code null} if JSPs are not precompiled.
+     */
+    private File mountPrecompiledJsps() {
+        if (jspSettings.getPrecompiledDir() == null) {
+            return null;
+        }
+        File precompiledDir = new File(getWebContentFolder().getAbsolutePath(), jspSettings.getPrecompiledDir());
+        File webXml = new File(precompiledDir, JspSettings.PRECOMPILED_WEB_XML);
+        File classes = new File(precompiledDir, JspSettings.PRECOMPILED_CLASSES);
+        if (!webXml.isFile() || !classes.isDirectory()) {
+            throw new IllegalStateException("No precompiled JSPs in '" + precompiledDir.getAbsolutePath()
+                    + "', run the precompileJsp task first");
+        }
+        WebResourceRoot resources = getWebResourceRoot();
+        if (resources == null) {
+            resources = new StandardRoot(getContext());
+            getContext().setResources(resources);
+        }
+        resources.addPreResources(new DirResourceSet(resources, "/WEB-INF/classes", classes.getAbsolutePath(), "/"));
+        System.out.println("loading precompiled JSPs from '" + classes.getAbsolutePath() + "'");
+        return webXml;
+    }
+
+    private void startReloadWatchers() throws LifecycleException {
+        if (!hotReloadSettings.isEnabled()) {
+            return;
+        }
+        for (WebApp webApp : getWebApps()) {
+            final Context ctx = webApp.getContext();
+            ReloadWatcher watcher = new ReloadWatcher(ctx, hotReloadSettings.getDebounceMillis(), new Runnable() {
+                @Override
+                public void run() {
+                    if (staticContentSettings.isPrecompress()) {
+                        try {
+                            staticContentSettings.precompress(ctx.getDocBase(), getPrecompressDir(ctx));
+                        } catch (IOException e) {
+                            System.out.println("failed to precompress changed static content: " + e.getMessage());
+                        }
+                    }
+                }
+            });
+            try {
+                watcher.start();
+            } catch (IOException e) {
+                throw new LifecycleException("Failed to watch context '" + ctx.getPath() + "' for changes", e);
+            }
+            reloadWatchers.add(watcher);
+        }
+    }
+
+    void stopReloadWatchers() {
+        for (ReloadWatcher watcher : reloadWatchers) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                System.out.println("failed to stop watching for changes: " + e.getMessage());
+            }
+        }
+        reloadWatchers.clear();
+    }
+
+    List<ReloadWatcher> getReloadWatchers() {
+        return reloadWatchers;
+    }
+
+    /**
+     * Key prefix of the pools this launcher keeps across context reloads.
+     */
+    String getRetainedResourcePrefix() {
+        return "launcher-" + System.identityHashCode(this) + ":";
+    }
+
+    private String getResourceKey(Context ctx, String name) {
+        return getRetainedResourcePrefix() + ctx.getPath() + ":" + name;
+    }
+
+    /**
+     * Returns the given resource of the given context if it is bound lazily, {@code null}
+     * otherwise.
+     */
+    public LazyResource getLazyResource(Context ctx, String name) {
+        return LazyResourceFactory.get(getResourceKey(ctx, name));
+    }
+
+    /**
+     * The index hot reload replays lives with the base directory, so that it goes away with a
+     * temporary one and is not shared with other launchers through the temp directory.
+     */
+    private Path getHotReloadScanIndexFile() {
+        return new File(tomcat.getServer().getCatalinaBase(), "scan-index.properties").toPath();
+    }
+
+    private Path getPrecompressDir(Context ctx) {
+        return new File(tomcat.getServer().getCatalinaBase(), "precompressed" + ctx.getPath()).toPath();
+    }
+
     protected StandardContext createStandardContext() {
         File root = getWebContentFolder();
         System.setProperty("org.apache.catalina.startup.EXIT_ON_INIT_FAILURE", "true");
-        Path tempPath = null;
-        try {
-            tempPath = Files.createTempDirectory("tomcat-base-dir");
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to create temporary directory with prefix tomcat-base-dir", e);
+        long start = startupReport.start();
+        String persistentBaseDir = System.getenv(BaseDir.ENV_BASE_DIR);
+        if (persistentBaseDir != null && !persistentBaseDir.isEmpty()) {
+            this.setPersistentBaseDir(Paths.get(persistentBaseDir));
+        } else {
+            try {
+                this.baseDir = BaseDir.createTemporary();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create temporary directory with prefix " + BaseDir.TEMP_PREFIX, e);
+            }
+            tomcat.setBaseDir(baseDir.getPath().toString());
         }
-        this.setBaseDir(tempPath);
+        this.buildHash = System.getenv(BaseDir.ENV_BUILD_HASH);
+        startupReport.stop(StartupReport.BASE_DIR, start);
 
         // The port that we should run on can be set into an environment
         // variable
@@ -131,12 +838,52 @@ public class TomcatLauncher {
         }
         this.setPort(Integer.valueOf(webPort));
 
+        // Connector tuning (protocol, thread pool, keep-alive, compression, HTTP/2)
+        // can be set the same way
+        connectorSettings.loadEnvironment(System.getenv());
+        warmUpSettings.loadEnvironment(System.getenv());
+        staticContentSettings.loadEnvironment(System.getenv());
+        hotReloadSettings.loadEnvironment(System.getenv());
+        jspSettings.loadEnvironment(System.getenv());
+        sessionSettings.loadEnvironment(System.getenv());
+        responsePipelineSettings.loadEnvironment(System.getenv());
+        leanSettings.loadEnvironment(System.getenv());
+        tracingSettings.loadEnvironment(System.getenv());
+        cdsSettings.loadEnvironment(System.getenv());
+        admissionSettings.loadEnvironment(System.getenv());
+        tlsSettings.loadEnvironment(System.getenv());
+        lazyResourceSettings.loadEnvironment(System.getenv());
+        accessLogSettings.loadEnvironment(System.getenv());
+
+        String shutdownTimeout = System.getenv(ENV_SHUTDOWN_TIMEOUT);
+        if (shutdownTimeout != null && !shutdownTimeout.isEmpty()) {
+            this.setShutdownTimeout(Long.valueOf(shutdownTimeout));
+        }
+
+        String startupThreads = System.getenv(ENV_STARTUP_THREADS);
+        if (startupThreads != null && !startupThreads.isEmpty()) {
+            this.setStartupThreads(Integer.valueOf(startupThreads));
+        }
+
+        String metricsPort = System.getenv(ENV_METRICS_PORT);
+        if (metricsPort != null && !metricsPort.isEmpty()) {
+            this.enableMetrics(Integer.valueOf(metricsPort));
+        }
+
         StandardContext ctx = (StandardContext) addWebApp();
 
-        StandardJarScanner scanner = new StandardJarScanner();
-        scanner.setScanBootstrapClassPath(true);
-        addJarScanner(ctx, scanner);
-        disableTldScanning(ctx);
+        // Fast-start mode replays a jar scan index written by an earlier boot
+        String scanIndex = System.getenv(ENV_SCAN_INDEX);
+        if (scanIndex != null && !scanIndex.isEmpty()) {
+            enableFastStart(ctx, Paths.get(scanIndex));
+        } else if (cdsSettings.isEnabled()) {
+            enableFastStart(ctx, cdsSettings.getScanIndexFile());
+        } else {
+            StandardJarScanner scanner = new StandardJarScanner();
+            scanner.setScanBootstrapClassPath(true);
+            addJarScanner(ctx, scanner);
+            disableTldScanning(ctx);
+        }
 
         addDefaultContextXml(ctx, this.getPathToContextXml());
         addDefaultWebXml(ctx, this.getPathToWebXml());
@@ -216,34 +963,373 @@ public class TomcatLauncher {
             webContentFolder = new File(absolutePath);
         }
         System.out.println("configuring app with basedir: " + webContentFolder.getAbsolutePath());
-        Context ctx = null;
-        try {
-            ctx = tomcat.addWebapp(contextPath, webContentFolder.getAbsolutePath());
-        } catch (ServletException e) {
-            throw new RuntimeException(String.format("Failed to add web content folder %s to context path %s", contextPath, webContentFolder.getAbsolutePath()), e);
+        long start = startupReport.start();
+        StandardContext ctx = new StandardContext();
+        ctx.setName(contextPath);
+        ctx.setPath(contextPath);
+        ctx.setDocBase(webContentFolder.getAbsolutePath());
+        ctx.addLifecycleListener(tomcat.getDefaultWebXmlListener());
+        File contextXml = new File(webContentFolder, "META-INF/context.xml");
+        if (contextXml.isFile()) {
+            try {
+                ctx.setConfigFile(contextXml.toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Invalid context.xml '" + contextXml.getAbsolutePath() + "'", e);
+            }
         }
+        LauncherContextConfig config = new LauncherContextConfig(startupReport);
+        config.setDefaultWebXml(tomcat.noDefaultWebXmlPath());
+        ctx.addLifecycleListener(config);
+        tomcat.getHost().addChild(ctx);
+        ctx.addLifecycleListener(startupReport.lifecycleListener(StartupReport.CONTEXT_START));
+        startupReport.stop(StartupReport.ADD_WEB_APP, start);
         // Set execution independent of current thread context classloader
         // (compatibility with exec:java mojo)
-        ctx.setParentClassLoader(TomcatLauncher.class.getClassLoader());
+        ctx.setParentClassLoader(getParentClassLoader());
         return ctx;
     }
 
+    /**
+     * Mounts an additional web app at the given context path. It is served by the same connectors
+     * and request threads as the main app and shares the common classloader, but has its own
+     * {@code WEB-INF} classes, libraries and JNDI resources.
+     */
+    public WebApp mountWebApp(String contextPath, String relativeWebContentFolder) {
+        Assert.notNull(contextPath, "Context path cannot be null");
+        Assert.isNull(tomcat.getHost().findChild(contextPath), "A web app is already mounted at '" + contextPath + "'");
+        Context ctx = addWebApp(contextPath, relativeWebContentFolder);
+        StandardJarScanner scanner = new StandardJarScanner();
+        scanner.setScanBootstrapClassPath(true);
+        addJarScanner(ctx, scanner);
+        disableTldScanning(ctx);
+        addDefaultContextXml(ctx, this.getPathToContextXml());
+        addDefaultWebXml(ctx, this.getPathToWebXml());
+        ctx.setResources(new StandardRoot(ctx));
+        WebApp webApp = new WebApp(ctx);
+        additionalWebApps.add(webApp);
+        return webApp;
+    }
+
+    /**
+     * The main web app followed by the apps added with {@link #mountWebApp(String, String)}.
+     */
+    public List<WebApp> getWebApps() {
+        List<WebApp> webApps = new ArrayList<>();
+        webApps.add(new WebApp(getContext(), contextResources, dataSources));
+        webApps.addAll(additionalWebApps);
+        return webApps;
+    }
+
+    /**
+     * Loads the jars and classes of the given folder, relative to the application root, through a
+     * classloader that is the parent of every web app, so libraries used by several apps are
+     * loaded once.
+     */
+    public void setCommonLibDir(String relativeLibFolder) {
+        Assert.notNull(relativeLibFolder, "Common lib folder cannot be null");
+        File libFolder = new File(getWebContentFolder().getAbsolutePath(), relativeLibFolder);
+        Assert.isTrue(libFolder.isDirectory(), "Common lib folder '" + libFolder.getAbsolutePath() + "' does not exist");
+        List<URL> urls = new ArrayList<>();
+        try {
+            urls.add(libFolder.toURI().toURL());
+            File[] jars = libFolder.listFiles();
+            if (jars != null) {
+                for (File jar : jars) {
+                    if (jar.getName().endsWith(".jar")) {
+                        urls.add(jar.toURI().toURL());
+                    }
+                }
+            }
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid common lib folder '" + libFolder.getAbsolutePath() + "'", e);
+        }
+        System.out.println("loading common libraries from '" + libFolder.getAbsolutePath() + "' (" + (urls.size() - 1)
+                + " jars)");
+        commonClassLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]), TomcatLauncher.class.getClassLoader());
+        for (Container child : tomcat.getHost().findChildren()) {
+            child.setParentClassLoader(commonClassLoader);
+        }
+    }
+
+    public ClassLoader getParentClassLoader() {
+        return commonClassLoader != null ? commonClassLoader : TomcatLauncher.class.getClassLoader();
+    }
+
     public void addJarScanner(Context ctx, JarScanner scanner) {
-        ctx.setJarScanner(scanner);
+        ctx.setJarScanner(scanner instanceof TimedJarScanner ? scanner : new TimedJarScanner(scanner, startupReport));
+    }
+
+    public void enableFastStart(Context ctx, Path indexFile) {
+        System.out.println("fast-start enabled with jar scan index '" + indexFile + "'");
+        CachingJarScanner scanner = new CachingJarScanner(indexFile);
+        addJarScanner(ctx, scanner);
+        disableTldScanning(ctx);
+        ctx.addLifecycleListener(scanner);
+    }
+
+    /**
+     * Default location of the jar scan index, one per application root so that several apps on the
+     * same host do not share an index.
+     */
+    public Path getDefaultScanIndexFile() {
+        String root = getWebContentFolder().getAbsolutePath();
+        return Paths.get(System.getProperty("java.io.tmpdir"), "tomcat-launcher",
+                "scan-index-" + DigestUtils.md5DigestAsHex(root.getBytes(StandardCharsets.UTF_8)) + ".properties");
     }
 
     public void setBaseDir(Path path) {
+        // Only the directory created by the launcher itself is deleted, a given one is not locked
+        releaseBaseDir();
+        applyBaseDir(path);
+    }
+
+    /**
+     * Uses the given directory as the base directory across restarts, locked against other
+     * launchers once started. Its work directory is kept as long as the build hash does not change.
+     */
+    public void setPersistentBaseDir(Path path) {
+        releaseBaseDir();
+        try {
+            baseDir = BaseDir.persistent(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create base directory '" + path + "'", e);
+        }
+        applyBaseDir(baseDir.getPath());
+    }
+
+    private void releaseBaseDir() {
+        if (baseDir != null) {
+            baseDir.close();
+            baseDir = null;
+        }
+    }
+
+    private void applyBaseDir(Path path) {
         tomcat.setBaseDir(path.toString());
+        if (context != null) {
+            // The server already exists and resolved the previous base directory
+            File base = path.toAbsolutePath().toFile();
+            tomcat.getServer().setCatalinaBase(base);
+            tomcat.getServer().setCatalinaHome(base);
+        }
+    }
+
+    /**
+     * Deletes the temporary base directories abandoned by launchers that were killed, then locks
+     * the own base directory for as long as the server runs.
+     */
+    private void lockBaseDir() {
+        int collected = BaseDir.collectGarbage(Paths.get(System.getProperty("java.io.tmpdir")), BaseDir.UNLOCKED_MAX_AGE);
+        if (collected > 0) {
+            System.out.println("deleted " + collected + " stale base directories");
+        }
+        if (baseDir == null) {
+            return;
+        }
+        try {
+            baseDir.lock();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to lock base directory '" + baseDir.getPath() + "'", e);
+        }
+    }
+
+    /**
+     * Clears the work directory of a persistent base directory if the application was built
+     * again since it was written.
+     */
+    private void checkBuildHash() {
+        if (baseDir == null || baseDir.isTemporary()) {
+            return;
+        }
+        try {
+            String hash = buildHash != null ? buildHash : BaseDir.computeBuildHash(getBuildEntries());
+            boolean reused = baseDir.reuse(hash);
+            System.out.println((reused ? "reusing" : "cleared") + " work directory of base directory '"
+                    + baseDir.getPath() + "' for build " + hash);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to check the build hash of '" + baseDir.getPath() + "'", e);
+        }
+    }
+
+    /**
+     * The jars and class folders the compiled JSPs and persisted sessions depend on.
+     */
+    private List<File> getBuildEntries() {
+        List<File> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            entries.add(new File(entry));
+        }
+        File root = getWebContentFolder();
+        if (getBuildClassDir() != null) {
+            entries.add(new File(root, getBuildClassDir()));
+        }
+        if (getAdditionalLibFolder() != null) {
+            entries.add(new File(root, getAdditionalLibFolder()));
+        }
+        for (WebApp webApp : getWebApps()) {
+            String docBase = webApp.getContext().getDocBase();
+            if (docBase != null) {
+                entries.add(new File(docBase, "WEB-INF/classes"));
+                entries.add(new File(docBase, "WEB-INF/lib"));
+            }
+        }
+        return entries;
+    }
+
+    public BaseDir getBaseDir() {
+        return baseDir;
+    }
+
+    /**
+     * The classloader of the common lib folder, {@code null} unless one was set.
+     */
+    public URLClassLoader getCommonClassLoader() {
+        return commonClassLoader;
+    }
+
+    /**
+     * Identifies the application build for a persistent base directory, e.g. a commit id. By
+     * default it is computed from the classpath and the web apps' classes and libraries.
+     */
+    public void setBuildHash(String buildHash) {
+        this.buildHash = buildHash;
+    }
+
+    Path getTemporaryBaseDir() {
+        return baseDir != null && baseDir.isTemporary() ? baseDir.getPath() : null;
+    }
+
+    public int getStartupThreads() {
+        return startupThreads;
+    }
+
+    /**
+     * Number of threads that start contexts, load servlets and warm up data sources. With more
+     * than one thread this work runs concurrently, respecting declared dependencies.
+     */
+    public void setStartupThreads(int startupThreads) {
+        Assert.isTrue(startupThreads > 0, "startupThreads must be greater than 0");
+        this.startupThreads = startupThreads;
+    }
+
+    ParallelStartup getParallelStartup() {
+        return parallelStartup;
+    }
+
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * Time in milliseconds a graceful stop waits for in-flight requests.
+     */
+    public void setShutdownTimeout(long shutdownTimeout) {
+        Assert.isTrue(shutdownTimeout >= 0, "shutdownTimeout cannot be negative");
+        this.shutdownTimeout = shutdownTimeout;
     }
 
     public void setPort(int port) {
+        this.port = port;
         tomcat.setPort(port);
     }
 
+    public int getPort() {
+        return port;
+    }
+
+    public void enableMetrics(int metricsPort) {
+        this.metricsEndpoint = new MetricsEndpoint(metricsPort);
+    }
+
+    public MetricsEndpoint getMetricsEndpoint() {
+        return metricsEndpoint;
+    }
+
+    public ConnectorSettings getConnectorSettings() {
+        return connectorSettings;
+    }
+
     public List<ContextResource> getContextResources() {
         return contextResources;
     }
 
+    public List<DataSourceSettings> getDataSources() {
+        return dataSources;
+    }
+
+    public List<EnvironmentImport> getEnvironmentImports() {
+        return environmentImports;
+    }
+
+    public WarmUpSettings getWarmUpSettings() {
+        return warmUpSettings;
+    }
+
+    public StaticContentSettings getStaticContentSettings() {
+        return staticContentSettings;
+    }
+
+    public HotReloadSettings getHotReloadSettings() {
+        return hotReloadSettings;
+    }
+
+    public JspSettings getJspSettings() {
+        return jspSettings;
+    }
+
+    public SessionSettings getSessionSettings() {
+        return sessionSettings;
+    }
+
+    public ResponsePipelineSettings getResponsePipelineSettings() {
+        return responsePipelineSettings;
+    }
+
+    /**
+     * Uses the given class data sharing archive, or writes it in a training run, together with
+     * the jar scan index next to it. See {@link CdsSettings} for the JVM options this takes.
+     */
+    public void enableClassDataSharing(Path archive, boolean training) {
+        cdsSettings.setArchive(archive);
+        cdsSettings.setTraining(training);
+        enableFastStart(getContext(), cdsSettings.getScanIndexFile());
+    }
+
+    public CdsSettings getCdsSettings() {
+        return cdsSettings;
+    }
+
+    public TlsSettings getTlsSettings() {
+        return tlsSettings;
+    }
+
+    public LazyResourceSettings getLazyResourceSettings() {
+        return lazyResourceSettings;
+    }
+
+    public AccessLogSettings getAccessLogSettings() {
+        return accessLogSettings;
+    }
+
+    /**
+     * The TLS connector, {@code null} until the server is started or if TLS is not configured.
+     */
+    public Connector getTlsConnector() {
+        return tlsConnector;
+    }
+
+    public AdmissionSettings getAdmissionSettings() {
+        return admissionSettings;
+    }
+
+    public TracingSettings getTracingSettings() {
+        return tracingSettings;
+    }
+
+    public LeanSettings getLeanSettings() {
+        return leanSettings;
+    }
+
     private WebResourceSet addAdditionalWebInfResources(File root, String webAppMount, File additionWebInfClassesFolder,
                                                         WebResourceRoot resources) {
         WebResourceSet resourceSet;
@@ -0,0 +1,40 @@
+package io.pivotal.tomcat.launch;
+
+import java.util.concurrent.TimeUnit;
+
+public class TracingConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final TracingSettings settings;
+
+    public TracingConfigurer(TomcatConfigurer parent, TracingSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    /**
+     * Number of slowest requests logged with their breakdown per interval.
+     */
+    public TracingConfigurer slowest(int slowest) {
+        settings.setSlowest(slowest);
+        return this;
+    }
+
+    public TracingConfigurer interval(long interval, TimeUnit unit) {
+        settings.setIntervalMillis(unit.toMillis(interval));
+        return this;
+    }
+
+    /**
+     * Traces the main context only instead of all web apps on the host.
+     */
+    public TracingConfigurer contextOnly() {
+        settings.setContextOnly(true);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
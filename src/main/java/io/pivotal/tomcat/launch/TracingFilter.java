@@ -0,0 +1,40 @@
+package io.pivotal.tomcat.launch;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * Last filter of the chain, it measures the time spent in the servlet. Whatever else the
+ * {@link TracingValve} measures is attributed to the filters in front of it.
+ */
+public class TracingFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        RequestTrace trace = RequestTrace.current();
+        if (trace == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            trace.addServletNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
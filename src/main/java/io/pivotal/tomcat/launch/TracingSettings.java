@@ -0,0 +1,149 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.DispatcherType;
+import java.util.Map;
+
+/**
+ * Opt-in per-request latency tracing, see {@link TracingValve}. The valve is installed on the host,
+ * or on the main context only, the {@link TracingFilter} is appended to the filter chain of every
+ * web app, and the data sources registered with the launcher get a
+ * {@link ConnectionWaitInterceptor}. Time waited for a request thread is only known when the
+ * connector runs on the launcher's shared executor, which tracing switches on.
+ */
+public class TracingSettings {
+
+    public static final String ENV_TRACING = "TOMCAT_TRACING";
+
+    public static final String ENV_TRACING_SLOWEST = "TOMCAT_TRACING_SLOWEST";
+
+    public static final String ENV_TRACING_INTERVAL = "TOMCAT_TRACING_INTERVAL";
+
+    public static final String FILTER_NAME = "tracing";
+
+    private boolean enabled = false;
+
+    private int slowest = 10;
+
+    private long intervalMillis = 60000;
+
+    private boolean contextOnly = false;
+
+    private TracingValve valve;
+
+    /**
+     * Reads tracing settings from the given environment, the interval in seconds.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_TRACING))) {
+            setEnabled(Boolean.valueOf(env.get(ENV_TRACING).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_TRACING_SLOWEST))) {
+            setSlowest(Integer.valueOf(env.get(ENV_TRACING_SLOWEST).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_TRACING_INTERVAL))) {
+            setIntervalMillis(Long.valueOf(env.get(ENV_TRACING_INTERVAL).trim()) * 1000);
+        }
+    }
+
+    /**
+     * Returns the valve, created with the current settings on first use.
+     */
+    public TracingValve getValve() {
+        if (valve == null) {
+            valve = new TracingValve(slowest, intervalMillis);
+        }
+        return valve;
+    }
+
+    /**
+     * Returns a listener that appends the tracing filter to the filters of the context it is added
+     * to once web.xml has been processed. Filters that are added programmatically later on run
+     * after it and count as servlet time.
+     */
+    public LifecycleListener lifecycleListener() {
+        return new LifecycleListener() {
+            @Override
+            public void lifecycleEvent(LifecycleEvent event) {
+                if (Lifecycle.CONFIGURE_START_EVENT.equals(event.getType()) && isEnabled()) {
+                    register((Context) event.getLifecycle());
+                }
+            }
+        };
+    }
+
+    public void register(Context context) {
+        if (context.findFilterDef(FILTER_NAME) != null) {
+            return;
+        }
+        FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName(FILTER_NAME);
+        filterDef.setFilterClass(TracingFilter.class.getName());
+        filterDef.setFilter(new TracingFilter());
+        filterDef.setAsyncSupported("true");
+        context.addFilterDef(filterDef);
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(FILTER_NAME);
+        filterMap.addURLPatternDecoded("/*");
+        filterMap.setDispatcher(DispatcherType.REQUEST.name());
+        context.addFilterMap(filterMap);
+    }
+
+    /**
+     * Adds the connection wait interceptor to the given tomcat-jdbc resource.
+     */
+    public void traceConnectionWaits(ContextResource resource) {
+        String interceptors = (String) resource.getProperty("jdbcInterceptors");
+        String interceptor = ConnectionWaitInterceptor.class.getName();
+        resource.setProperty("jdbcInterceptors", interceptors == null ? interceptor : interceptors + ";" + interceptor);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getSlowest() {
+        return slowest;
+    }
+
+    /**
+     * Number of slowest requests logged per interval, 0 only records the histograms.
+     */
+    public void setSlowest(int slowest) {
+        Assert.isTrue(slowest >= 0, "Number of slowest requests cannot be negative");
+        this.slowest = slowest;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        Assert.isTrue(intervalMillis > 0, "Tracing interval must be positive");
+        this.intervalMillis = intervalMillis;
+    }
+
+    public boolean isContextOnly() {
+        return contextOnly;
+    }
+
+    /**
+     * Installs the valve on the main context instead of the host, other web apps are not traced.
+     */
+    public void setContextOnly(boolean contextOnly) {
+        this.contextOnly = contextOnly;
+    }
+}
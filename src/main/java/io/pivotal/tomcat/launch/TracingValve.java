@@ -0,0 +1,221 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Breaks the latency of every request down into the time it waited for a request thread, the
+ * time in filters, the time in the servlet and the time spent waiting for pooled JDBC
+ * connections, which is part of the filter or servlet time. Each phase goes into a fixed bucket
+ * histogram, and the slowest requests of every interval are kept in preallocated slots and
+ * logged as a diagnostic event. The only allocation on the request path is the small task
+ * wrapper that records the queue time, see {@link RequestTrace#queued(Runnable)}.
+ * <p>
+ * Intervals are closed by the container's background thread, which runs every ten seconds by
+ * default. For asynchronous requests only the container thread is measured.
+ */
+public class TracingValve extends ValveBase {
+
+    public static final String EVENT = "slow-requests";
+
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final LatencyHistogram queued = new LatencyHistogram();
+
+    private final LatencyHistogram filters = new LatencyHistogram();
+
+    private final LatencyHistogram servlet = new LatencyHistogram();
+
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+
+    private final LongAdder intervalRequests = new LongAdder();
+
+    private final SlowRequest[] slowest;
+
+    private int slowCount;
+
+    /**
+     * Requests at most this slow cannot make it into the full set of slowest requests, it lets
+     * the common case skip the lock.
+     */
+    private volatile long slowThresholdNanos;
+
+    private final long intervalNanos;
+
+    private volatile long intervalStart = System.nanoTime();
+
+    public TracingValve(int slowest, long intervalMillis) {
+        super(true);
+        this.slowest = new SlowRequest[slowest];
+        for (int i = 0; i < slowest; i++) {
+            this.slowest[i] = new SlowRequest();
+        }
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        RequestTrace trace = RequestTrace.begin();
+        long start = System.nanoTime();
+        try {
+            getNext().invoke(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long queuedNanos = trace.getQueuedNanos();
+            long servletNanos = trace.getServletNanos();
+            long waitNanos = trace.getConnectionWaitNanos();
+            trace.end();
+            long totalNanos = queuedNanos + elapsed;
+            long filterNanos = Math.max(0, elapsed - servletNanos);
+            intervalRequests.increment();
+            queued.record(queuedNanos);
+            filters.record(filterNanos);
+            servlet.record(servletNanos);
+            connectionWait.record(waitNanos);
+            if (slowest.length > 0 && totalNanos > slowThresholdNanos) {
+                sample(request.getMethod(), request.getRequestURI(), response.getStatus(),
+                        totalNanos, queuedNanos, filterNanos, servletNanos, waitNanos);
+            }
+            // Last, so that its count only covers requests that are completely recorded
+            total.record(totalNanos);
+        }
+    }
+
+    private synchronized void sample(String method, String uri, int status, long totalNanos, long queuedNanos,
+                                     long filterNanos, long servletNanos, long waitNanos) {
+        SlowRequest slot;
+        if (slowCount < slowest.length) {
+            slot = slowest[slowCount++];
+        } else {
+            slot = slowest[0];
+            for (SlowRequest candidate : slowest) {
+                if (candidate.totalNanos < slot.totalNanos) {
+                    slot = candidate;
+                }
+            }
+            if (totalNanos <= slot.totalNanos) {
+                return;
+            }
+        }
+        slot.method = method;
+        slot.uri = uri;
+        slot.status = status;
+        slot.totalNanos = totalNanos;
+        slot.queuedNanos = queuedNanos;
+        slot.filterNanos = filterNanos;
+        slot.servletNanos = servletNanos;
+        slot.connectionWaitNanos = waitNanos;
+        if (slowCount == slowest.length) {
+            long threshold = Long.MAX_VALUE;
+            for (SlowRequest candidate : slowest) {
+                threshold = Math.min(threshold, candidate.totalNanos);
+            }
+            slowThresholdNanos = threshold;
+        }
+    }
+
+    @Override
+    public void backgroundProcess() {
+        if (System.nanoTime() - intervalStart >= intervalNanos) {
+            Map<String, Object> fields = closeInterval();
+            if ((Long) fields.get("requests") > 0) {
+                LauncherDiagnostics.emit(EVENT, fields);
+            }
+        }
+    }
+
+    /**
+     * Starts a new interval and returns the number of requests of the one that ended and its
+     * slowest requests, slowest first, as diagnostic fields.
+     */
+    public synchronized Map<String, Object> closeInterval() {
+        SlowRequest[] sorted = Arrays.copyOf(slowest, slowCount);
+        Arrays.sort(sorted, new Comparator<SlowRequest>() {
+            @Override
+            public int compare(SlowRequest a, SlowRequest b) {
+                return Long.compare(b.totalNanos, a.totalNanos);
+            }
+        });
+        List<Map<String, Object>> requests = new ArrayList<>(sorted.length);
+        for (SlowRequest request : sorted) {
+            requests.add(request.toFields());
+            request.method = null;
+            request.uri = null;
+        }
+        slowCount = 0;
+        slowThresholdNanos = 0;
+        intervalStart = System.nanoTime();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("requests", intervalRequests.sumThenReset());
+        fields.put("slowest", requests);
+        return fields;
+    }
+
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    public LatencyHistogram getQueued() {
+        return queued;
+    }
+
+    public LatencyHistogram getFilters() {
+        return filters;
+    }
+
+    public LatencyHistogram getServlet() {
+        return servlet;
+    }
+
+    public LatencyHistogram getConnectionWait() {
+        return connectionWait;
+    }
+
+    private static final class SlowRequest {
+
+        String method;
+
+        String uri;
+
+        int status;
+
+        long totalNanos;
+
+        long queuedNanos;
+
+        long filterNanos;
+
+        long servletNanos;
+
+        long connectionWaitNanos;
+
+        Map<String, Object> toFields() {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("method", method);
+            fields.put("uri", uri);
+            fields.put("status", status);
+            fields.put("totalMillis", millis(totalNanos));
+            fields.put("queuedMillis", millis(queuedNanos));
+            fields.put("filtersMillis", millis(filterNanos));
+            fields.put("servletMillis", millis(servletNanos));
+            fields.put("connectionWaitMillis", millis(connectionWaitNanos));
+            return fields;
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 100000.0) / 10.0;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.core.StandardThreadExecutor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared service executor that runs every request on its own virtual thread when they are asked
+ * for and the runtime supports them (Java 21+). Otherwise it behaves exactly like
+ * {@link StandardThreadExecutor}, a platform thread pool bounded by {@code maxThreads}.
+ */
+public class VirtualThreadExecutor extends StandardThreadExecutor {
+
+    public static final String DEFAULT_NAME = "tomcatSharedExecutor";
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private ThreadFactory virtualThreadFactory;
+
+    private boolean virtualThreads = false;
+
+    private volatile boolean queueTiming = false;
+
+    public VirtualThreadExecutor() {
+        setName(DEFAULT_NAME);
+        setNamePrefix("tomcat-vexec-");
+    }
+
+    /**
+     * Returns a factory for named virtual threads, or {@code null} when the running JVM does not
+     * support them. Looked up reflectively so the launcher still runs on Java 8.
+     */
+    static ThreadFactory createVirtualThreadFactory(String namePrefix) {
+        try {
+            // Resolve against the public Thread.Builder interface, the builder implementation is internal
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.out.println("virtual threads are not usable on this JVM: " + e);
+            return null;
+        }
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return createVirtualThreadFactory("probe-") != null;
+    }
+
+    @Override
+    protected void startInternal() throws LifecycleException {
+        virtualThreadFactory = virtualThreads ? createVirtualThreadFactory(getNamePrefix()) : null;
+        if (virtualThreadFactory == null) {
+            if (virtualThreads) {
+                System.out.println("virtual threads not supported, using platform thread pool with maxThreads="
+                        + getMaxThreads());
+            }
+            super.startInternal();
+        } else {
+            System.out.println("using virtual threads for request processing");
+            setState(LifecycleState.STARTING);
+        }
+    }
+
+    @Override
+    protected void stopInternal() throws LifecycleException {
+        if (virtualThreadFactory == null) {
+            super.stopInternal();
+        } else {
+            setState(LifecycleState.STOPPING);
+            virtualThreadFactory = null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command, long timeout, TimeUnit unit) {
+        if (isVirtual()) {
+            execute(command);
+        } else {
+            super.execute(queueTiming ? RequestTrace.queued(command) : command, timeout, unit);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        final Runnable command = queueTiming ? RequestTrace.queued(task) : task;
+        ThreadFactory factory = virtualThreadFactory;
+        if (factory == null) {
+            super.execute(command);
+            return;
+        }
+        activeCount.incrementAndGet();
+        factory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.run();
+                } finally {
+                    activeCount.decrementAndGet();
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * Runs tasks on virtual threads where supported, instead of the bounded platform pool.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Records how long every task waited for a thread, for the {@link TracingValve}.
+     */
+    public void setQueueTiming(boolean queueTiming) {
+        this.queueTiming = queueTiming;
+    }
+
+    public boolean isVirtual() {
+        return virtualThreadFactory != null;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return isVirtual() ? activeCount.get() : super.getActiveCount();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return isVirtual() ? activeCount.get() : super.getPoolSize();
+    }
+
+    @Override
+    public boolean resizePool(int corePoolSize, int maximumPoolSize) {
+        return !isVirtual() && super.resizePool(corePoolSize, maximumPoolSize);
+    }
+
+    @Override
+    public boolean resizeQueue(int queueSize) {
+        return !isVirtual() && super.resizeQueue(queueSize);
+    }
+}
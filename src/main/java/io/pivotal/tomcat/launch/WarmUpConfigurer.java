@@ -0,0 +1,56 @@
+package io.pivotal.tomcat.launch;
+
+public class WarmUpConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final WarmUpSettings settings;
+
+    public WarmUpConfigurer(TomcatConfigurer parent, WarmUpSettings settings) {
+        this.parent = parent;
+        this.settings = settings;
+    }
+
+    /**
+     * Opens connections of every registered data source, not only those configured with
+     * {@link DataSourceConfigurer#warmUp()}.
+     */
+    public WarmUpConfigurer dataSources() {
+        settings.setDataSources(true);
+        return this;
+    }
+
+    /**
+     * Loads and initializes the given servlets even if they are not marked load-on-startup.
+     */
+    public WarmUpConfigurer servlets(String... servletNames) {
+        for (String servletName : servletNames) {
+            settings.addServlet(servletName);
+        }
+        return this;
+    }
+
+    public WarmUpConfigurer allServlets() {
+        return servlets(WarmUpSettings.ALL_SERVLETS);
+    }
+
+    /**
+     * Sends GET requests for the given paths, relative to the context path, over a loopback
+     * connector before the real connector starts.
+     */
+    public WarmUpConfigurer requests(String... paths) {
+        for (String path : paths) {
+            settings.addRequest(path);
+        }
+        return this;
+    }
+
+    public WarmUpConfigurer iterations(int iterations) {
+        settings.setIterations(iterations);
+        return this;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+}
@@ -0,0 +1,94 @@
+package io.pivotal.tomcat.launch;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the launcher warms up after the application has started and before the connector
+ * accepts traffic.
+ */
+public class WarmUpSettings {
+
+    public static final String ENV_DATA_SOURCES = "TOMCAT_WARMUP_DATA_SOURCES";
+
+    public static final String ENV_SERVLETS = "TOMCAT_WARMUP_SERVLETS";
+
+    public static final String ENV_REQUESTS = "TOMCAT_WARMUP_REQUESTS";
+
+    public static final String ENV_ITERATIONS = "TOMCAT_WARMUP_ITERATIONS";
+
+    /**
+     * Servlet name that stands for every servlet of the context.
+     */
+    public static final String ALL_SERVLETS = "*";
+
+    private boolean dataSources = false;
+
+    private final List<String> servlets = new ArrayList<>();
+
+    private final List<String> requests = new ArrayList<>();
+
+    private int iterations = 1;
+
+    /**
+     * Reads warm-up settings from the given environment. Servlets and requests are comma
+     * separated lists, requests are paths relative to the context path.
+     */
+    public void loadEnvironment(Map<String, String> env) {
+        if (StringUtils.hasText(env.get(ENV_DATA_SOURCES))) {
+            setDataSources(Boolean.valueOf(env.get(ENV_DATA_SOURCES).trim()));
+        }
+        if (StringUtils.hasText(env.get(ENV_SERVLETS))) {
+            for (String servlet : StringUtils.commaDelimitedListToStringArray(env.get(ENV_SERVLETS))) {
+                addServlet(servlet.trim());
+            }
+        }
+        if (StringUtils.hasText(env.get(ENV_REQUESTS))) {
+            for (String request : StringUtils.commaDelimitedListToStringArray(env.get(ENV_REQUESTS))) {
+                addRequest(request.trim());
+            }
+        }
+        if (StringUtils.hasText(env.get(ENV_ITERATIONS))) {
+            setIterations(Integer.valueOf(env.get(ENV_ITERATIONS).trim()));
+        }
+    }
+
+    public boolean isDataSources() {
+        return dataSources;
+    }
+
+    public void setDataSources(boolean dataSources) {
+        this.dataSources = dataSources;
+    }
+
+    public List<String> getServlets() {
+        return servlets;
+    }
+
+    public void addServlet(String servletName) {
+        Assert.hasText(servletName, "Servlet name cannot be empty");
+        servlets.add(servletName);
+    }
+
+    public List<String> getRequests() {
+        return requests;
+    }
+
+    public void addRequest(String path) {
+        Assert.isTrue(path != null && path.startsWith("/"), "Warm-up request path must start with '/'");
+        requests.add(path);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        Assert.isTrue(iterations > 0, "iterations must be greater than 0");
+        this.iterations = iterations;
+    }
+}
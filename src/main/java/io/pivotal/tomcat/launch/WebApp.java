@@ -0,0 +1,51 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A web application mounted by the launcher together with the JNDI resources that are bound
+ * into its context once Tomcat has started, and the settings of its data sources.
+ */
+public class WebApp {
+
+    private final Context context;
+
+    private final List<ContextResource> contextResources;
+
+    private final List<DataSourceSettings> dataSources;
+
+    public WebApp(Context context) {
+        this(context, new ArrayList<ContextResource>(), new ArrayList<DataSourceSettings>());
+    }
+
+    WebApp(Context context, List<ContextResource> contextResources, List<DataSourceSettings> dataSources) {
+        this.context = context;
+        this.contextResources = contextResources;
+        this.dataSources = dataSources;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    public List<ContextResource> getContextResources() {
+        return contextResources;
+    }
+
+    public List<DataSourceSettings> getDataSources() {
+        return dataSources;
+    }
+
+    DataSourceSettings getDataSource(String name) {
+        for (DataSourceSettings dataSource : dataSources) {
+            if (dataSource.getName().equals(name)) {
+                return dataSource;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,68 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.WebResourceRoot;
+import org.apache.tomcat.util.descriptor.web.ContextEnvironment;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+import org.springframework.util.Assert;
+
+public class WebAppConfigurer {
+
+    private final TomcatConfigurer parent;
+
+    private final TomcatLauncher launcher;
+
+    private final WebApp webApp;
+
+    public WebAppConfigurer(TomcatConfigurer parent, TomcatLauncher launcher, WebApp webApp) {
+        this.parent = parent;
+        this.launcher = launcher;
+        this.webApp = webApp;
+    }
+
+    public WebAppConfigurer webInfClassDir(String classDir) {
+        launcher.addWebInfClasses(getResources(), classDir);
+        return this;
+    }
+
+    public WebAppConfigurer additionalLibDir(String libDir) {
+        launcher.addAdditionalLibFolder(getResources(), libDir);
+        return this;
+    }
+
+    public WebAppConfigurer addEnvironment(String name, String value) {
+        Assert.notNull(name, "Name cannot be null");
+        Assert.notNull(value, "Value cannot be null");
+        ContextEnvironment env = new ContextEnvironment();
+        env.setName(name);
+        env.setValue(value);
+        env.setType("java.lang.String");
+        env.setOverride(false);
+        webApp.getContext().getNamingResources().addEnvironment(env);
+        return this;
+    }
+
+    public WebAppConfigurer addContextResource(ContextResource resource) {
+        webApp.getContextResources().add(resource);
+        return this;
+    }
+
+    /**
+     * Binds a tomcat-jdbc connection pool built from the given settings into this web app.
+     */
+    public WebAppConfigurer dataSource(DataSourceSettings settings) {
+        webApp.getDataSources().add(settings);
+        return addContextResource(settings.toContextResource());
+    }
+
+    public WebApp getWebApp() {
+        return webApp;
+    }
+
+    public TomcatConfigurer and() {
+        return parent;
+    }
+
+    private WebResourceRoot getResources() {
+        return webApp.getContext().getResources();
+    }
+}
@@ -0,0 +1,204 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AccessLogTests {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldWriteCompletedRequestsInTheBackground() throws Exception {
+        File logs = temp.newFolder("logs");
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .accessLog().directory(logs.toPath()).prefix("test").and()
+                .apply();
+
+        ServerHandle handle = launcher.start();
+        try {
+            for (String path : new String[] {"/missing", "/missing?page=2"}) {
+                HttpURLConnection connection = (HttpURLConnection) new URL(
+                        "http://localhost:" + handle.getPort() + path).openConnection();
+                assertEquals(404, connection.getResponseCode());
+            }
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+
+        File[] files = logs.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        assertThat(files[0].getName(), allOf(startsWith("test."), endsWith(".log")));
+        List<String> lines = Files.readAllLines(files[0].toPath(), StandardCharsets.UTF_8);
+        // Next to the launcher's own readiness request, on a connection of its own
+        assertEquals(3, lines.size());
+        assertThat(lines, hasItem(containsString("\"HEAD / HTTP/1.1\"")));
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).contains("HEAD")) {
+                lines.remove(i);
+                break;
+            }
+        }
+        assertTrue(lines.get(0), lines.get(0).matches(
+                "127\\.0\\.0\\.1 - - \\[[^\\]]+\\] \"GET /missing HTTP/1\\.1\" 404 \\d+ \\d+"));
+        assertThat(lines.get(1), containsString("\"GET /missing?page=2 HTTP/1.1\" 404 "));
+        AsyncAccessLogValve valve = launcher.getAccessLogSettings().getValve();
+        assertEquals(3, valve.getWritten());
+        assertEquals(0, valve.getDropped());
+    }
+
+    @Test
+    public void shouldWaitForTheWriterWhenFullAndBlocking() throws Exception {
+        File logs = temp.newFolder("logs");
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .accessLog().directory(logs.toPath()).prefix("test").bufferSize(2).blockWhenFull().and()
+                .apply();
+
+        final ServerHandle handle = launcher.start();
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> responses = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                responses.add(clients.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        HttpURLConnection connection = (HttpURLConnection) new URL(
+                                "http://localhost:" + handle.getPort() + "/missing").openConnection();
+                        // A reused connection that the server closed would be retried and logged twice
+                        connection.setRequestProperty("Connection", "close");
+                        return connection.getResponseCode();
+                    }
+                }));
+            }
+            for (Future<Integer> response : responses) {
+                assertEquals(404, response.get(10, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            clients.shutdownNow();
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+
+        // Two slots cannot hold 200 concurrent requests, none of them may be lost
+        AsyncAccessLogValve valve = launcher.getAccessLogSettings().getValve();
+        assertEquals(0, valve.getDropped());
+        assertEquals(201, valve.getWritten());
+        File[] files = logs.listFiles();
+        assertNotNull(files);
+        assertEquals(201, Files.readAllLines(files[0].toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void shouldKeepWritingAfterAFailedBatch() throws Exception {
+        File logs = temp.newFolder("logs");
+        // Not a valid file name, every batch fails with a runtime exception
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .accessLog().directory(logs.toPath()).prefix("test\u0000").and()
+                .apply();
+
+        ServerHandle handle = launcher.start();
+        AsyncAccessLogValve valve = launcher.getAccessLogSettings().getValve();
+        try {
+            for (int i = 0; i < 2; i++) {
+                HttpURLConnection connection = (HttpURLConnection) new URL(
+                        "http://localhost:" + handle.getPort() + "/missing").openConnection();
+                assertEquals(404, connection.getResponseCode());
+                long deadline = System.currentTimeMillis() + 5000;
+                while (valve.getDropped() < i + 2 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+            }
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+
+        // The readiness request and both requests went through the same writer thread
+        assertEquals(3, valve.getDropped());
+        assertEquals(0, valve.getWritten());
+        assertEquals(0, valve.getPending());
+    }
+
+    @Test
+    public void shouldCountEntriesDroppedWhileFull() {
+        AsyncAccessLogValve valve = new AsyncAccessLogValve(temp.getRoot().toPath(), "test", 2, false);
+        Request request = mock(Request.class);
+        when(request.getCoyoteRequest()).thenReturn(new org.apache.coyote.Request());
+        Response response = mock(Response.class);
+
+        // Without a writer nothing frees the two slots
+        for (int i = 0; i < 5; i++) {
+            valve.log(request, response, 1);
+        }
+
+        assertEquals(2, valve.getPending());
+        assertEquals(3, valve.getDropped());
+        assertEquals(0, valve.getWritten());
+    }
+
+    @Test
+    public void shouldHandSlotsBackInOrder() {
+        AccessLogBuffer buffer = new AccessLogBuffer(2);
+        AccessLogBuffer.Entry first = buffer.claim();
+        AccessLogBuffer.Entry second = buffer.claim();
+        assertNull(buffer.claim());
+        buffer.publish(second);
+        // The second slot is ready but the writer has to wait for the first one
+        assertNull(buffer.peek());
+        first.uri = "/first";
+        buffer.publish(first);
+        assertThat(buffer.peek(), sameInstance(first));
+        buffer.release(first);
+        assertNull(first.uri);
+        assertThat(buffer.peek(), sameInstance(second));
+        assertThat(buffer.claim(), sameInstance(first));
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    public void shouldReadSettingsFromTheEnvironment() {
+        AccessLogSettings settings = new AccessLogSettings();
+        settings.loadEnvironment(Collections.singletonMap(AccessLogSettings.ENV_ACCESS_LOG_WHEN_FULL, "block"));
+        assertEquals(AccessLogSettings.WhenFull.BLOCK, settings.getWhenFull());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBufferSizesThatAreNotPowersOfTwo() {
+        new AccessLogSettings().setBufferSize(1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectASingleSlotBufferSize() {
+        new AccessLogSettings().setBufferSize(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectASingleSlotBuffer() {
+        new AccessLogBuffer(1);
+    }
+}
@@ -0,0 +1,198 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.startup.Tomcat;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+
+public class AdmissionControlTests {
+
+    @Test
+    public void shouldShedRequestsOverTheLimitAndKeepHealthChecksFlowing() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .admissionControl().limits(2, 2, 2).retryAfter(3).and()
+                .apply();
+        BlockingServlet servlet = new BlockingServlet(2);
+        Tomcat.addServlet(launcher.getContext(), "slow", servlet);
+        launcher.getContext().addServletMappingDecoded("/slow", "slow");
+        Tomcat.addServlet(launcher.getContext(), "health", new HealthServlet());
+        launcher.getContext().addServletMappingDecoded("/health", "health");
+
+        ServerHandle handle = launcher.start();
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            // The launcher's own first request went through the limiter already
+            AdaptiveLimiter limiter = launcher.getAdmissionSettings().getValve().getLimiters().get("");
+            long admittedBefore = limiter.getAdmitted();
+            List<Future<Integer>> admitted = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                admitted.add(clients.submit(request(handle.getPort(), "/slow")));
+            }
+            assertThat(servlet.entered.await(10, TimeUnit.SECONDS), is(true));
+
+            HttpURLConnection rejected = open(handle.getPort(), "/slow");
+            assertEquals(503, rejected.getResponseCode());
+            assertEquals("3", rejected.getHeaderField("Retry-After"));
+            assertEquals(200, open(handle.getPort(), "/health").getResponseCode());
+
+            servlet.release.countDown();
+            for (Future<Integer> response : admitted) {
+                assertEquals(200, (int) response.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(admittedBefore + 2, limiter.getAdmitted());
+            assertEquals(1, limiter.getShed());
+            // Slots are released once the valve returns, which can be just after the response was read
+            long deadline = System.currentTimeMillis() + 5000;
+            while (limiter.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, limiter.getInFlight());
+            assertEquals(1, launcher.getAdmissionSettings().getValve().getCritical());
+        } finally {
+            servlet.release.countDown();
+            clients.shutdownNow();
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldNotAdmitAsyncDispatchesAgain() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .admissionControl().limits(1, 1, 1).and()
+                .apply();
+        Tomcat.addServlet(launcher.getContext(), "async", new DispatchingServlet()).setAsyncSupported(true);
+        launcher.getContext().addServletMappingDecoded("/async", "async");
+
+        ServerHandle handle = launcher.start();
+        try {
+            AdaptiveLimiter limiter = launcher.getAdmissionSettings().getValve().getLimiters().get("");
+            long admittedBefore = limiter.getAdmitted();
+            // The dispatch comes back while the request holds the only slot
+            HttpURLConnection connection = open(handle.getPort(), "/async");
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(DispatcherType.ASYNC.name(), connection.getHeaderField("X-Dispatcher-Type"));
+            assertEquals(admittedBefore + 1, limiter.getAdmitted());
+            assertEquals(0, limiter.getShed());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (limiter.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, limiter.getInFlight());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldMatchPriorityPathsOnSegmentBoundaries() {
+        AdmissionSettings settings = new AdmissionSettings();
+        settings.addLowPriorityPath("/reports/");
+        assertEquals(AdmissionSettings.Priority.CRITICAL, settings.getPriority("/health"));
+        assertEquals(AdmissionSettings.Priority.CRITICAL, settings.getPriority("/health/db"));
+        assertEquals(AdmissionSettings.Priority.NORMAL, settings.getPriority("/healthcare-export"));
+        assertEquals(AdmissionSettings.Priority.NORMAL, settings.getPriority("/readyz"));
+        assertEquals(AdmissionSettings.Priority.LOW, settings.getPriority("/reports"));
+        assertEquals(AdmissionSettings.Priority.LOW, settings.getPriority("/reports/monthly"));
+        assertEquals(AdmissionSettings.Priority.NORMAL, settings.getPriority("/reportsx"));
+    }
+
+    @Test
+    public void shouldAdaptTheLimitToLatency() {
+        AdmissionSettings settings = new AdmissionSettings();
+        settings.setLimits(10, 2, 12);
+        settings.setTargetLatencyMillis(100);
+        settings.setBackoffRatio(0.5);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(settings);
+
+        long start = System.nanoTime();
+        limiter.onSample(start, TimeUnit.MILLISECONDS.toNanos(500), 10);
+        assertEquals(5, limiter.getLimit());
+        // Requests of the same round trip do not shrink it again
+        limiter.onSample(start, TimeUnit.MILLISECONDS.toNanos(500), 10);
+        assertEquals(5, limiter.getLimit());
+        limiter.onSample(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(500), 10);
+        assertEquals(2, limiter.getLimit());
+
+        // Fast requests grow it by one per window while it is in use, up to the maximum
+        for (int i = 0; i < 200; i++) {
+            limiter.onSample(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(10), limiter.getLimit());
+        }
+        assertEquals(12, limiter.getLimit());
+        limiter.onSample(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(10), 1);
+        assertThat(limiter.getLimit(), lessThanOrEqualTo(12));
+    }
+
+    private static Callable<Integer> request(final int port, final String path) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                return open(port, path).getResponseCode();
+            }
+        };
+    }
+
+    private static HttpURLConnection open(int port, String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+    }
+
+    public static class BlockingServlet extends HttpServlet {
+
+        final CountDownLatch entered;
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingServlet(int requests) {
+            this.entered = new CountDownLatch(requests);
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.getWriter().write("done");
+        }
+    }
+
+    public static class HealthServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.getWriter().write("UP");
+        }
+    }
+
+    public static class DispatchingServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            if (req.getDispatcherType() == DispatcherType.ASYNC) {
+                resp.setHeader("X-Dispatcher-Type", req.getDispatcherType().name());
+                resp.getWriter().write("dispatched");
+                return;
+            }
+            AsyncContext async = req.startAsync();
+            async.dispatch();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.pivotal.tomcat.launch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BaseDirTests {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldLockThePersistentBaseDir() throws Exception {
+        Path path = temp.newFolder("base").toPath();
+        try (BaseDir baseDir = BaseDir.acquire(path)) {
+            try {
+                BaseDir.acquire(path);
+                fail("Expected the second launcher to be rejected");
+            } catch (IllegalStateException e) {
+                assertThat(e.getMessage(), is("Base directory '" + baseDir.getPath() + "' is in use by another launcher"));
+            }
+        }
+        BaseDir.acquire(path).close();
+        assertThat(Files.isDirectory(path), is(true));
+    }
+
+    @Test
+    public void shouldClearTheWorkDirWhenTheBuildChanges() throws Exception {
+        File classes = temp.newFolder("classes");
+        Files.write(new File(classes, "App.class").toPath(), "v1".getBytes(StandardCharsets.UTF_8));
+        String hash = BaseDir.computeBuildHash(Collections.singletonList(classes));
+        Path path = temp.newFolder("base").toPath();
+        Path compiled = path.resolve(BaseDir.WORK_DIR).resolve("index_jsp.class");
+
+        try (BaseDir baseDir = BaseDir.acquire(path)) {
+            assertThat(baseDir.reuse(hash), is(false));
+            Files.createDirectories(compiled.getParent());
+            Files.write(compiled, new byte[0]);
+        }
+        try (BaseDir baseDir = BaseDir.acquire(path)) {
+            assertThat(baseDir.reuse(hash), is(true));
+            assertThat(Files.exists(compiled), is(true));
+        }
+
+        Files.write(new File(classes, "App.class").toPath(), "v2 rebuilt".getBytes(StandardCharsets.UTF_8));
+        String rebuilt = BaseDir.computeBuildHash(Collections.singletonList(classes));
+        assertThat(rebuilt, not(hash));
+        try (BaseDir baseDir = BaseDir.acquire(path)) {
+            assertThat(baseDir.reuse(rebuilt), is(false));
+            assertThat(Files.exists(compiled), is(false));
+        }
+    }
+
+    @Test
+    public void shouldCollectAbandonedTemporaryBaseDirs() throws Exception {
+        Path root = temp.getRoot().toPath();
+        Path abandoned = createMarkedDir(root, "1");
+        Files.createFile(abandoned.resolve(BaseDir.LOCK_FILE));
+        Path neverStarted = createMarkedDir(root, "2");
+        Files.setLastModifiedTime(neverStarted.resolve(BaseDir.TEMP_MARKER_FILE), FileTime.fromMillis(
+                System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+        Path configured = createMarkedDir(root, "3");
+        Path running = createMarkedDir(root, "4");
+        // A directory of the user's that happens to share the prefix
+        Path persistent = Files.createDirectory(root.resolve(BaseDir.TEMP_PREFIX + "-data"));
+        Files.createFile(persistent.resolve(BaseDir.LOCK_FILE));
+        Path unmarked = Files.createDirectory(root.resolve(BaseDir.TEMP_PREFIX + "5"));
+        Files.setLastModifiedTime(unmarked, FileTime.fromMillis(
+                System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+        Path other = Files.createDirectory(root.resolve("other"));
+
+        try (BaseDir ignored = BaseDir.acquire(running)) {
+            assertEquals(2, BaseDir.collectGarbage(root, BaseDir.UNLOCKED_MAX_AGE));
+            assertThat(Files.exists(abandoned), is(false));
+            assertThat(Files.exists(neverStarted), is(false));
+            assertThat(Files.exists(configured), is(true));
+            assertThat(Files.exists(running), is(true));
+            assertThat(Files.exists(persistent), is(true));
+            assertThat(Files.exists(unmarked), is(true));
+            assertThat(Files.exists(other), is(true));
+        }
+    }
+
+    @Test
+    public void shouldOnlyLockTheBaseDirOnceStarted() throws Exception {
+        Path path = temp.newFolder("base").toPath();
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).persistentBaseDir(path).apply();
+        // Configuring alone leaves the directory to other launchers
+        BaseDir.acquire(path).close();
+
+        ServerHandle handle = launcher.start();
+        try {
+            BaseDir.acquire(path);
+            fail("Expected the started launcher to hold the lock");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("is in use by another launcher"));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+        BaseDir.acquire(path).close();
+    }
+
+    @Test
+    public void shouldMarkTemporaryBaseDirs() throws Exception {
+        BaseDir baseDir = BaseDir.createTemporary();
+        assertThat(Files.isRegularFile(baseDir.getPath().resolve(BaseDir.TEMP_MARKER_FILE)), is(true));
+        assertThat(Files.exists(baseDir.getPath().resolve(BaseDir.LOCK_FILE)), is(false));
+        baseDir.close();
+        assertThat(Files.exists(baseDir.getPath()), is(false));
+    }
+
+    private static Path createMarkedDir(Path root, String suffix) throws Exception {
+        Path dir = Files.createDirectory(root.resolve(BaseDir.TEMP_PREFIX + suffix));
+        Files.createFile(dir.resolve(BaseDir.TEMP_MARKER_FILE));
+        return dir;
+    }
+}
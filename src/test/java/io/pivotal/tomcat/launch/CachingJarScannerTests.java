@@ -0,0 +1,208 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.tomcat.Jar;
+import org.apache.tomcat.JarScanType;
+import org.apache.tomcat.JarScannerCallback;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.ServletContext;
+import javax.servlet.annotation.HandlesTypes;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CachingJarScannerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldOnlyScanIndexedJarsOnSecondBoot() throws Exception {
+        File fragmentJar = createJar("fragment.jar", "META-INF/web-fragment.xml");
+        File plainJar = createJar("plain.jar", "README.txt");
+        Path indexFile = folder.getRoot().toPath().resolve("scan-index.properties");
+        ServletContext context = mockContext(fragmentJar, plainJar);
+
+        CachingJarScanner first = new CachingJarScanner(indexFile);
+        List<String> firstScan = scan(first, context);
+        first.lifecycleEvent(new LifecycleEvent(mock(Lifecycle.class), Lifecycle.AFTER_START_EVENT, null));
+
+        CachingJarScanner second = new CachingJarScanner(indexFile);
+        List<String> secondScan = scan(second, context);
+
+        assertThat(first.isReplaying(), is(false));
+        assertThat(firstScan, containsInAnyOrder("fragment.jar", "plain.jar"));
+        assertThat(second.isReplaying(), is(true));
+        assertThat(secondScan, contains("fragment.jar"));
+    }
+
+    @Test
+    public void shouldRebuildIndexWhenClasspathChanges() throws Exception {
+        File fragmentJar = createJar("fragment.jar", "META-INF/web-fragment.xml");
+        Path indexFile = folder.getRoot().toPath().resolve("scan-index.properties");
+
+        CachingJarScanner first = new CachingJarScanner(indexFile);
+        scan(first, mockContext(fragmentJar));
+        first.lifecycleEvent(new LifecycleEvent(mock(Lifecycle.class), Lifecycle.AFTER_START_EVENT, null));
+
+        File addedJar = createJar("added.jar", "META-INF/services/javax.servlet.ServletContainerInitializer");
+        CachingJarScanner second = new CachingJarScanner(indexFile);
+        List<String> secondScan = scan(second, mockContext(fragmentJar, addedJar));
+
+        assertThat(second.isReplaying(), is(false));
+        assertThat(secondScan, containsInAnyOrder("fragment.jar", "added.jar"));
+    }
+
+    @Test
+    public void shouldRebuildIndexWhenAClasspathDirectoryChanges() throws Exception {
+        File classesDir = folder.newFolder("classes");
+        Files.write(classesDir.toPath().resolve("README.txt"), "content".getBytes(StandardCharsets.UTF_8));
+        Path indexFile = folder.getRoot().toPath().resolve("scan-index.properties");
+
+        CachingJarScanner first = new CachingJarScanner(indexFile);
+        scan(first, mockContext(classesDir));
+        first.lifecycleEvent(new LifecycleEvent(mock(Lifecycle.class), Lifecycle.AFTER_START_EVENT, null));
+
+        Path fragment = classesDir.toPath().resolve("META-INF/web-fragment.xml");
+        Files.createDirectories(fragment.getParent());
+        Files.write(fragment, "<web-fragment/>".getBytes(StandardCharsets.UTF_8));
+        CachingJarScanner second = new CachingJarScanner(indexFile);
+        List<String> secondScan = scan(second, mockContext(classesDir));
+
+        assertThat(second.isReplaying(), is(false));
+        assertThat(secondScan, contains("classes"));
+    }
+
+    @Test
+    public void shouldKeepJarsWithClassesForTheInitializers() throws Exception {
+        File initializerJar = createJar("initializer.jar",
+                "META-INF/services/javax.servlet.ServletContainerInitializer",
+                HandlingInitializer.class.getName().getBytes(StandardCharsets.UTF_8));
+        File implementingJar = createClassJar("implementing.jar", HandledImplementation.class);
+        File extendingJar = createClassJar("extending.jar", HandledExtension.class);
+        File annotatedJar = createClassJar("annotated.jar", MarkedClass.class);
+        File unrelatedJar = createClassJar("unrelated.jar", UnrelatedClass.class);
+        Path indexFile = folder.getRoot().toPath().resolve("scan-index.properties");
+        ServletContext context = mockContext(getClass().getClassLoader(), initializerJar, implementingJar,
+                extendingJar, annotatedJar, unrelatedJar);
+
+        CachingJarScanner first = new CachingJarScanner(indexFile);
+        scan(first, context);
+        first.lifecycleEvent(new LifecycleEvent(mock(Lifecycle.class), Lifecycle.AFTER_START_EVENT, null));
+
+        CachingJarScanner second = new CachingJarScanner(indexFile);
+        List<String> secondScan = scan(second, context);
+
+        assertThat(second.isReplaying(), is(true));
+        assertThat(secondScan, hasItems("initializer.jar", "implementing.jar", "extending.jar", "annotated.jar"));
+        assertThat(secondScan, not(hasItem("unrelated.jar")));
+    }
+
+    private List<String> scan(CachingJarScanner scanner, ServletContext context) {
+        final List<String> scanned = new ArrayList<>();
+        scanner.scan(JarScanType.PLUGGABILITY, context, new JarScannerCallback() {
+            @Override
+            public void scan(Jar jar, String webappPath, boolean isWebapp) {
+                String path = jar.getJarFileURL().getPath();
+                scanned.add(path.substring(path.lastIndexOf('/') + 1));
+            }
+
+            @Override
+            public void scan(File file, String webappPath, boolean isWebapp) {
+                scanned.add(file.getName());
+            }
+
+            @Override
+            public void scanWebInfClasses() {
+            }
+        });
+        return scanned;
+    }
+
+    private ServletContext mockContext(File... jars) throws Exception {
+        return mockContext(null, jars);
+    }
+
+    private ServletContext mockContext(ClassLoader parent, File... jars) throws Exception {
+        URL[] urls = new URL[jars.length];
+        for (int i = 0; i < jars.length; i++) {
+            urls[i] = jars[i].toURI().toURL();
+        }
+        ServletContext context = mock(ServletContext.class);
+        when(context.getClassLoader()).thenReturn(new URLClassLoader(urls, parent));
+        return context;
+    }
+
+    private File createJar(String name, String entry) throws IOException {
+        return createJar(name, entry, "content".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private File createClassJar(String name, Class<?> type) throws IOException {
+        String entry = type.getName().replace('.', '/') + ".class";
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(entry)) {
+            return createJar(name, entry, StreamUtils.copyToByteArray(in));
+        }
+    }
+
+    private File createJar(String name, String entry, byte[] content) throws IOException {
+        File jar = folder.newFile(name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(entry));
+            out.write(content);
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    public interface Handled {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Marker {
+    }
+
+    @HandlesTypes({Handled.class, Marker.class})
+    public static class HandlingInitializer implements ServletContainerInitializer {
+
+        @Override
+        public void onStartup(Set<Class<?>> classes, ServletContext context) {
+        }
+    }
+
+    public static class HandledImplementation implements Handled {
+    }
+
+    public static class HandledExtension extends HandledImplementation {
+    }
+
+    @Marker
+    public static class MarkedClass {
+    }
+
+    public static class UnrelatedClass {
+    }
+}
@@ -0,0 +1,48 @@
+package io.pivotal.tomcat.launch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+
+public class CdsSettingsTests {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldStopAfterTheTrainingRunAndKeepTheScanIndex() throws Exception {
+        Path archive = temp.getRoot().toPath().resolve("app.jsa");
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).classDataSharingTraining(archive).apply();
+
+        // Returns instead of serving until the JVM is shut down
+        launcher.launch();
+
+        assertThat(launcher.isReady(), is(false));
+        assertThat(Files.isRegularFile(temp.getRoot().toPath().resolve("app.jsa" + CdsSettings.SCAN_INDEX_SUFFIX)),
+                is(true));
+        assertThat(launcher.getCdsSettings().describe(), startsWith("class data sharing training run"));
+    }
+
+    @Test
+    public void shouldSuggestJvmOptionsForTheRunningJvm() {
+        CdsSettings settings = new CdsSettings();
+        settings.loadEnvironment(Collections.singletonMap(CdsSettings.ENV_CDS_ARCHIVE, "/apps/app.jsa"));
+        assertEquals(Paths.get("/apps/app.jsa.scan-index"), settings.getScanIndexFile());
+        if (CdsSettings.getJavaVersion() >= 13) {
+            assertThat(settings.jvmOptions(true), contains("-XX:ArchiveClassesAtExit=/apps/app.jsa"));
+            assertThat(settings.jvmOptions(false), contains("-XX:SharedArchiveFile=/apps/app.jsa"));
+        } else {
+            assertThat(settings.jvmOptions(true), is(empty()));
+            assertThat(settings.describe(), endsWith("start the JVM with Java 13 or later"));
+        }
+    }
+}
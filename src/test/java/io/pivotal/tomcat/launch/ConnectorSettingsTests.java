@@ -0,0 +1,90 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardServer;
+import org.apache.coyote.http2.Http2Protocol;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConnectorSettingsTests {
+
+    @Test
+    public void shouldLoadSettingsFromEnvironment() throws Exception {
+        Map<String, String> env = new HashMap<>();
+        env.put(ConnectorSettings.ENV_PROTOCOL, "nio2");
+        env.put(ConnectorSettings.ENV_MAX_THREADS, "400");
+        env.put(ConnectorSettings.ENV_ACCEPT_COUNT, "500");
+        env.put(ConnectorSettings.ENV_HTTP2, "true");
+        ConnectorSettings settings = new ConnectorSettings();
+        settings.loadEnvironment(env);
+
+        assertEquals(ConnectorSettings.Protocol.NIO2, settings.getProtocol());
+        assertEquals(Integer.valueOf(400), settings.getMaxThreads());
+        assertEquals(Integer.valueOf(500), settings.getAcceptCount());
+        assertNull(settings.getMaxConnections());
+        assertThat(settings.isHttp2(), is(true));
+    }
+
+    @Test
+    public void shouldApplySettingsToConnector() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure()
+                .connector()
+                    .nio2()
+                    .maxThreads(250)
+                    .maxConnections(5000)
+                    .keepAlive(15000, 200)
+                    .compression(2048, "text/html,application/json")
+                    .http2()
+                .and()
+                .apply();
+        Connector connector = launcher.getConnectorSettings().createConnector(new StandardServer(), 9090);
+
+        assertEquals(9090, connector.getPort());
+        assertThat(connector.getProtocolHandlerClassName(), containsString("Nio2"));
+        assertEquals(250, connector.getProperty("maxThreads"));
+        assertEquals(5000, connector.getProperty("maxConnections"));
+        assertEquals(15000, connector.getProperty("keepAliveTimeout"));
+        assertEquals(200, connector.getProperty("maxKeepAliveRequests"));
+        assertEquals("on", connector.getProperty("compression"));
+        assertEquals(2048, connector.getProperty("compressionMinSize"));
+        assertThat(connector.findUpgradeProtocols()[0], is(instanceOf(Http2Protocol.class)));
+    }
+
+    @Test
+    public void shouldRunTasksOnSharedExecutor() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure()
+                .virtualThreads()
+                .connector().maxThreads(10).and()
+                .apply();
+        VirtualThreadExecutor executor = (VirtualThreadExecutor) launcher.getSharedExecutor();
+        executor.start();
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+            assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+            assertEquals(VirtualThreadExecutor.isVirtualThreadSupported(), executor.isVirtual());
+            assertEquals(10, executor.getMaxThreads());
+        } finally {
+            executor.stop();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidThreadCount() throws Exception {
+        TomcatLauncher.configure().connector().maxThreads(0);
+    }
+}
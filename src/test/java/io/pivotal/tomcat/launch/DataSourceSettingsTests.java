@@ -0,0 +1,115 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.DataSourceFactory;
+import org.apache.tomcat.jdbc.pool.PoolConfiguration;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataSourceSettingsTests {
+
+    @Test
+    public void shouldMapSettingsToPoolProperties() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure()
+                .dataSource("jdbc/test")
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:mem:settings")
+                    .credentials("sa", "")
+                    .poolSize(2, 2, 10)
+                    .maxWait(5000)
+                    .validation("SELECT 1", 30000)
+                    .removeAbandoned(60, true)
+                    .statementCache(50)
+                    .slowQueryReport(500)
+                    .and()
+                .apply();
+        ContextResource resource = launcher.getDataSources().get(0).toContextResource();
+
+        assertEquals("jdbc/test", resource.getName());
+        assertEquals(DataSourceSettings.FACTORY, resource.getProperty("factory"));
+        PoolConfiguration pool = DataSourceFactory.parsePoolProperties(toProperties(resource));
+        assertEquals(2, pool.getInitialSize());
+        assertEquals(2, pool.getMinIdle());
+        assertEquals(10, pool.getMaxActive());
+        assertEquals(5000, pool.getMaxWait());
+        assertEquals("SELECT 1", pool.getValidationQuery());
+        assertEquals(30000, pool.getValidationInterval());
+        assertTrue(pool.isTestOnBorrow());
+        assertTrue(pool.isRemoveAbandoned());
+        assertEquals(60, pool.getRemoveAbandonedTimeout());
+        assertThat(pool.getJdbcInterceptors(), containsString("StatementCache(prepared=true,callable=false,max=50)"));
+        assertThat(pool.getJdbcInterceptors(), containsString("SlowQueryReport(threshold=500,logSlow=true)"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMinIdleAboveMaxActive() throws Exception {
+        DataSourceSettings settings = new DataSourceSettings("jdbc/test");
+        settings.setDriverClassName("org.h2.Driver");
+        settings.setUrl("jdbc:h2:mem:invalid");
+        settings.setMinIdle(20);
+        settings.setMaxActive(10);
+        settings.toContextResource();
+    }
+
+    @Test
+    public void shouldOpenInitialConnectionsOnWarmUp() throws Exception {
+        DataSourceSettings settings = new DataSourceSettings("jdbc/test");
+        settings.setDriverClassName("org.h2.Driver");
+        settings.setUrl("jdbc:h2:mem:warmup");
+        settings.setInitialSize(0);
+        settings.setMinIdle(3);
+        settings.setMaxActive(5);
+        DataSource dataSource = (DataSource) new DataSourceFactory()
+                .createDataSource(toProperties(settings.toContextResource()));
+        try {
+            assertEquals(0, dataSource.getPool().getSize());
+            assertEquals(3, settings.warmUp(dataSource));
+            assertEquals(3, dataSource.getPool().getIdle());
+            assertEquals(0, dataSource.getPool().getActive());
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void shouldWarmUpDataSourcesOfMountedWebApps() throws Exception {
+        DataSourceSettings settings = new DataSourceSettings("jdbc/second");
+        settings.setDriverClassName("org.h2.Driver");
+        settings.setUrl("jdbc:h2:mem:second");
+        settings.setInitialSize(0);
+        settings.setMinIdle(3);
+        settings.setMaxActive(5);
+        settings.setWarmUp(true);
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .webApp("/second", "src/main/webapp").dataSource(settings).and()
+                .apply();
+
+        ServerHandle handle = launcher.start();
+        try {
+            Object bound = launcher.lookupResource(launcher.getWebApps().get(1).getContext(), "jdbc/second");
+            // Warmed up with the settings of the web app rather than a single connection
+            assertEquals(3, ((DataSource) bound).getPool().getIdle());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Properties toProperties(ContextResource resource) {
+        Properties properties = new Properties();
+        Iterator<String> names = resource.listProperties();
+        while (names.hasNext()) {
+            String name = names.next();
+            properties.setProperty(name, resource.getProperty(name).toString());
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,96 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.ContextEnvironment;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.StreamUtils;
+
+import javax.naming.NamingException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class EnvironmentImportTests {
+
+    @Test
+    public void shouldValidateImportedValuesAgainstTheirTypes() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("app.port", " 0x1F90 ");
+        properties.put("app.ratio", 0.5d);
+        properties.put("app.name", "orders");
+        properties.put("other.key", "ignored");
+        EnvironmentImport environmentImport = new EnvironmentImport(new MapPropertySource("test", properties));
+        environmentImport.setPrefix("app.");
+        environmentImport.setStripPrefix(true);
+        environmentImport.addType("port", Integer.class);
+
+        Map<String, ContextEnvironment> environments = new HashMap<>();
+        for (ContextEnvironment env : environmentImport.toContextEnvironments()) {
+            environments.put(env.getName(), env);
+        }
+
+        assertEquals(3, environments.size());
+        assertEquals("java.lang.Integer", environments.get("port").getType());
+        // Tomcat decodes the text when it binds the entry
+        assertEquals("0x1F90", environments.get("port").getValue());
+        assertEquals("0.5", environments.get("ratio").getValue());
+        assertEquals("java.lang.Double", environments.get("ratio").getType());
+        assertEquals("java.lang.String", environments.get("name").getType());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectValuesThatCannotBeConverted() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("debug", "yes");
+        EnvironmentImport environmentImport = new EnvironmentImport(new MapPropertySource("test", properties));
+        environmentImport.addType("debug", Boolean.class);
+        environmentImport.toContextEnvironments();
+    }
+
+    @Test
+    public void shouldLookUpImportedEntries() throws Exception {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("app.port", "0x1F90");
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .importEnvironment(new MapPropertySource("test", properties))
+                .stripPrefix("app.").type(Integer.class, "port").and()
+                .apply();
+        Tomcat.addServlet(launcher.getContext(), "env", new EnvServlet());
+        launcher.getContext().addServletMappingDecoded("/env", "env");
+
+        ServerHandle handle = launcher.start();
+        try {
+            assertEquals("8081", get(handle.getPort(), "/env"));
+            assertEquals("8081", get(handle.getPort(), "/env"));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class EnvServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            try {
+                resp.getWriter().write(String.valueOf(EnvironmentCache.lookup("port", Integer.class) + 1));
+            } catch (NamingException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static String get(int port, String path) throws IOException {
+        try (InputStream in = new URL("http://localhost:" + port + path).openStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
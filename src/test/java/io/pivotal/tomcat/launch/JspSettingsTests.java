@@ -0,0 +1,99 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JspSettingsTests {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldServePrecompiledJspServlets() throws Exception {
+        File webXml = temp.newFile("web.xml");
+        Files.write(webXml.toPath(), ("<web-app xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\" version=\"3.1\">"
+                + "<servlet><servlet-name>org.apache.jsp.hello_jsp</servlet-name>"
+                + "<servlet-class>" + HelloJsp.class.getName() + "</servlet-class></servlet>"
+                + "<servlet-mapping><servlet-name>org.apache.jsp.hello_jsp</servlet-name>"
+                + "<url-pattern>/hello.jsp</url-pattern></servlet-mapping>"
+                + "</web-app>").getBytes(StandardCharsets.UTF_8));
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).apply();
+        launcher.getJspSettings().setDevelopment(false);
+        launcher.getContext().addLifecycleListener(launcher.getJspSettings().lifecycleListener(webXml));
+
+        ServerHandle handle = launcher.start();
+        try {
+            assertEquals("precompiled", get(handle.getPort(), "/hello.jsp"));
+            Wrapper jsp = (Wrapper) launcher.getContext().findChild(JspSettings.JSP_SERVLET);
+            assertEquals("false", jsp.findInitParameter("development"));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldPrecompileJspsBeforeReady() throws Exception {
+        File docBase = temp.newFolder("webapp");
+        Files.write(new File(docBase, "index.jsp").toPath(), "<%= 1 + 2 %>".getBytes(StandardCharsets.UTF_8));
+        new File(docBase, "WEB-INF").mkdir();
+        Files.write(new File(docBase, "WEB-INF/hidden.jsp").toPath(), "hidden".getBytes(StandardCharsets.UTF_8));
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).jsp().precompileOnStartup().and().apply();
+        WebResourceRoot resources = launcher.getContext().getResources();
+        resources.addPreResources(new DirResourceSet(resources, "/", docBase.getAbsolutePath(), "/"));
+
+        ServerHandle handle = launcher.start();
+        try {
+            assertThat(launcher.getJspSettings().findJsps(launcher.getContext()), hasItem("/index.jsp"));
+            assertThat(launcher.getJspSettings().findJsps(launcher.getContext()), not(hasItem("/WEB-INF/hidden.jsp")));
+            File workDir = new File(((StandardContext) launcher.getContext()).getWorkPath());
+            assertTrue(new File(workDir, "org/apache/jsp/index_jsp.class").isFile());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldOnlyUseProductionSettingsForPrecompiledJsps() {
+        JspSettings settings = new JspSettings();
+        assertThat(settings.isProduction(), is(false));
+        settings.setPrecompiledDir(JspSettings.DEFAULT_PRECOMPILED_DIR);
+        assertThat(settings.isProduction(), is(true));
+        settings.setDevelopment(true);
+        assertThat(settings.isProduction(), is(false));
+    }
+
+    public static class HelloJsp extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.getWriter().write("precompiled");
+        }
+    }
+
+    private static String get(int port, String path) throws IOException {
+        try (InputStream in = new URL("http://localhost:" + port + path).openStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+import org.junit.Test;
+
+import javax.naming.Name;
+import javax.naming.spi.ObjectFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LazyResourceTests {
+
+    @Test
+    public void shouldCreateDataSourcesOnFirstUseOnly() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).metrics(0)
+                .lazyResources()
+                .dataSource("jdbc/used")
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:mem:lazy-used")
+                    .credentials("sa", "")
+                    .poolSize(1, 1, 10)
+                    .and()
+                .dataSource("jdbc/unused")
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:mem:lazy-unused")
+                    .credentials("sa", "")
+                    .and()
+                .apply();
+
+        ServerHandle handle = launcher.start();
+        try {
+            Context ctx = launcher.getContext();
+            LazyResource used = launcher.getLazyResource(ctx, "jdbc/used");
+            LazyResource unused = launcher.getLazyResource(ctx, "jdbc/unused");
+            Object bound = launcher.lookupResource(ctx, "jdbc/used");
+            assertThat(bound, instanceOf(DataSource.class));
+            assertThat(bound, not(instanceOf(DataSourceProxy.class)));
+            assertThat(used.isCreated(), is(false));
+
+            final DataSource dataSource = (DataSource) bound;
+            final CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        start.await();
+                        try (Connection connection = dataSource.getConnection()) {
+                            return connection.isValid(5);
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS), is(true));
+            }
+            executor.shutdown();
+
+            // All eight connections went back to the one pool that was created, next to the
+            // initial connection it opened on creation
+            assertEquals(9, ((DataSourceProxy) used.peek()).getPool().getReturnedCount());
+            assertEquals(8, used.getUses());
+            assertThat(launcher.lookupResource(ctx, "jdbc/used"), sameInstance(bound));
+            assertThat(unused.isCreated(), is(false));
+            assertNull(unused.peek());
+
+            String metrics = launcher.getMetricsEndpoint().scrape();
+            assertThat(metrics, containsString("tomcat_lazy_resource_created{context=\"/\",resource=\"jdbc/used\"} 1"));
+            assertThat(metrics, containsString("tomcat_lazy_resource_created{context=\"/\",resource=\"jdbc/unused\"} 0"));
+            assertThat(metrics, containsString("tomcat_lazy_resource_uses_total{context=\"/\",resource=\"jdbc/used\"} 8"));
+            assertThat(unused.isCreated(), is(false));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+        assertNull(launcher.getLazyResource(launcher.getContext(), "jdbc/used"));
+    }
+
+    @Test
+    public void shouldWaitForACreationInFlight() throws Exception {
+        final LazyResource lazy = new LazyResource("slow", Runnable.class, getClass().getClassLoader());
+        lazy.lookup(SlowFactory.class.getName(), null, null, null, null);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return lazy.get();
+                }
+            });
+            assertThat(SlowFactory.entered.await(10, TimeUnit.SECONDS), is(true));
+            assertNull(lazy.peek());
+            executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    Thread.sleep(100);
+                    SlowFactory.release.countDown();
+                    return null;
+                }
+            });
+
+            Object created = lazy.await(5, TimeUnit.SECONDS);
+            assertThat(created, sameInstance(SlowFactory.created));
+            assertThat(first.get(5, TimeUnit.SECONDS), sameInstance(created));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static class SlowFactory implements ObjectFactory {
+
+        static final CountDownLatch entered = new CountDownLatch(1);
+
+        static final CountDownLatch release = new CountDownLatch(1);
+
+        static final Runnable created = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        @Override
+        public Object getObjectInstance(Object obj, Name name, javax.naming.Context nameCtx,
+                                        Hashtable<?, ?> environment) throws Exception {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return created;
+        }
+    }
+}
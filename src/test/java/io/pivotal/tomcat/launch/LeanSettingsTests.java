@@ -0,0 +1,58 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LeanSettingsTests {
+
+    @Test
+    public void shouldStartWithoutJspSupportInLeanMode() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).lean().apply();
+
+        ServerHandle handle = launcher.start();
+        try {
+            Context context = launcher.getContext();
+            assertNull(context.findChild(JspSettings.JSP_SERVLET));
+            assertNull(context.findServletMapping("*.jsp"));
+            assertThat(Arrays.asList(context.findWelcomeFiles()), not(hasItem("index.jsp")));
+            assertEquals(LeanSettings.CONTAINER_SCI_FILTER, context.getContainerSciFilter());
+            StandardJarScanner scanner =
+                    (StandardJarScanner) ((TimedJarScanner) context.getJarScanner()).getDelegate();
+            assertThat(scanner.isScanClassPath(), is(false));
+            assertThat(scanner.isScanBootstrapClassPath(), is(false));
+            assertThat(launcher.getStartupReport().getHeapUsed(), greaterThan(0L));
+            // Served by the default servlet as a missing static file
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + handle.getPort() + "/missing.jsp").openConnection();
+            assertEquals(404, connection.getResponseCode());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldDetectLeanModeFromTheClasspath() {
+        LeanSettings settings = new LeanSettings();
+        // Jasper is on the test classpath
+        assertThat(settings.isEnabled(), is(false));
+        settings.loadEnvironment(Collections.singletonMap(LeanSettings.ENV_LEAN, "true"));
+        assertThat(settings.isEnabled(), is(true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectJspPrecompilationInLeanMode() throws Exception {
+        TomcatLauncher.configure().port(0).lean().jsp().precompileOnStartup().and().apply().start();
+    }
+}
@@ -0,0 +1,73 @@
+package io.pivotal.tomcat.launch;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+
+public class MetricsEndpointTests {
+
+    @Test
+    public void shouldBucketLatencies() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(new double[]{1, 10, 100});
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(1, histogram.getCount(0));
+        assertEquals(2, histogram.getCount(1));
+        assertEquals(0, histogram.getCount(2));
+        assertEquals(1, histogram.getCount(3));
+        assertEquals(4, histogram.getTotalCount());
+        assertThat(histogram.getPercentileMillis(50), is(10.0));
+        assertThat(histogram.getPercentileMillis(99), is(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void shouldServePrometheusText() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().metrics(0).apply();
+        MetricsEndpoint endpoint = launcher.getMetricsEndpoint();
+        endpoint.getValve().getLatency().record(TimeUnit.MILLISECONDS.toNanos(3));
+        endpoint.start(launcher);
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + endpoint.getPort() + MetricsEndpoint.PATH).openConnection();
+            String body;
+            try (InputStream in = connection.getInputStream()) {
+                body = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A").next();
+            }
+
+            assertEquals(200, connection.getResponseCode());
+            assertThat(connection.getContentType(), startsWith("text/plain"));
+            assertThat(body, containsString("# TYPE tomcat_request_duration_seconds histogram"));
+            assertThat(body, containsString("tomcat_request_duration_seconds_bucket{le=\"0.005\"} 1"));
+            assertThat(body, containsString("tomcat_request_duration_seconds_count 1"));
+        } finally {
+            endpoint.stop();
+        }
+    }
+
+    @Test
+    public void shouldReportNotReadyBeforeLaunch() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().metrics(0).apply();
+        MetricsEndpoint endpoint = launcher.getMetricsEndpoint();
+        endpoint.start(launcher);
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + endpoint.getPort() + MetricsEndpoint.READY_PATH).openConnection();
+
+            assertEquals(503, connection.getResponseCode());
+        } finally {
+            endpoint.stop();
+        }
+    }
+}
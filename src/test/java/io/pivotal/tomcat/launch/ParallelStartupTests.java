@@ -0,0 +1,102 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelStartupTests {
+
+    @Test
+    public void shouldRunTasksAfterTheirDependencies() throws Exception {
+        final List<String> order = new CopyOnWriteArrayList<>();
+        Map<String, Runnable> tasks = new LinkedHashMap<>();
+        tasks.put("app", record(order, "app", 0));
+        tasks.put("schema", record(order, "schema", 100));
+        tasks.put("cache", record(order, "cache", 0));
+        Map<String, Collection<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("app", Arrays.asList("schema", "missing"));
+
+        try (ParallelStartup startup = new ParallelStartup(4)) {
+            startup.run(tasks, dependencies);
+        }
+
+        assertThat(order, containsInAnyOrder("app", "schema", "cache"));
+        assertThat(order.indexOf("app"), is(greaterThan(order.indexOf("schema"))));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectDependencyCycles() throws Exception {
+        Map<String, Runnable> tasks = new LinkedHashMap<>();
+        tasks.put("a", record(new CopyOnWriteArrayList<String>(), "a", 0));
+        tasks.put("b", record(new CopyOnWriteArrayList<String>(), "b", 0));
+        Map<String, Collection<String>> dependencies = new LinkedHashMap<>();
+        dependencies.put("a", Collections.singleton("b"));
+        dependencies.put("b", Collections.singleton("a"));
+
+        try (ParallelStartup startup = new ParallelStartup(1)) {
+            startup.run(tasks, dependencies);
+        }
+    }
+
+    @Test
+    public void shouldInitializeLoadOnStartupServletsConcurrently() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).parallelStartup(4).apply();
+        // Each servlet waits in init for the other one, which only works if they load concurrently
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final AtomicInteger initialized = new AtomicInteger();
+        Wrapper[] wrappers = new Wrapper[2];
+        for (int i = 0; i < wrappers.length; i++) {
+            wrappers[i] = Tomcat.addServlet(launcher.getContext(), "servlet" + i, new HttpServlet() {
+                @Override
+                public void init() throws ServletException {
+                    try {
+                        barrier.await(10, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new ServletException(e);
+                    }
+                    initialized.incrementAndGet();
+                }
+            });
+            wrappers[i].setLoadOnStartup(1);
+        }
+
+        ServerHandle handle = launcher.start();
+        try {
+            assertEquals(2, initialized.get());
+            assertEquals(1, wrappers[0].getLoadOnStartup());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Runnable record(final List<String> order, final String name, final long sleepMillis) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                order.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReloadWatcherTests {
+
+    @Test
+    public void shouldOnlyReloadClassesForClassChanges() throws Exception {
+        Context ctx = TomcatLauncher.configure().apply().getContext();
+        ReloadWatcher watcher = new ReloadWatcher(ctx, 0, null);
+        Path docBase = Paths.get(ctx.getDocBase());
+
+        assertFalse(watcher.requiresClassReload(Collections.singleton(docBase.resolve("css/site.css"))));
+        assertTrue(watcher.requiresClassReload(Collections.singleton(docBase.resolve("WEB-INF/web.xml"))));
+        assertTrue(watcher.requiresClassReload(Collections.singleton(Paths.get("build/classes/main/Foo.class"))));
+    }
+
+    @Test
+    public void shouldKeepDataSourceAcrossContextReload() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .hotReload().debounce(50, TimeUnit.MILLISECONDS).and()
+                .dataSource("jdbc/reload")
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:mem:reload")
+                    .and()
+                .apply();
+        ServerHandle handle = launcher.start();
+        try {
+            Object pool = launcher.lookupResource(launcher.getContext(), "jdbc/reload");
+            assertThat(pool, is(notNullValue()));
+            ReloadWatcher watcher = launcher.getReloadWatchers().get(0);
+
+            assertEquals(ReloadWatcher.RELOAD_CLASSES, watcher.reload(Collections.singleton(Paths.get("Foo.class"))));
+            assertTrue(launcher.getContext().getState().isAvailable());
+            assertThat(launcher.lookupResource(launcher.getContext(), "jdbc/reload"), is(sameInstance(pool)));
+            assertEquals(1, watcher.getReloadCount());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldCheckTheJarScanIndexAgainWhenJarsChange() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .hotReload().debounce(50, TimeUnit.MILLISECONDS).and()
+                .apply();
+        ServerHandle handle = launcher.start();
+        try {
+            CachingJarScanner scanner = (CachingJarScanner) ((TimedJarScanner) launcher.getContext().getJarScanner())
+                    .getDelegate();
+            assertThat(scanner.getIndexFile().startsWith(launcher.getTomcat().getServer().getCatalinaBase().toPath()),
+                    is(true));
+            assertTrue(Files.isRegularFile(scanner.getIndexFile()));
+            ReloadWatcher watcher = launcher.getReloadWatchers().get(0);
+
+            // Class changes replay what the first start recorded without reading the index
+            watcher.reload(Collections.singleton(Paths.get("Foo.class")));
+            assertFalse(scanner.isReplaying());
+
+            // Jar changes check the classpath against the index again, which is unchanged here
+            assertFalse(watcher.requiresRescan(Collections.singleton(Paths.get("Foo.class"))));
+            assertEquals(ReloadWatcher.RELOAD_CLASSES,
+                    watcher.reload(Collections.singleton(Paths.get("WEB-INF/lib/added.jar"))));
+            assertTrue(launcher.getContext().getState().isAvailable());
+            assertTrue(scanner.isReplaying());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResponsePipelineTests {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldCompressAndRevalidateStaticResources() throws Exception {
+        File docBase = temp.newFolder("webapp");
+        StringBuilder css = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            css.append(".rule-").append(i).append(" { color: red; }\n");
+        }
+        Files.write(new File(docBase, "site.css").toPath(), css.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(docBase, "small.css").toPath(), "a { }".getBytes(StandardCharsets.UTF_8));
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .responsePipeline().compress(256).etags().cacheControl("public, max-age=60").and()
+                .apply();
+        WebResourceRoot resources = launcher.getContext().getResources();
+        resources.addPreResources(new DirResourceSet(resources, "/", docBase.getAbsolutePath(), "/"));
+
+        ServerHandle handle = launcher.start();
+        try {
+            HttpURLConnection connection = open(handle.getPort(), "/site.css", null);
+            assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+            assertEquals("public, max-age=60", connection.getHeaderField("Cache-Control"));
+            String etag = connection.getHeaderField("ETag");
+            assertThat(etag, allOf(startsWith("\""), endsWith("-gzip\"")));
+            try (InputStream in = new GZIPInputStream(connection.getInputStream())) {
+                assertEquals(css.toString(), StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+            }
+
+            HttpURLConnection conditional = open(handle.getPort(), "/site.css", etag);
+            assertEquals(304, conditional.getResponseCode());
+            assertEquals(etag, conditional.getHeaderField("ETag"));
+
+            HttpURLConnection small = open(handle.getPort(), "/small.css", null);
+            assertNull(small.getHeaderField("Content-Encoding"));
+            assertEquals("a { }", read(small));
+            assertThat(small.getHeaderField("ETag"), not(startsWith("W/")));
+
+            ResponsePipelineStats stats = launcher.getResponsePipelineSettings().getStats();
+            assertEquals(1, stats.getCompressedResponses());
+            assertEquals(css.length(), stats.getUncompressedBytes());
+            assertThat(stats.getBytesSaved(), greaterThan(0L));
+            assertEquals(1, stats.getNotModified());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldDeflateDynamicResponsesWrittenInChunks() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).responsePipeline().compress(256).and().apply();
+        Tomcat.addServlet(launcher.getContext(), "json", new JsonServlet());
+        launcher.getContext().addServletMappingDecoded("/json", "json");
+
+        ServerHandle handle = launcher.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + handle.getPort() + "/json")
+                    .openConnection();
+            connection.setRequestProperty("Accept-Encoding", "deflate, gzip;q=0");
+            assertEquals("deflate", connection.getHeaderField("Content-Encoding"));
+            try (InputStream in = new InflaterInputStream(connection.getInputStream())) {
+                assertEquals(JsonServlet.body(), StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+            }
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldLeaveJspsToTheirServlet() throws Exception {
+        File docBase = temp.newFolder("webapp");
+        Files.write(new File(docBase, "page.jsp").toPath(), "<%= System.nanoTime() %>".getBytes(StandardCharsets.UTF_8));
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .responsePipeline().etags().cacheControl("public, max-age=60").and()
+                .apply();
+        WebResourceRoot resources = launcher.getContext().getResources();
+        resources.addPreResources(new DirResourceSet(resources, "/", docBase.getAbsolutePath(), "/"));
+
+        ServerHandle handle = launcher.start();
+        try {
+            HttpURLConnection connection = open(handle.getPort(), "/page.jsp", null);
+            assertEquals(200, connection.getResponseCode());
+            assertNull(connection.getHeaderField("ETag"));
+            assertNull(connection.getHeaderField("Cache-Control"));
+            String first = read(connection);
+
+            HttpURLConnection conditional = open(handle.getPort(), "/page.jsp", "*");
+            assertEquals(200, conditional.getResponseCode());
+            assertThat(read(conditional), not(first));
+            assertEquals(0, launcher.getResponsePipelineSettings().getStats().getNotModified());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldLetTomcatReportServletFailures() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).responsePipeline().compress(16).and().apply();
+        Tomcat.addServlet(launcher.getContext(), "failing", new FailingServlet());
+        launcher.getContext().addServletMappingDecoded("/failing", "failing");
+
+        ServerHandle handle = launcher.start();
+        try {
+            HttpURLConnection connection = open(handle.getPort(), "/failing", null);
+            assertEquals(500, connection.getResponseCode());
+            assertNull(connection.getHeaderField("Content-Encoding"));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldVaryNotModifiedResponsesOnAcceptEncoding() throws Exception {
+        File docBase = temp.newFolder("webapp");
+        Files.write(new File(docBase, "site.css").toPath(), "a { }".getBytes(StandardCharsets.UTF_8));
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .responsePipeline().compress(256).etags().and()
+                .apply();
+        WebResourceRoot resources = launcher.getContext().getResources();
+        resources.addPreResources(new DirResourceSet(resources, "/", docBase.getAbsolutePath(), "/"));
+
+        ServerHandle handle = launcher.start();
+        try {
+            String etag = open(handle.getPort(), "/site.css", null).getHeaderField("ETag");
+            HttpURLConnection conditional = open(handle.getPort(), "/site.css", etag);
+            assertEquals(304, conditional.getResponseCode());
+            assertEquals("Accept-Encoding", conditional.getHeaderField("Vary"));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldScrapeBeforeTheLauncherIsAttached() {
+        assertThat(new MetricsEndpoint(0).scrape(), not(containsString("tomcat_response_compressed_total")));
+    }
+
+    public static class FailingServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            // Large enough to start compressing, small enough to stay in the response buffer
+            for (int i = 0; i < 100; i++) {
+                resp.getOutputStream().write("partial ".getBytes(StandardCharsets.UTF_8));
+            }
+            throw new IllegalStateException("failed half way");
+        }
+    }
+
+    public static class JsonServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            String body = body();
+            for (int i = 0; i < body.length(); i += 100) {
+                resp.getWriter().write(body, i, Math.min(100, body.length() - i));
+                resp.getWriter().flush();
+            }
+        }
+
+        static String body() {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < 300; i++) {
+                body.append(i > 0 ? "," : "").append("{\"id\":").append(i).append("}");
+            }
+            return body.append("]").toString();
+        }
+    }
+
+    private static HttpURLConnection open(int port, String path, String ifNoneMatch) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+        if (ifNoneMatch != null) {
+            connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        return connection;
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServerHandleTests {
+
+    @Test
+    public void shouldDrainInFlightRequestsOnStop() throws Exception {
+        final CountDownLatch requestStarted = new CountDownLatch(1);
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).apply();
+        Context ctx = launcher.getContext();
+        Tomcat.addServlet(ctx, "slow", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                requestStarted.countDown();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                resp.getWriter().write("done");
+            }
+        });
+        ctx.addServletMappingDecoded("/slow", "slow");
+        Path baseDir = launcher.getTemporaryBaseDir();
+
+        final ServerHandle handle = launcher.start();
+        assertTrue(launcher.isReady());
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> response = client.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    URL url = new URL("http://localhost:" + handle.getPort() + "/slow");
+                    return ((HttpURLConnection) url.openConnection()).getResponseCode();
+                }
+            });
+            assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+
+            assertTrue(handle.stop(10, TimeUnit.SECONDS));
+            assertEquals(200, response.get().intValue());
+        } finally {
+            client.shutdownNow();
+        }
+        assertFalse(handle.isRunning());
+        assertFalse(launcher.isReady());
+        assertTrue(handle.awaitTermination(0, TimeUnit.SECONDS));
+        assertFalse(Files.exists(baseDir));
+    }
+}
@@ -0,0 +1,133 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.startup.Tomcat;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+
+public class SpillingSessionManagerTests {
+
+    @Test
+    public void shouldSpillLeastRecentlyUsedSessionsAndPageThemBackIn() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).sessions(4).and().apply();
+        Tomcat.addServlet(launcher.getContext(), "counter", new CounterServlet());
+        launcher.getContext().addServletMappingDecoded("/counter", "counter");
+
+        ServerHandle handle = launcher.start();
+        try {
+            List<String> cookies = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                HttpURLConnection connection = open(handle.getPort(), null);
+                assertEquals("1", read(connection));
+                cookies.add(connection.getHeaderField("Set-Cookie").split(";")[0]);
+            }
+            SpillingSessionManager manager = (SpillingSessionManager) launcher.getContext().getManager();
+            assertThat(manager.getResidentSessions(), lessThanOrEqualTo(4));
+            assertThat(manager.getSpilledSessions(), greaterThanOrEqualTo(6));
+
+            // The oldest session was spilled and keeps its state when it is paged back in
+            assertEquals("2", read(open(handle.getPort(), cookies.get(0))));
+            assertThat(manager.getPageInCount(), greaterThanOrEqualTo(1L));
+            assertThat(manager.getPageInLatency().getTotalCount(), is(manager.getPageInCount()));
+            assertThat(manager.getResidentSessions(), lessThanOrEqualTo(4));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldNotSpillSessionsOfRequestsInProgress() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).sessions(4).and().apply();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Tomcat.addServlet(launcher.getContext(), "counter", new CounterServlet());
+        launcher.getContext().addServletMappingDecoded("/counter", "counter");
+        Tomcat.addServlet(launcher.getContext(), "slow", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                req.getSession().setAttribute("count", 1);
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                resp.getWriter().write("slow");
+            }
+        });
+        launcher.getContext().addServletMappingDecoded("/slow", "slow");
+
+        final ServerHandle handle = launcher.start();
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = client.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    HttpURLConnection connection = (HttpURLConnection) new URL(
+                            "http://localhost:" + handle.getPort() + "/slow").openConnection();
+                    read(connection);
+                    return connection.getHeaderField("Set-Cookie").split(";")[0];
+                }
+            });
+            assertThat(entered.await(10, TimeUnit.SECONDS), is(true));
+            // The slow session is the least recently used one while the others are created
+            for (int i = 0; i < 10; i++) {
+                assertEquals("1", read(open(handle.getPort(), null)));
+            }
+            release.countDown();
+            String cookie = slow.get(10, TimeUnit.SECONDS);
+
+            SpillingSessionManager manager = (SpillingSessionManager) launcher.getContext().getManager();
+            long pageIns = manager.getPageInCount();
+            assertEquals("2", read(open(handle.getPort(), cookie)));
+            assertThat(manager.getPageInCount(), is(pageIns));
+        } finally {
+            client.shutdownNow();
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class CounterServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            Integer count = (Integer) req.getSession().getAttribute("count");
+            count = count == null ? 1 : count + 1;
+            req.getSession().setAttribute("count", count);
+            resp.getWriter().write(count.toString());
+        }
+    }
+
+    private static HttpURLConnection open(int port, String cookie) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/counter").openConnection();
+        if (cookie != null) {
+            connection.setRequestProperty("Cookie", cookie);
+        }
+        return connection;
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
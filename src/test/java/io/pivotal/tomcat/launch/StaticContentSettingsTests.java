@@ -0,0 +1,70 @@
+package io.pivotal.tomcat.launch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StaticContentSettingsTests {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldPrecompressCompressibleFiles() throws Exception {
+        Path docBase = temp.newFolder("webapp").toPath();
+        Path target = temp.getRoot().toPath().resolve("precompressed");
+        String script = new String(new char[2048]).replace('\0', 'a');
+        write(docBase.resolve("js/app.js"), script);
+        write(docBase.resolve("small.css"), "body{}");
+        write(docBase.resolve("logo.png"), script);
+        write(docBase.resolve("WEB-INF/web.xml"), script);
+
+        StaticContentSettings settings = new StaticContentSettings();
+        assertEquals(1, settings.precompress(docBase.toString(), target));
+
+        Path compressed = target.resolve("js/app.js.gz");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+            assertEquals(script, StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+        }
+        assertFalse(Files.exists(target.resolve("small.css.gz")));
+        assertFalse(Files.exists(target.resolve("logo.png.gz")));
+        assertFalse(Files.exists(target.resolve("WEB-INF")));
+        // Up-to-date variants are not written again
+        assertEquals(0, settings.precompress(docBase.toString(), target));
+    }
+
+    @Test
+    public void shouldLoadStaticContentFromEnvironment() throws Exception {
+        Map<String, String> env = new HashMap<>();
+        env.put(StaticContentSettings.ENV_CACHE_MAX_SIZE, "102400");
+        env.put(StaticContentSettings.ENV_CACHE_TTL, "60000");
+        env.put(StaticContentSettings.ENV_SENDFILE_SIZE, "64");
+        env.put(StaticContentSettings.ENV_PRECOMPRESS, "true");
+
+        StaticContentSettings settings = new StaticContentSettings();
+        settings.loadEnvironment(env);
+
+        assertEquals(Long.valueOf(102400), settings.getCacheMaxSize());
+        assertEquals(Long.valueOf(60000), settings.getCacheTtl());
+        assertEquals(Integer.valueOf(64), settings.getSendfileSize());
+        assertTrue(settings.isPrecompress());
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
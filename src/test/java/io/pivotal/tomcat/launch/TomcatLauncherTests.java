@@ -1,19 +1,38 @@
 package io.pivotal.tomcat.launch;
 
 import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleState;
 import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
 import org.apache.tomcat.util.descriptor.web.ContextEnvironment;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.springframework.core.env.PropertySource;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 import static io.pivotal.tomcat.launch.TomcatLauncher.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 public class TomcatLauncherTests {
 
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     @Test
     public void shouldCreateStandardContext() throws Exception {
     	TomcatLauncher launcher = TomcatLauncher.configure().apply();
@@ -92,4 +111,92 @@ public class TomcatLauncherTests {
 
         assertThat(((StandardContext)launcher1.getContext()).getDefaultWebXml(), is(equalTo(((StandardContext)launcher2.getContext()).getDefaultWebXml())));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReportConfigurationPhases() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().apply();
+        StartupReport report = launcher.getStartupReport();
+
+        assertThat(report.getPhases().keySet(), hasItems(StartupReport.BASE_DIR, StartupReport.ROOT_FOLDER,
+                StartupReport.ADD_WEB_APP));
+        assertThat(report.getDuration(StartupReport.CONNECTOR_BIND, TimeUnit.MILLISECONDS), is(-1L));
+        assertThat(report.toString(), startsWith("{\"event\":\"startup\",\"totalMillis\":"));
+        assertThat(launcher.getContext().getJarScanner(), is(instanceOf(TimedJarScanner.class)));
+    }
+
+    @Test
+    public void shouldMountAdditionalWebApps() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure()
+                .webApp("/second", "src/main/webapp")
+                .addEnvironment("app", "second")
+                .and()
+                .apply();
+
+        assertThat(launcher.getWebApps(), hasSize(2));
+        Context second = launcher.getWebApps().get(1).getContext();
+        assertEquals("/second", second.getPath());
+        assertEquals("second", second.getNamingResources().findEnvironment("app").getValue());
+        assertThat(launcher.getContext().getNamingResources().findEnvironment("app"), is(nullValue()));
+        assertThat(second.getParentClassLoader(), is(sameInstance(launcher.getContext().getParentClassLoader())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDuplicateContextPath() throws Exception {
+        TomcatLauncher.configure().webApp(DEFAULT_CONTEXT_PATH, "src/main/webapp");
+    }
+
+    @Test
+    public void shouldServeAllWebAppsFromOneConnector() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .webApp("/second", "src/main/webapp").and()
+                .apply();
+        for (WebApp webApp : launcher.getWebApps()) {
+            final String path = webApp.getContext().getPath();
+            Tomcat.addServlet(webApp.getContext(), "echo", new HttpServlet() {
+                @Override
+                protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                    resp.getWriter().write("app" + path);
+                }
+            });
+            webApp.getContext().addServletMappingDecoded("/echo", "echo");
+        }
+
+        ServerHandle handle = launcher.start();
+        try {
+            assertEquals("app", get(handle.getPort(), "/echo"));
+            assertEquals("app/second", get(handle.getPort(), "/second/echo"));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldReleaseEverythingWhenTheStartFails() throws Exception {
+        Path baseDir = temp.newFolder("base").toPath();
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0).persistentBaseDir(baseDir)
+                .dataSource("jdbc/broken")
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:/does/not/exist/db;IFEXISTS=TRUE")
+                    .warmUp()
+                    .and()
+                .apply();
+
+        try {
+            launcher.start();
+            fail("Expected the warm-up of the broken data source to fail");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("jdbc/broken"));
+        }
+
+        assertEquals(LifecycleState.DESTROYED, launcher.getTomcat().getServer().getState());
+        // The lock of the failed launcher is released
+        BaseDir.acquire(baseDir).close();
+    }
+
+    private static String get(int port, String path) throws IOException {
+        URL url = new URL("http://localhost:" + port + path);
+        try (InputStream in = url.openStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
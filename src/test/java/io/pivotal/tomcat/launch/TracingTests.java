@@ -0,0 +1,163 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.startup.Tomcat;
+import org.junit.Test;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+
+public class TracingTests {
+
+    @Test
+    public void shouldKeepTheBoundedPlatformPoolWhenOnlyTracing() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .tracing().and()
+                .connector().maxThreads(7).and()
+                .apply();
+
+        ServerHandle handle = launcher.start();
+        try {
+            VirtualThreadExecutor executor = (VirtualThreadExecutor) launcher.getSharedExecutor();
+            assertThat(executor.isVirtual(), is(false));
+            assertThat(executor.getMaxThreads(), is(7));
+            assertThat(executor.getPoolSize(), greaterThan(0));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldBreakDownRequestLatencyAndSampleTheSlowest() throws Exception {
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .tracing().slowest(2).and()
+                .dataSource("jdbc/traced")
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:mem:traced")
+                    .poolSize(1, 1, 1)
+                    .maxWait(5000)
+                    .and()
+                .apply();
+        Tomcat.addServlet(launcher.getContext(), "query", new QueryServlet());
+        launcher.getContext().addServletMappingDecoded("/query", "query");
+
+        ServerHandle handle = launcher.start();
+        ExecutorService clients = Executors.newFixedThreadPool(3);
+        try {
+            TracingValve valve = launcher.getTracingSettings().getValve();
+            // The launcher's readiness request is recorded once the valve returns, which can be just
+            // after the launcher read its response
+            long deadline = System.currentTimeMillis() + 10000;
+            while (valve.getTotal().getTotalCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            valve.closeInterval();
+            List<Future<Integer>> responses = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                responses.add(clients.submit(request(handle.getPort(), "/query")));
+            }
+            for (Future<Integer> response : responses) {
+                assertEquals(200, (int) response.get(10, TimeUnit.SECONDS));
+            }
+            while (valve.getTotal().getTotalCount() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertThat(valve.getServlet().getTotalCount(), is(valve.getTotal().getTotalCount()));
+            assertThat(valve.getQueued().getTotalCount(), is(valve.getTotal().getTotalCount()));
+            // The single pooled connection is held for 100ms, so at least one request waited for it
+            assertThat(valve.getConnectionWait().getPercentileMillis(100), greaterThanOrEqualTo(50.0));
+            assertThat(valve.getServlet().getPercentileMillis(100), greaterThanOrEqualTo(100.0));
+
+            Map<String, Object> interval = valve.closeInterval();
+            assertEquals(3L, interval.get("requests"));
+            List<?> slowest = (List<?>) interval.get("slowest");
+            assertThat(slowest, hasSize(2));
+            Map<?, ?> slowestRequest = (Map<?, ?>) slowest.get(0);
+            assertEquals("/query", slowestRequest.get("uri"));
+            assertEquals(200, slowestRequest.get("status"));
+            assertThat((Double) slowestRequest.get("connectionWaitMillis"), greaterThanOrEqualTo(50.0));
+            assertThat((Double) slowestRequest.get("totalMillis"),
+                    greaterThanOrEqualTo((Double) ((Map<?, ?>) slowest.get(1)).get("totalMillis")));
+        } finally {
+            clients.shutdownNow();
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldTraceConnectionWaitsOfMountedWebApps() throws Exception {
+        DataSourceSettings settings = new DataSourceSettings("jdbc/second");
+        settings.setDriverClassName("org.h2.Driver");
+        settings.setUrl("jdbc:h2:mem:traced-second");
+        TomcatLauncher launcher = TomcatLauncher.configure().port(0)
+                .tracing().and()
+                .dataSource("jdbc/first")
+                    .driverClassName("org.h2.Driver")
+                    .url("jdbc:h2:mem:traced-first")
+                    .and()
+                .webApp("/second", "src/main/webapp").dataSource(settings).and()
+                .apply();
+
+        ServerHandle handle = launcher.start();
+        try {
+            String interceptor = ConnectionWaitInterceptor.class.getName();
+            org.apache.tomcat.jdbc.pool.DataSource first = (org.apache.tomcat.jdbc.pool.DataSource)
+                    launcher.lookupResource(launcher.getContext(), "jdbc/first");
+            org.apache.tomcat.jdbc.pool.DataSource second = (org.apache.tomcat.jdbc.pool.DataSource)
+                    launcher.lookupResource(launcher.getWebApps().get(1).getContext(), "jdbc/second");
+            assertEquals(interceptor, first.getJdbcInterceptors());
+            assertEquals(interceptor, second.getJdbcInterceptors());
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Callable<Integer> request(final int port, final String path) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path)
+                        .openConnection();
+                return connection.getResponseCode();
+            }
+        };
+    }
+
+    public static class QueryServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            try {
+                DataSource dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/traced");
+                try (Connection connection = dataSource.getConnection()) {
+                    connection.createStatement().execute("SELECT 1");
+                    Thread.sleep(100);
+                }
+            } catch (NamingException | SQLException | InterruptedException e) {
+                throw new ServletException(e);
+            }
+            resp.getWriter().write("ok");
+        }
+    }
+}
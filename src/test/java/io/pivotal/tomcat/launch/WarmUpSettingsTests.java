@@ -0,0 +1,83 @@
+package io.pivotal.tomcat.launch;
+
+import org.apache.catalina.startup.Tomcat;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WarmUpSettingsTests {
+
+    @Test
+    public void shouldLoadWarmUpFromEnvironment() throws Exception {
+        Map<String, String> env = new HashMap<>();
+        env.put(WarmUpSettings.ENV_DATA_SOURCES, "true");
+        env.put(WarmUpSettings.ENV_SERVLETS, "default, jsp");
+        env.put(WarmUpSettings.ENV_REQUESTS, "/, /api/health");
+        env.put(WarmUpSettings.ENV_ITERATIONS, "50");
+
+        WarmUpSettings settings = new WarmUpSettings();
+        settings.loadEnvironment(env);
+
+        assertTrue(settings.isDataSources());
+        assertThat(settings.getServlets(), contains("default", "jsp"));
+        assertThat(settings.getRequests(), contains("/", "/api/health"));
+        assertEquals(50, settings.getIterations());
+    }
+
+    @Test
+    public void shouldHoldReadinessUntilTheWarmUpRequestsAreDone() throws Exception {
+        final TomcatLauncher launcher = TomcatLauncher.configure().port(0).metrics(0)
+                .warmUp().requests("/warm").iterations(3).and()
+                .apply();
+        final List<Integer> readiness = new CopyOnWriteArrayList<>();
+        Tomcat.addServlet(launcher.getContext(), "warm", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                readiness.add(status(launcher.getMetricsEndpoint().getPort(), MetricsEndpoint.READY_PATH));
+                resp.getWriter().write("warm");
+            }
+        });
+        launcher.getContext().addServletMappingDecoded("/warm", "warm");
+
+        ServerHandle handle = launcher.start();
+        try {
+            // Every warm-up request ran before start() returned and saw the server as not ready
+            assertThat(readiness, contains(503, 503, 503));
+            assertTrue(launcher.isReady());
+            assertEquals(200, status(launcher.getMetricsEndpoint().getPort(), MetricsEndpoint.READY_PATH));
+            assertEquals(200, status(handle.getPort(), "/warm"));
+            assertThat(readiness, hasSize(4));
+        } finally {
+            handle.stop(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static int status(int port, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectRelativeRequestPath() throws Exception {
+        TomcatLauncher.configure().warmUp().requests("api/health");
+    }
+}